@@ -11,7 +11,9 @@
 # ====================================================================
 
 # Runs the emfcompare-git.pgm application fowarding the arguments.
+# The launcher starts without instance area (-data @noDefault) so that concurrent commands do not wait for
+# each other on its lock. Each command leases its own workspace from the installation it provisions.
 emfcompare-git-pgm (){
 	#java -Dequinox.use.ds=true -jar $EMF_COMPARE_GIT_PGM_PATH/plugins/org.eclipse.equinox.launcher_1.3.0.v20140415-2008.jar -consoleLog -nosplash -application emf.compare.git.launcherApp "$@"
-	$EMF_COMPARE_GIT_PGM_PATH/emfcompare-git-pgm -data @user.home/.emfcompare_git_pgm/workspace -consoleLog -nosplash --launcher.suppressErrors -application emf.compare.git.launcherApp "$@"
+	$EMF_COMPARE_GIT_PGM_PATH/emfcompare-git-pgm -data @noDefault -consoleLog -nosplash --launcher.suppressErrors -application emf.compare.git.launcherApp "$@"
 }
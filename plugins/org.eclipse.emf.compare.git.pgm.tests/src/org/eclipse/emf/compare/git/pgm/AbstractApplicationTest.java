@@ -192,6 +192,10 @@ public abstract class AbstractApplicationTest {
 		assertEquals(message, outputStream.toString());
 	}
 
+	protected String getOutput() {
+		return outputStream.toString();
+	}
+
 	protected Path getTestTmpFolder() {
 		return testTmpFolder;
 	}
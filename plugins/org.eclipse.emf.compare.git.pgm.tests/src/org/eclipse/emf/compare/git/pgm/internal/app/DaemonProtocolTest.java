@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol.OutputHandler;
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol.Request;
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol.State;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link DaemonProtocol}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class DaemonProtocolTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void requestTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DaemonProtocol.writeRequest(new DataOutputStream(bytes), "token",
+				LogicalDiffApplication.APPLICATION_ID, Arrays.asList("/repo/.git", "/repo/setup.setup", "HEAD",
+						"-m", "Merge message"));
+
+		Request request = DaemonProtocol.readRequest(new DataInputStream(new ByteArrayInputStream(bytes
+				.toByteArray())), "token");
+		assertEquals("token", request.getToken());
+		assertEquals(LogicalDiffApplication.APPLICATION_ID, request.getApplication());
+		assertEquals(Arrays.asList("/repo/.git", "/repo/setup.setup", "HEAD", "-m", "Merge message"), request
+				.getArguments());
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidTokenTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DaemonProtocol.writeRequest(new DataOutputStream(bytes), "other",
+				LogicalDiffApplication.APPLICATION_ID, Arrays.asList("/repo/.git"));
+		DaemonProtocol.readRequest(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+				"token");
+	}
+
+	@Test(expected = IOException.class)
+	public void tooManyArgumentsTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeUTF("token");
+		out.writeUTF(LogicalDiffApplication.APPLICATION_ID);
+		out.writeInt(Integer.MAX_VALUE);
+		DaemonProtocol.readRequest(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+				"token");
+	}
+
+	@Test
+	public void responseTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		OutputStream stdout = DaemonProtocol.newOutputStream(out, DaemonProtocol.STDOUT);
+		OutputStream stderr = DaemonProtocol.newOutputStream(out, DaemonProtocol.STDERR);
+		stdout.write("out 1\n".getBytes(StandardCharsets.UTF_8));
+		stderr.write("err\n".getBytes(StandardCharsets.UTF_8));
+		stdout.write("out 2\n".getBytes(StandardCharsets.UTF_8));
+		DaemonProtocol.writeExit(out, 1);
+
+		final StringBuilder output = new StringBuilder();
+		int code = DaemonProtocol.readResponse(new DataInputStream(new ByteArrayInputStream(bytes
+				.toByteArray())), new OutputHandler() {
+			public void handle(byte channel, byte[] chunk) throws IOException {
+				output.append((char)channel).append(':').append(new String(chunk, StandardCharsets.UTF_8));
+			}
+		});
+		assertEquals(1, code);
+		assertEquals("O:out 1\nE:err\nO:out 2\n", output.toString());
+	}
+
+	@Test
+	public void largeOutputTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		byte[] large = new byte[DaemonProtocol.MAX_FRAME_LENGTH + 1];
+		DaemonProtocol.newOutputStream(out, DaemonProtocol.STDOUT).write(large);
+		DaemonProtocol.writeExit(out, 0);
+
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		DaemonProtocol.readResponse(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+				new OutputHandler() {
+					public void handle(byte channel, byte[] chunk) throws IOException {
+						output.write(chunk);
+					}
+				});
+		assertEquals(large.length, output.size());
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidFrameLengthTest() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(DaemonProtocol.STDOUT);
+		out.writeInt(-1);
+		DaemonProtocol.readResponse(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+				new OutputHandler() {
+					public void handle(byte channel, byte[] chunk) throws IOException {
+						// Never called.
+					}
+				});
+	}
+
+	@Test
+	public void stateTest() throws IOException {
+		File stateFile = new File(folder.getRoot(), "daemon/state.properties");
+		assertNull(DaemonProtocol.readState(stateFile));
+
+		DaemonProtocol.writeState(stateFile, 4242, "token");
+		State state = DaemonProtocol.readState(stateFile);
+		assertEquals(4242, state.getPort());
+		assertEquals("token", state.getToken());
+	}
+
+	@Test
+	public void stateFilePermissionsTest() throws IOException {
+		assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		File stateFile = new File(folder.getRoot(), "daemon/state.properties");
+		DaemonProtocol.writeState(stateFile, 4242, "token");
+		assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(stateFile
+				.toPath())));
+	}
+}
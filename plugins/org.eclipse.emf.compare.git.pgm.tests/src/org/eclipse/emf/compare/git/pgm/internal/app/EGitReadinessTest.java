@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.egit.core.JobFamilies;
+import org.eclipse.egit.core.project.RepositoryMapping;
+import org.eclipse.emf.compare.git.pgm.internal.ProgressPageLog;
+import org.eclipse.jgit.api.Git;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link EGitReadiness}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class EGitReadinessTest {
+
+	private static final String AUTO_SHARE_PREFERENCE = "core_autoShareProjects";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final IWorkspace workspace = ResourcesPlugin.getWorkspace();
+
+	private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+	private IEclipsePreferences egitCore;
+
+	private Git git;
+
+	@Before
+	public void setUp() throws Exception {
+		// The projects are only connected by the tests or by the barrier.
+		egitCore = InstanceScope.INSTANCE.getNode("org.eclipse.egit.core");
+		egitCore.putBoolean(AUTO_SHARE_PREFERENCE, false);
+		git = Git.init().setDirectory(folder.newFolder("repo")).call();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (IProject project : workspace.getRoot().getProjects()) {
+			project.delete(false, true, new NullProgressMonitor());
+		}
+		egitCore.remove(AUTO_SHARE_PREFERENCE);
+		git.close();
+	}
+
+	@Test
+	public void noPendingProjectTest() throws Exception {
+		new EGitReadiness(git.getRepository(), 1, newLog()).await(workspace.getRoot());
+		assertEquals("", log.toString());
+	}
+
+	@Test
+	public void autoShareDoneTest() throws Exception {
+		IProject project = createProject("A");
+		assertNull(RepositoryMapping.getMapping(project));
+
+		new EGitReadiness(git.getRepository(), EGitReadiness.DEFAULT_TIMEOUT, newLog()).await(workspace
+				.getRoot());
+		assertTrue(log.toString().contains("Waited "));
+		assertFalse(log.toString().contains("not done after"));
+		assertTrue(log.toString().contains("Connecting 1 projects to the repository"));
+		assertNotNull(RepositoryMapping.getMapping(project));
+	}
+
+	@Test
+	public void deadlineTest() throws Exception {
+		IProject project = createProject("A");
+		CountDownLatch release = new CountDownLatch(1);
+		Job autoShare = new BlockingJob(release);
+		autoShare.schedule();
+		try {
+			long start = System.currentTimeMillis();
+			new EGitReadiness(git.getRepository(), 1, newLog()).await(workspace.getRoot());
+			long waited = System.currentTimeMillis() - start;
+
+			// The barrier gives up on the auto share job still running once the deadline is reached.
+			assertTrue("Waited " + waited + " ms", waited >= 1000 && waited < 30000);
+			assertTrue(autoShare.getState() != Job.NONE);
+			assertTrue(log.toString().contains("EGit auto share not done after 1000 ms"));
+			assertTrue(log.toString().contains("Connecting 1 projects to the repository"));
+			assertNotNull(RepositoryMapping.getMapping(project));
+		} finally {
+			release.countDown();
+			autoShare.join();
+		}
+	}
+
+	private ProgressPageLog newLog() {
+		return new ProgressPageLog(new PrintStream(log));
+	}
+
+	private IProject createProject(String name) throws Exception {
+		File location = new File(git.getRepository().getWorkTree(), name);
+		location.mkdirs();
+		String description = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<projectDescription>\n<name>" + name
+				+ "</name>\n</projectDescription>\n";
+		Files.write(new File(location, ".project").toPath(), description.getBytes(StandardCharsets.UTF_8));
+
+		IProject project = workspace.getRoot().getProject(name);
+		IProjectDescription projectDescription = workspace.newProjectDescription(name);
+		projectDescription.setLocation(new Path(location.getAbsolutePath()));
+		project.create(projectDescription, new NullProgressMonitor());
+		project.open(new NullProgressMonitor());
+		return project;
+	}
+
+	/**
+	 * Job of the auto share family running until it is released.
+	 */
+	private static final class BlockingJob extends Job {
+
+		private final CountDownLatch release;
+
+		BlockingJob(CountDownLatch release) {
+			super("Blocking auto share");
+			this.release = release;
+			setSystem(true);
+		}
+
+		@Override
+		public boolean belongsTo(Object family) {
+			return family == JobFamilies.AUTO_SHARE;
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			try {
+				release.await(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return Status.OK_STATUS;
+		}
+	}
+}
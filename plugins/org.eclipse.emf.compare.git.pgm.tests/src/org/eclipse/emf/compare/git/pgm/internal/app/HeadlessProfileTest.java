@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of {@link HeadlessProfile}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class HeadlessProfileTest {
+
+	/**
+	 * Default preferences changed by the profile: node and key.
+	 */
+	static final String[][] PREFERENCES = {{"org.eclipse.egit.core", "core_autoIgnoreDerivedResources" },
+			{"org.eclipse.egit.ui", "refesh_on_index_change" },
+			{"org.eclipse.egit.ui", "refesh_index_interval" },
+			{"org.eclipse.egit.ui", "decorator_calculate_dirty" },
+			{"org.eclipse.core.resources", "refresh.enabled" },
+			{"org.eclipse.core.resources", "refresh.lightweight.enabled" }, };
+
+	private IEclipsePreferences resources;
+
+	private String refreshEnabled;
+
+	@Before
+	public void setUp() {
+		resources = DefaultScope.INSTANCE.getNode("org.eclipse.core.resources");
+		refreshEnabled = resources.get("refresh.enabled", null);
+	}
+
+	@After
+	public void tearDown() {
+		if (refreshEnabled == null) {
+			resources.remove("refresh.enabled");
+		} else {
+			resources.put("refresh.enabled", refreshEnabled);
+		}
+	}
+
+	@Test
+	public void restoredPreferencesTest() {
+		// Both a set and an unset default value are restored.
+		resources.put("refresh.enabled", "true");
+		DefaultScope.INSTANCE.getNode("org.eclipse.egit.ui").remove("decorator_calculate_dirty");
+		List<String> original = getDefaultPreferences();
+
+		HeadlessProfile profile = new HeadlessProfile();
+		profile.apply();
+		try {
+			assertEquals("false", resources.get("refresh.enabled", null));
+			assertEquals("false", DefaultScope.INSTANCE.getNode("org.eclipse.egit.ui").get(
+					"decorator_calculate_dirty", null));
+		} finally {
+			profile.release();
+		}
+		assertEquals(original, getDefaultPreferences());
+		assertEquals("true", resources.get("refresh.enabled", null));
+	}
+
+	@Test
+	public void cpuTimeTest() throws Exception {
+		long before = HeadlessProfile.getCpuTime();
+		assumeTrue(before >= 0);
+
+		// The CPU time of a thread that has ended is still counted.
+		Thread worker = new Thread() {
+			@Override
+			public void run() {
+				long end = System.nanoTime() + 300000000L;
+				long value = 0;
+				while (System.nanoTime() < end) {
+					value++;
+				}
+				if (value < 0) {
+					throw new IllegalStateException();
+				}
+			}
+		};
+		worker.start();
+		worker.join();
+		assertTrue(HeadlessProfile.getCpuTime() - before >= 100);
+	}
+
+	/**
+	 * Gets the default values of the preferences changed by the profile.
+	 * 
+	 * @return the values, <code>null</code> for the unset ones.
+	 */
+	static List<String> getDefaultPreferences() {
+		List<String> values = new ArrayList<String>();
+		for (String[] preference : PREFERENCES) {
+			values.add(DefaultScope.INSTANCE.getNode(preference[0]).get(preference[1], null));
+		}
+		return values;
+	}
+}
@@ -10,17 +10,25 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.app;
 
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
 import org.eclipse.emf.compare.git.pgm.AbstractApplicationTest;
 import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.Options;
 import org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil;
+import org.eclipse.emf.compare.git.pgm.util.MockedApplicationContext;
 import org.eclipse.emf.compare.git.pgm.util.OomphUserModelBuilder;
 import org.eclipse.emf.compare.git.pgm.util.ProjectBuilder;
 import org.eclipse.equinox.app.IApplication;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.Test;
 
 /**
@@ -28,8 +36,15 @@ import org.junit.Test;
  * 
  * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
  */
+@SuppressWarnings("nls")
 public class LogicalDiffApplicationTest extends AbstractApplicationTest {
 
+	private static final String ECORE_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + EOL
+			+ "<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\""
+			+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+			+ " xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\" name=\"p\" nsURI=\"http://p\""
+			+ " nsPrefix=\"p\"";
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -71,4 +86,143 @@ public class LogicalDiffApplicationTest extends AbstractApplicationTest {
 		assertEquals(Returns.COMPLETE.code(), result);
 	}
 
+	/**
+	 * Tests that a run restoring the workspace from its snapshot skips the import of the projects but still
+	 * performs the other startup tasks.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void restoredWorkspace() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		Path oomphFolderPath = getTestTmpFolder().resolve("oomphFolder");
+		File createdFile = getTestTmpFolder().resolve("created.txt").toFile();
+		File newSetupFile = new OomphUserModelBuilder() //
+				.setInstallationTaskLocation(oomphFolderPath.toString()) //
+				.setWorkspaceLocation(oomphFolderPath.resolve("ws").toString()) //
+				.setCreatedResources(createdFile.toURI().toString()) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		String snapshotLocation = getTestTmpFolder().resolve("snapshot").toString();
+		getContext().addArg(Options.SNAPSHOT_LOCATION_OPT, snapshotLocation,
+				getRepositoryPath().resolve(".git").toString(), newSetupFile.getAbsolutePath(), "master",
+				"master");
+		assertEquals(Returns.COMPLETE.code(), getApp().start(getContext()));
+		assertTrue(getOutput().contains("Workspace snapshot captured in "));
+		assertTrue(createdFile.delete());
+
+		MockedApplicationContext context = new MockedApplicationContext();
+		context.addArg(Options.SNAPSHOT_LOCATION_OPT, snapshotLocation, getRepositoryPath().resolve(".git")
+				.toString(), newSetupFile.getAbsolutePath(), "master", "master");
+		assertEquals(Returns.COMPLETE.code(), buildApp().start(context));
+		assertTrue(getOutput().contains("Workspace restored from " + snapshotLocation));
+		// The startup tasks other than the imports are still performed.
+		assertTrue(createdFile.exists());
+		assertEmptyErrorMessage();
+	}
+
+	/**
+	 * Tests that the deadline of the wait for EGit is the one given on the command line.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void egitTimeout() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		Path oomphFolderPath = getTestTmpFolder().resolve("oomphFolder");
+		File newSetupFile = new OomphUserModelBuilder() //
+				.setInstallationTaskLocation(oomphFolderPath.toString()) //
+				.setWorkspaceLocation(oomphFolderPath.resolve("ws").toString()) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		new ProjectBuilder(this) //
+				.create(getRepositoryPath().resolve("EmptyProject"));
+
+		addAllAndCommit("First commit");
+
+		LogicalDiffApplication app = (LogicalDiffApplication)getApp();
+		assertEquals(EGitReadiness.DEFAULT_TIMEOUT, app.getEGitTimeout());
+		getContext().addArg(Options.EGIT_TIMEOUT_OPT, "7", getRepositoryPath().resolve(".git").toString(),
+				newSetupFile.getAbsolutePath(), "master", "master");
+		assertEquals(Returns.COMPLETE.code(), app.start(getContext()));
+		assertEquals(7, app.getEGitTimeout());
+		assertEmptyErrorMessage();
+	}
+
+	/**
+	 * Tests that the headless profile does not change the result of the diff, and that the runs following a
+	 * headless run get the default preferences back.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void headlessDiff() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		Path oomphFolderPath = getTestTmpFolder().resolve("oomphFolder");
+		File newSetupFile = new OomphUserModelBuilder() //
+				.setInstallationTaskLocation(oomphFolderPath.toString()) //
+				.setWorkspaceLocation(oomphFolderPath.resolve("ws").toString()) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		File project = new ProjectBuilder(this) //
+				.addNewFileContent("model.ecore", ECORE_HEADER + "/>") //
+				.create(getRepositoryPath().resolve("HeadlessProject"));
+		RevCommit first = addAllAndCommit("First commit");
+		Files.write(project.toPath().resolve("model.ecore"), (ECORE_HEADER + ">" + EOL
+				+ "<eClassifiers xsi:type=\"ecore:EClass\" name=\"C\"/>" + EOL
+				+ "</ecore:EPackage>").getBytes(StandardCharsets.UTF_8));
+		RevCommit second = addAllAndCommit("Second commit");
+
+		List<String> preferences = HeadlessProfileTest.getDefaultPreferences();
+		String[] args = {getRepositoryPath().resolve(".git").toString(), newSetupFile.getAbsolutePath(),
+				first.name(), second.name() };
+
+		getContext().addArg(args);
+		assertEquals(Returns.COMPLETE.code(), getApp().start(getContext()));
+		String normal = getOutput();
+
+		MockedApplicationContext headlessContext = new MockedApplicationContext();
+		headlessContext.addArg(Options.HEADLESS_OPT);
+		headlessContext.addArg(args);
+		assertEquals(Returns.COMPLETE.code(), new LogicalDiffApplication().start(headlessContext));
+		String headless = getOutput().substring(normal.length());
+		assertTrue(headless.contains("Headless run: "));
+		assertEquals(getComparison(normal), getComparison(headless));
+		assertEquals(preferences, HeadlessProfileTest.getDefaultPreferences());
+
+		MockedApplicationContext nextContext = new MockedApplicationContext();
+		nextContext.addArg(args);
+		assertEquals(Returns.COMPLETE.code(), new LogicalDiffApplication().start(nextContext));
+		String next = getOutput().substring(normal.length() + headless.length());
+		assertEquals(getComparison(normal), getComparison(next));
+		assertEquals(preferences, HeadlessProfileTest.getDefaultPreferences());
+		assertEmptyErrorMessage();
+	}
+
+	/**
+	 * Gets the comparison printed by a diff, without the report of the headless profile.
+	 * 
+	 * @param output
+	 *            the output of the diff.
+	 * @return the comparison.
+	 */
+	private static String getComparison(String output) {
+		int start = output.indexOf("<?xml");
+		assertTrue(start >= 0);
+		StringBuilder comparison = new StringBuilder();
+		for (String line : output.substring(start).split(EOL)) {
+			if (!line.startsWith("Headless run: ")) {
+				comparison.append(line).append(EOL);
+			}
+		}
+		return comparison.toString();
+	}
 }
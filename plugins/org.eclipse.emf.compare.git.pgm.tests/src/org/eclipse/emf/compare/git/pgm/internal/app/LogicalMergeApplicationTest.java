@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
@@ -32,6 +33,8 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.compare.git.pgm.AbstractApplicationTest;
 import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.Options;
+import org.eclipse.emf.compare.git.pgm.util.MockedApplicationContext;
 import org.eclipse.emf.compare.git.pgm.util.OomphUserModelBuilder;
 import org.eclipse.emf.compare.git.pgm.util.ProjectBuilder;
 import org.eclipse.emf.ecore.EObject;
@@ -39,6 +42,8 @@ import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.equinox.app.IApplication;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.Test;
 
@@ -161,6 +166,76 @@ public class LogicalMergeApplicationTest extends AbstractApplicationTest {
 		assertEquals(getGit().getRepository().resolve("HEAD").getName(), commitB.getId().getName());
 	}
 
+	/**
+	 * <h3>Test the logical merge application on a fast forward</h3>
+	 * <p>
+	 * The message shows the HEAD before the merge, not the merged commit.
+	 * </p>
+	 * <h3>History:</h3>
+	 * 
+	 * <pre>
+	 * * Adds Class 1 [branch_b]
+	 * |    
+	 * |  
+	 * Initial commit (PapyrusProject3) [branch_a]
+	 * 
+	 * </pre>
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void fastForward() throws Exception {
+		Path projectPath = getRepositoryPath().resolve("PapyrusModel");
+		File project = new ProjectBuilder(this) //
+				.addContentToCopy("data/automerging/MER003/branch_a/model.di")//
+				.addContentToCopy("data/automerging/MER003/branch_a/model.uml") //
+				.addContentToCopy("data/automerging/MER003/branch_a/model.notation") //
+				.create(projectPath);
+		String branchA = "branch_a";
+		RevCommit commitA = addAllAndCommit("Initial commit [PapyrusProject3]");
+		createBranch(branchA, "master");
+
+		// Creates branch b
+		String branchB = "branch_b";
+		createBranchAndCheckout(branchB, branchA);
+
+		project = new ProjectBuilder(this) //
+				.clean(true) //
+				.addContentToCopy("data/automerging/MER003/branch_b/model.di")//
+				.addContentToCopy("data/automerging/MER003/branch_b/model.uml") //
+				.addContentToCopy("data/automerging/MER003/branch_b/model.notation") //
+				.create(projectPath);
+
+		RevCommit commitB = addAllAndCommit("Adds class 1");
+		getGit().checkout().setName(branchA).call();
+
+		getGit().close();
+
+		// Creates Oomph model
+		File userSetupFile = createPapyrusUserOomphModel(project);
+
+		// Mocks that the commands is launched from the git repository folder.
+		setCmdLocation(getRepositoryPath().toString());
+
+		// Sets args
+		getContext().addArg(getRepositoryPath().resolve(".git").toString(), userSetupFile.getAbsolutePath(),
+				branchB);
+
+		// Runs command
+		Object result = getApp().start(getContext());
+
+		// Uncomments to displays output
+		printOut();
+		printErr();
+
+		assertOutputMessageEnd("Updating " + commitA.abbreviate(7).name() + ".."
+				+ commitB.abbreviate(7).name() + EOL + "Fast-forward" + EOL);
+		assertEquals(Returns.COMPLETE.code(), result);
+
+		assertTrue(getGit().status().call().isClean());
+		assertEquals(getGit().getRepository().resolve("HEAD").getName(), commitB.getId().getName());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -809,6 +884,76 @@ public class LogicalMergeApplicationTest extends AbstractApplicationTest {
 
 	}
 
+	/**
+	 * Tests that the merge of the use case MER003 gives the same result with and without the headless
+	 * profile, and that the runs following a headless run get the default preferences back.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void headlessMerge() throws Exception {
+		Path projectPath = getRepositoryPath().resolve("MER003");
+		File project = new ProjectBuilder(this) //
+				.addContentToCopy("data/automerging/MER003/branch_a/model.di")//
+				.addContentToCopy("data/automerging/MER003/branch_a/model.uml") //
+				.addContentToCopy("data/automerging/MER003/branch_a/model.notation") //
+				.create(projectPath);
+		String branchA = "branch_a";
+		addAllAndCommit("Initial commit [PapyrusProject3]");
+		createBranch(branchA, "master");
+
+		String branchC = "branch_c";
+		createBranchAndCheckout(branchC, branchA);
+		project = new ProjectBuilder(this) //
+				.clean(true) //
+				.addContentToCopy("data/automerging/MER003/branch_c/model.di")//
+				.addContentToCopy("data/automerging/MER003/branch_c/model.uml") //
+				.addContentToCopy("data/automerging/MER003/branch_c/model.notation") //
+				.create(projectPath);
+		addAllAndCommit("Adds class 2");
+
+		String branchB = "branch_b";
+		createBranchAndCheckout(branchB, branchA);
+		project = new ProjectBuilder(this) //
+				.clean(true) //
+				.addContentToCopy("data/automerging/MER003/branch_b/model.di")//
+				.addContentToCopy("data/automerging/MER003/branch_b/model.uml") //
+				.addContentToCopy("data/automerging/MER003/branch_b/model.notation") //
+				.create(projectPath);
+		RevCommit commitB = addAllAndCommit("Adds class 1");
+
+		File userSetupFile = createPapyrusUserOomphModel(project);
+		setCmdLocation(getRepositoryPath().toString());
+		List<String> preferences = HeadlessProfileTest.getDefaultPreferences();
+		String[] args = {getRepositoryPath().resolve(".git").toString(), userSetupFile.getAbsolutePath(),
+				branchC, "-m", "My message" };
+
+		getContext().addArg(args);
+		assertEquals(Returns.COMPLETE.code(), getApp().start(getContext()));
+		assertOutputMessageEnd("Merge made by 'recursive' strategy." + EOL + EOL);
+		ObjectId mergedTree = getGit().log().call().iterator().next().getTree().getId();
+
+		// The same merge with the headless profile.
+		getGit().reset().setMode(ResetType.HARD).setRef(commitB.name()).call();
+		MockedApplicationContext headlessContext = new MockedApplicationContext();
+		headlessContext.addArg(Options.HEADLESS_OPT);
+		headlessContext.addArg(args);
+		assertEquals(Returns.COMPLETE.code(), new LogicalMergeApplication().start(headlessContext));
+		assertTrue(getOutput().contains("Headless run: "));
+		assertEquals(mergedTree, getGit().log().call().iterator().next().getTree().getId());
+		assertTrue(getGit().status().call().isClean());
+		assertEquals(preferences, HeadlessProfileTest.getDefaultPreferences());
+
+		// A normal run after the headless run.
+		getGit().reset().setMode(ResetType.HARD).setRef(commitB.name()).call();
+		MockedApplicationContext nextContext = new MockedApplicationContext();
+		nextContext.addArg(args);
+		assertEquals(Returns.COMPLETE.code(), new LogicalMergeApplication().start(nextContext));
+		assertOutputMessageEnd("Merge made by 'recursive' strategy." + EOL + EOL);
+		assertEquals(mergedTree, getGit().log().call().iterator().next().getTree().getId());
+		assertEquals(preferences, HeadlessProfileTest.getDefaultPreferences());
+	}
+
 	/**
 	 * <pre>
 	 *  * [branch_c]
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.emf.compare.git.pgm.internal.util.ProjectIndex;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.oomph.resources.ResourcesFactory;
+import org.eclipse.oomph.resources.SourceLocator;
+import org.eclipse.oomph.setup.projects.ProjectsFactory;
+import org.eclipse.oomph.setup.projects.ProjectsImportTask;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link ProjectReconciler}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class ProjectReconcilerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final IWorkspace workspace = ResourcesPlugin.getWorkspace();
+
+	@Before
+	public void setUp() throws Exception {
+		clearWorkspace();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		clearWorkspace();
+	}
+
+	@Test
+	public void discoverTest() throws Exception {
+		File root = folder.newFolder("root");
+		File a = createProject(new File(root, "a"), "A");
+		File b = createProject(new File(a, "b"), "B");
+		createProject(new File(root, "c"), "C");
+		createProject(new File(root, ".git/d"), "D");
+
+		SourceLocator sourceLocator = ResourcesFactory.eINSTANCE.createSourceLocator(root.getAbsolutePath(),
+				false);
+		sourceLocator.getExcludedPaths().add("c");
+		ProjectReconciler reconciler = new ProjectReconciler(workspace, null, null);
+		assertEquals(Collections.singletonMap("A", location(a)), reconciler
+				.discover(importTasks(sourceLocator)));
+
+		sourceLocator.setLocateNestedProjects(true);
+		Map<String, IPath> expected = new LinkedHashMap<String, IPath>();
+		expected.put("A", location(a));
+		expected.put("B", location(b));
+		assertEquals(expected, reconciler.discover(importTasks(sourceLocator)));
+	}
+
+	@Test
+	public void discoverIndexedTest() throws Exception {
+		File workTree = folder.newFolder("repo");
+		Git git = Git.init().setDirectory(workTree).call();
+		try {
+			File a = createProject(new File(workTree, "a"), "A");
+			File b = createProject(new File(workTree, "b"), "B");
+			git.add().addFilepattern(".").call();
+			git.commit().setMessage("Projects").call();
+			ProjectIndex index = ProjectIndex.get(git.getRepository());
+			// Deleted from the work tree since the commit.
+			assertTrue(new File(b, ".project").delete());
+			// Not in the index, thus not discovered.
+			createProject(new File(workTree, "c"), "C");
+
+			SourceLocator sourceLocator = ResourcesFactory.eINSTANCE.createSourceLocator(workTree
+					.getAbsolutePath(), false);
+			Map<String, IPath> projects = new ProjectReconciler(workspace, workTree, index)
+					.discover(importTasks(sourceLocator));
+			assertEquals(Collections.singletonMap("A", location(a)), projects);
+		} finally {
+			git.close();
+		}
+	}
+
+	@Test
+	public void reconcileTest() throws Exception {
+		File a = createProject(folder.newFolder("a"), "A");
+		File b = createProject(folder.newFolder("b"), "B");
+		File movedB = createProject(folder.newFolder("moved"), "B");
+		File c = createProject(folder.newFolder("c"), "C");
+
+		// Added projects.
+		Map<String, IPath> projects = new LinkedHashMap<String, IPath>();
+		projects.put("A", location(a));
+		projects.put("B", location(b));
+		ProjectReconciler reconciler = reconcile(projects);
+		assertEquals("Projects reconciled: 2 created, 0 deleted, 0 relocated, 0 kept",
+				reconciler.getSummary());
+		assertEquals(location(a), getProject("A").getLocation());
+		assertTrue(getProject("A").isOpen());
+
+		// Changed projects: B has moved, C is new and A is kept.
+		projects.put("B", location(movedB));
+		projects.put("C", location(c));
+		reconciler = reconcile(projects);
+		assertEquals("Projects reconciled: 1 created, 0 deleted, 1 relocated, 1 kept",
+				reconciler.getSummary());
+		assertEquals(location(movedB), getProject("B").getLocation());
+		assertEquals(location(c), getProject("C").getLocation());
+
+		// Removed projects: their content is kept.
+		reconciler = reconcile(Collections.singletonMap("C", location(c)));
+		assertEquals("Projects reconciled: 0 created, 2 deleted, 0 relocated, 1 kept",
+				reconciler.getSummary());
+		assertFalse(getProject("A").exists());
+		assertFalse(getProject("B").exists());
+		assertTrue(new File(a, ".project").isFile());
+		assertTrue(new File(movedB, ".project").isFile());
+	}
+
+	@Test
+	public void keptProjectRefreshedTest() throws Exception {
+		File a = createProject(folder.newFolder("a"), "A");
+		reconcile(Collections.singletonMap("A", location(a)));
+		assertFalse(getProject("A").getFile("model.txt").exists());
+
+		Files.write(new File(a, "model.txt").toPath(), "model".getBytes(StandardCharsets.UTF_8));
+		getProject("A").close(new NullProgressMonitor());
+		ProjectReconciler reconciler = reconcile(Collections.singletonMap("A", location(a)));
+		assertEquals("Projects reconciled: 0 created, 0 deleted, 0 relocated, 1 kept",
+				reconciler.getSummary());
+		assertTrue(getProject("A").isOpen());
+		assertTrue(getProject("A").getFile("model.txt").exists());
+	}
+
+	/**
+	 * The import tasks are performed on a clean workspace when their source locators are not supported.
+	 */
+	@Test
+	public void unsupportedSourceLocatorTest() throws Exception {
+		File root = folder.newFolder("root");
+		createProject(new File(root, "a"), "A");
+		ProjectReconciler reconciler = new ProjectReconciler(workspace, null, null);
+
+		SourceLocator maven = ResourcesFactory.eINSTANCE.createSourceLocator(root.getAbsolutePath(), false);
+		maven.getProjectFactories().add(ResourcesFactory.eINSTANCE.createMavenProjectFactory());
+		assertNull(reconciler.discover(importTasks(maven)));
+
+		SourceLocator noRoot = ResourcesFactory.eINSTANCE.createSourceLocator();
+		assertNull(reconciler.discover(importTasks(noRoot)));
+
+		SourceLocator supported = ResourcesFactory.eINSTANCE.createSourceLocator(root.getAbsolutePath(),
+				false);
+		assertNull(reconciler.discover(importTasks(supported, maven)));
+	}
+
+	private ProjectReconciler reconcile(Map<String, IPath> projects) throws Exception {
+		ProjectReconciler reconciler = new ProjectReconciler(workspace, null, null);
+		reconciler.reconcile(projects, new NullProgressMonitor());
+		return reconciler;
+	}
+
+	private IProject getProject(String name) {
+		return workspace.getRoot().getProject(name);
+	}
+
+	private void clearWorkspace() throws Exception {
+		for (IProject project : workspace.getRoot().getProjects()) {
+			project.delete(false, true, new NullProgressMonitor());
+		}
+	}
+
+	private static List<ProjectsImportTask> importTasks(SourceLocator... sourceLocators) {
+		ProjectsImportTask importTask = ProjectsFactory.eINSTANCE.createProjectsImportTask();
+		importTask.getSourceLocators().addAll(Arrays.asList(sourceLocators));
+		return Collections.singletonList(importTask);
+	}
+
+	private static IPath location(File folder) {
+		return new Path(folder.getAbsolutePath());
+	}
+
+	private static File createProject(File location, String name) throws IOException {
+		location.mkdirs();
+		String description = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<projectDescription>\n<name>" + name
+				+ "</name>\n<comment></comment>\n<projects></projects>\n<buildSpec></buildSpec>\n"
+				+ "<natures></natures>\n</projectDescription>\n";
+		Files.write(new File(location, ".project").toPath(), description.getBytes(StandardCharsets.UTF_8));
+		return location;
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of {@link WorkspaceBatch}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class WorkspaceBatchTest {
+
+	private static final int FILE_COUNT = 5;
+
+	private final IWorkspace workspace = ResourcesPlugin.getWorkspace();
+
+	private boolean autoBuilding;
+
+	private IProject project;
+
+	@Before
+	public void setUp() throws Exception {
+		autoBuilding = workspace.isAutoBuilding();
+		setAutoBuilding(true);
+		project = workspace.getRoot().getProject("WorkspaceBatchTest");
+		project.create(new NullProgressMonitor());
+		project.open(new NullProgressMonitor());
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		project.delete(true, true, new NullProgressMonitor());
+		setAutoBuilding(autoBuilding);
+	}
+
+	@Test
+	public void autoBuildTest() throws Exception {
+		WorkspaceBatch batch = new WorkspaceBatch(workspace);
+		final boolean[] autoBuildingInBatch = new boolean[1];
+		assertNull(batch.run(new WorkspaceBatch.Step() {
+			public Integer perform() {
+				autoBuildingInBatch[0] = workspace.isAutoBuilding();
+				return null;
+			}
+		}));
+		assertFalse(autoBuildingInBatch[0]);
+		assertTrue(workspace.isAutoBuilding());
+	}
+
+	@Test
+	public void failureTest() throws Exception {
+		final Die die = new DiesOn(DeathType.ERROR).displaying("failure").ready();
+		try {
+			new WorkspaceBatch(workspace).run(new WorkspaceBatch.Step() {
+				public Integer perform() throws Die {
+					throw die;
+				}
+			});
+			fail();
+		} catch (Die e) {
+			assertSame(die, e);
+		}
+		// The workspace description is restored even if the step fails.
+		assertTrue(workspace.isAutoBuilding());
+	}
+
+	@Test
+	public void coalescedEventsTest() throws Exception {
+		// Without batch, each file creation is notified on its own.
+		final AtomicInteger unbatched = new AtomicInteger();
+		IResourceChangeListener listener = new IResourceChangeListener() {
+			public void resourceChanged(IResourceChangeEvent event) {
+				unbatched.incrementAndGet();
+			}
+		};
+		workspace.addResourceChangeListener(listener);
+		try {
+			createFiles("unbatched");
+		} finally {
+			workspace.removeResourceChangeListener(listener);
+		}
+		assertTrue(unbatched.get() >= FILE_COUNT);
+
+		WorkspaceBatch batch = new WorkspaceBatch(workspace);
+		assertEquals(Integer.valueOf(0), batch.run(new WorkspaceBatch.Step() {
+			public Integer perform() throws Die {
+				try {
+					createFiles("batched");
+				} catch (CoreException e) {
+					throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+				}
+				return Integer.valueOf(0);
+			}
+		}));
+		assertTrue(batch.getEventCount() >= 1);
+		assertTrue(batch.getEventCount() < unbatched.get());
+		for (int i = 0; i < FILE_COUNT; i++) {
+			assertTrue(project.getFile("batched" + i + ".txt").exists());
+		}
+	}
+
+	private void createFiles(String prefix) throws CoreException {
+		for (int i = 0; i < FILE_COUNT; i++) {
+			project.getFile(prefix + i + ".txt").create(new ByteArrayInputStream(new byte[0]), true,
+					new NullProgressMonitor());
+		}
+	}
+
+	private void setAutoBuilding(boolean value) throws CoreException {
+		IWorkspaceDescription description = workspace.getDescription();
+		description.setAutoBuilding(value);
+		workspace.setDescription(description);
+	}
+}
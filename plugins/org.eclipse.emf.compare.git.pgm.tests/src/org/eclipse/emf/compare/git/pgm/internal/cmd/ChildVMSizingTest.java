@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link ChildVMSizing}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class ChildVMSizingTest {
+
+	private static final long GIGABYTE = 1024L * 1024L * 1024L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private Repository repository;
+
+	@Before
+	public void setUp() throws Exception {
+		git = Git.init().setDirectory(folder.newFolder("repo")).call();
+		repository = git.getRepository();
+	}
+
+	@After
+	public void tearDown() {
+		repository.close();
+	}
+
+	@Test
+	public void maxHeapTest() {
+		assertEquals(512, ChildVMSizing.getMaxHeap(0, 0, -1));
+		// 256 MB of runtime, 12 x 100 MB of models and 1000 x 64 KB of resources.
+		assertEquals(1536, ChildVMSizing.getMaxHeap(100 * 1024 * 1024, 1000, 16 * GIGABYTE));
+		assertEquals(4096, ChildVMSizing.getMaxHeap(GIGABYTE, 1000, -1));
+		assertEquals(3072, ChildVMSizing.getMaxHeap(GIGABYTE, 1000, 4 * GIGABYTE));
+	}
+
+	@Test
+	public void vmArgumentsTest() {
+		assertEquals(Arrays.asList("-XX:+IgnoreUnrecognizedVMOptions", "-Xmx512m", "-Xms256m",
+				"-XX:+UseSerialGC"), ChildVMSizing.getVMArguments(512));
+		assertEquals(Arrays.asList("-XX:+IgnoreUnrecognizedVMOptions", "-Xmx2048m", "-Xms1024m",
+				"-XX:+UseParallelGC"), ChildVMSizing.getVMArguments(2048));
+		assertEquals(Arrays.asList("-XX:+IgnoreUnrecognizedVMOptions", "-Xmx8192m", "-Xms4096m",
+				"-XX:+UseG1GC", "-XX:+UseStringDeduplication"), ChildVMSizing.getVMArguments(8192));
+	}
+
+	@Test
+	public void resolveTest() {
+		assertEquals("model/b.ecore", ChildVMSizing.resolve("model/a.ecore", "b.ecore"));
+		assertEquals("other/c.ecore", ChildVMSizing.resolve("model/a.ecore", "../other/c.ecore"));
+		assertEquals("model/sub/d.ecore", ChildVMSizing.resolve("model/a.ecore", "./sub/d.ecore"));
+		assertNull(ChildVMSizing.resolve("a.ecore", "../outside.ecore"));
+	}
+
+	@Test
+	public void estimateTest() throws IOException, GitAPIException {
+		String a = "<eClassifiers eSuperTypes=\"b.ecore#//B\"/>";
+		String b = "<eClassifiers eSuperTypes=\"c.ecore#//C\"/>";
+		String c = "<eClassifiers name=\"C\"/>";
+		write("model/b.ecore", b);
+		write("model/c.ecore", c);
+		write("README", "Some text");
+		RevCommit base = commit();
+		write("README", "Some other text");
+		write("model/a.ecore", a);
+		RevCommit tip = commit();
+
+		ChildVMSizing sizing = new ChildVMSizing(repository);
+		sizing.estimate(base, Collections.<ObjectId> singletonList(tip));
+		// a.ecore and its logical model, on the side of the tip only.
+		assertEquals(3, sizing.getModelFiles());
+		assertEquals(a.length() + b.length() + c.length(), sizing.getModelBytes());
+	}
+
+	private void write(String path, String content) throws IOException {
+		File file = new File(repository.getWorkTree(), path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private RevCommit commit() throws GitAPIException {
+		git.add().addFilepattern(".").call();
+		return git.commit().setMessage("Commit").call();
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link ClassDataSharing}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class ClassDataSharingTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File cdsFolder;
+
+	@Before
+	public void setUp() {
+		cdsFolder = new File(folder.getRoot(), ClassDataSharing.CDS_FOLDER);
+	}
+
+	@Test
+	public void dumpTest() throws IOException {
+		ClassDataSharing classDataSharing = new ClassDataSharing(cdsFolder, "key");
+		List<String> vmArgs = new ArrayList<String>();
+		assertFalse(classDataSharing.addSharedArchiveArguments(vmArgs));
+		assertTrue(vmArgs.isEmpty());
+
+		File dump = classDataSharing.addDumpArguments(vmArgs);
+		assertFalse(dump.exists());
+		assertEquals(Arrays.asList("-XX:+IgnoreUnrecognizedVMOptions", "-XX:ArchiveClassesAtExit="
+				+ dump.getAbsolutePath()), vmArgs);
+	}
+
+	@Test
+	public void publishTest() throws IOException {
+		ClassDataSharing classDataSharing = new ClassDataSharing(cdsFolder, "key");
+		File dump = classDataSharing.addDumpArguments(new ArrayList<String>());
+		Files.write(dump.toPath(), new byte[] {1 });
+		assertTrue(classDataSharing.publish(dump));
+		assertFalse(dump.exists());
+
+		List<String> vmArgs = new ArrayList<String>();
+		assertTrue(classDataSharing.addSharedArchiveArguments(vmArgs));
+		assertEquals(Arrays.asList("-XX:+IgnoreUnrecognizedVMOptions", "-XX:SharedArchiveFile="
+				+ classDataSharing.getArchive().getAbsolutePath()), vmArgs);
+	}
+
+	@Test
+	public void nothingDumpedTest() throws IOException {
+		ClassDataSharing classDataSharing = new ClassDataSharing(cdsFolder, "key");
+		File dump = classDataSharing.addDumpArguments(new ArrayList<String>());
+		assertFalse(classDataSharing.publish(dump));
+		assertFalse(classDataSharing.getArchive().exists());
+	}
+
+	@Test
+	public void staleArchiveTest() throws IOException {
+		ClassDataSharing previous = new ClassDataSharing(cdsFolder, "previous");
+		File dump = previous.addDumpArguments(new ArrayList<String>());
+		Files.write(dump.toPath(), new byte[] {1 });
+		previous.publish(dump);
+
+		ClassDataSharing current = new ClassDataSharing(cdsFolder, "current");
+		dump = current.addDumpArguments(new ArrayList<String>());
+		Files.write(dump.toPath(), new byte[] {1 });
+		current.publish(dump);
+
+		assertFalse(previous.getArchive().exists());
+		assertTrue(current.getArchive().exists());
+	}
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link ConfigurationSnapshot}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class ConfigurationSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path configuration;
+
+	private File snapshots;
+
+	@Before
+	public void setUp() throws IOException {
+		Path eclipse = folder.newFolder("eclipse").toPath();
+		configuration = Files.createDirectories(eclipse.resolve("configuration"));
+		Files.write(configuration.resolve("config.ini"), Arrays.asList(
+				"eclipse.p2.data.area=@config.dir/../p2", "osgi.bundles.defaultStartLevel=4"),
+				StandardCharsets.ISO_8859_1);
+		Files.createDirectories(configuration.resolve("org.eclipse.equinox.simpleconfigurator"));
+		Files.write(configuration.resolve("org.eclipse.equinox.simpleconfigurator").resolve("bundles.info"),
+				Arrays.asList("a,1.0.0,plugins/a_1.0.0.jar,4,false"), StandardCharsets.UTF_8);
+		Files.createDirectories(configuration.resolve("org.eclipse.osgi").resolve("framework"));
+		Files.write(configuration.resolve("1412345678.log"), Arrays.asList("error"), StandardCharsets.UTF_8);
+		snapshots = new File(folder.getRoot(), "snapshots");
+	}
+
+	@Test
+	public void prepareTest() throws IOException {
+		ConfigurationSnapshot snapshot = new ConfigurationSnapshot(snapshots, configuration.getParent()
+				.toFile(), "bundles");
+		assertFalse(snapshot.isFrozen());
+
+		Path prepared = snapshot.prepare().toPath();
+		assertTrue(Files.isRegularFile(prepared.resolve("org.eclipse.equinox.simpleconfigurator").resolve(
+				"bundles.info")));
+		assertFalse(Files.exists(prepared.resolve("org.eclipse.osgi")));
+		assertFalse(Files.exists(prepared.resolve("1412345678.log")));
+
+		Properties configIni = new Properties();
+		InputStream input = Files.newInputStream(prepared.resolve("config.ini"));
+		try {
+			configIni.load(input);
+		} finally {
+			input.close();
+		}
+		String configDir = configuration.toFile().getAbsoluteFile().toURI().getPath();
+		assertEquals(configDir + "../p2", configIni.getProperty("eclipse.p2.data.area"));
+		assertEquals("4", configIni.getProperty("osgi.bundles.defaultStartLevel"));
+	}
+
+	@Test
+	public void freezeTest() throws IOException {
+		ConfigurationSnapshot snapshot = new ConfigurationSnapshot(snapshots, configuration.getParent()
+				.toFile(), "bundles");
+		File prepared = snapshot.prepare();
+		new File(prepared, "org.eclipse.osgi").mkdir();
+		assertTrue(snapshot.freeze(prepared));
+		assertTrue(snapshot.isFrozen());
+		assertFalse(prepared.exists());
+	}
+
+	@Test
+	public void notWarmedUpTest() throws IOException {
+		ConfigurationSnapshot snapshot = new ConfigurationSnapshot(snapshots, configuration.getParent()
+				.toFile(), "bundles");
+		File prepared = snapshot.prepare();
+		assertFalse(snapshot.freeze(prepared));
+		assertFalse(snapshot.isFrozen());
+		assertFalse(prepared.exists());
+	}
+
+	@Test
+	public void changedBundleSetTest() throws IOException {
+		ConfigurationSnapshot previous = new ConfigurationSnapshot(snapshots, configuration.getParent()
+				.toFile(), "previous");
+		File prepared = previous.prepare();
+		new File(prepared, "org.eclipse.osgi").mkdir();
+		previous.freeze(prepared);
+
+		ConfigurationSnapshot current = new ConfigurationSnapshot(snapshots, configuration.getParent()
+				.toFile(), "current");
+		assertFalse(current.isFrozen());
+		prepared = current.prepare();
+		new File(prepared, "org.eclipse.osgi").mkdir();
+		current.freeze(prepared);
+
+		assertTrue(current.isFrozen());
+		assertFalse(previous.isFrozen());
+	}
+}
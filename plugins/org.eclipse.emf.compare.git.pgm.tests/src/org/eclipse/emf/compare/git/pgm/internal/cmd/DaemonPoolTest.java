@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol;
+import org.eclipse.emf.compare.git.pgm.internal.app.LogicalDiffApplication;
+import org.eclipse.jgit.util.io.ThrowingPrintWriter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link DaemonPool}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class DaemonPoolTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<File> stateFiles;
+
+	@Before
+	public void setUp() {
+		File daemonFolder = new File(folder.getRoot(), "daemon");
+		stateFiles = Arrays.asList(new File(daemonFolder, "0.properties"), new File(daemonFolder,
+				"1.properties"), new File(daemonFolder, "2.properties"));
+	}
+
+	@Test
+	public void markEmptySlotsTest() {
+		DaemonPool pool = new DaemonPool(stateFiles);
+		assertEquals(Arrays.asList(0, 1, 2), pool.markEmptySlots());
+		// Being started by the first launcher.
+		assertEquals(Collections.emptyList(), pool.markEmptySlots());
+	}
+
+	@Test
+	public void runningSlotsTest() throws IOException {
+		DaemonProtocol.writeState(stateFiles.get(0), 4242, "token");
+		File lockFile = DaemonProtocol.getLockFile(stateFiles.get(2));
+		FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+		try {
+			channel.lock();
+			// The daemon of the third slot is exiting.
+			assertEquals(Arrays.asList(1), new DaemonPool(stateFiles).markEmptySlots());
+		} finally {
+			channel.close();
+		}
+	}
+
+	@Test
+	public void noIdleDaemonTest() throws IOException {
+		ThrowingPrintWriter out = new ThrowingPrintWriter(new PrintWriter(new StringWriter()));
+		DaemonPool pool = new DaemonPool(stateFiles);
+		assertNull(pool.execute(LogicalDiffApplication.APPLICATION_ID, Arrays.asList("/repo/.git"), out,
+				true));
+
+		// State file left by a daemon that did not exit cleanly.
+		DaemonProtocol.writeState(stateFiles.get(1), 1, "token");
+		assertNull(pool.execute(LogicalDiffApplication.APPLICATION_ID, Arrays.asList("/repo/.git"), out,
+				true));
+		assertFalse(stateFiles.get(1).exists());
+	}
+}
@@ -12,9 +12,16 @@ package org.eclipse.emf.compare.git.pgm.internal.cmd;
 
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
 
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.compare.git.pgm.AbstractLogicalAppTest;
@@ -24,6 +31,8 @@ import org.eclipse.emf.compare.git.pgm.suite.AllIntegrationTests;
 import org.eclipse.emf.compare.git.pgm.util.OomphUserModelBuilder;
 import org.eclipse.emf.compare.git.pgm.util.ProjectBuilder;
 import org.eclipse.equinox.app.IApplication;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.oomph.p2.P2Factory;
 import org.junit.Test;
 
 /**
@@ -39,6 +48,12 @@ import org.junit.Test;
 @SuppressWarnings("nls")
 public class LogicalDiffIntegrationTest extends AbstractLogicalAppTest {
 
+	private static final String ECORE_HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + EOL
+			+ "<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\""
+			+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+			+ " xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\" name=\"p\" nsURI=\"http://p\""
+			+ " nsPrefix=\"p\"";
+
 	@Override
 	protected IApplication buildApp() {
 		return new LogicalApp(URI.createURI(
@@ -74,4 +89,142 @@ public class LogicalDiffIntegrationTest extends AbstractLogicalAppTest {
 		assertEmptyErrorMessage();
 		assertEquals(Returns.COMPLETE.code(), result);
 	}
+
+	@Test
+	public void textOnlyDiffInLauncherTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		// The installation would be created by the provisioning.
+		Path installationPath = getTestTmpFolder().resolve("notProvisioned");
+		File newSetupFile = new OomphUserModelBuilder() //
+				.setInstallationTaskLocation(installationPath.toString()) //
+				.setWorkspaceLocation(getTestTmpFolder().resolve("oomphFolder").resolve("ws").toString()) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		File project = new ProjectBuilder(this) //
+				.addNewFileContent("file.txt", "base") //
+				.create(getRepositoryPath().resolve("TextProject"));
+		RevCommit first = addAllAndCommit("First commit");
+		Files.write(project.toPath().resolve("file.txt"), "changed".getBytes(StandardCharsets.UTF_8));
+		RevCommit second = addAllAndCommit("Second commit");
+
+		getContext().addArg(LogicalDiffCommand.LOGICAL_DIFF_CMD_NAME, newSetupFile.getAbsolutePath(),
+				first.name(), second.name());
+		Object result = getApp().start(getContext());
+
+		printOut();
+		printErr();
+
+		assertEquals(Returns.COMPLETE.code(), result);
+		assertTrue(getOutput().contains("diff --git a/TextProject/file.txt b/TextProject/file.txt"));
+		// Printed as git does, without trailing empty line.
+		assertTrue(getOutput().endsWith("+changed\n\\ No newline at end of file\n"));
+		LogicalDiffCommand diffCmd = (LogicalDiffCommand)getLogicalCommand();
+		assertEquals(1, diffCmd.getTextEntries().size());
+		assertTrue(diffCmd.getModelEntries().isEmpty());
+		assertFalse(diffCmd.needsInstallation());
+		assertNull(diffCmd.getPerformer());
+		assertFalse(installationPath.toFile().exists());
+	}
+
+	@Test
+	public void mixedDiffTest() throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+
+		Path oomphFolderPath = getTestTmpFolder().resolve("oomphFolder");
+		File newSetupFile = new OomphUserModelBuilder() //
+				.setInstallationTaskLocation(AllIntegrationTests.getProvidedPlatformLocation().toString()) //
+				.setWorkspaceLocation(oomphFolderPath.resolve("ws").toString()) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		File project = new ProjectBuilder(this) //
+				.addNewFileContent("file.txt", "base") //
+				.addNewFileContent("model.ecore", ECORE_HEADER + "/>") //
+				.create(getRepositoryPath().resolve("MixedProject"));
+		RevCommit first = addAllAndCommit("First commit");
+		Files.write(project.toPath().resolve("file.txt"), "changed".getBytes(StandardCharsets.UTF_8));
+		Files.write(project.toPath().resolve("model.ecore"), (ECORE_HEADER + ">" + EOL
+				+ "<eClassifiers xsi:type=\"ecore:EClass\" name=\"C\"/>" + EOL + "</ecore:EPackage>")
+				.getBytes(StandardCharsets.UTF_8));
+		RevCommit second = addAllAndCommit("Second commit");
+
+		getContext().addArg(LogicalDiffCommand.LOGICAL_DIFF_CMD_NAME, newSetupFile.getAbsolutePath(),
+				first.name(), second.name());
+		Object result = getApp().start(getContext());
+
+		printOut();
+		printErr();
+
+		assertEquals(Returns.COMPLETE.code(), result);
+		// The launcher displays the text file, the logical diff application only handles the model.
+		String textHeader = "diff --git a/MixedProject/file.txt b/MixedProject/file.txt";
+		String output = getOutput();
+		assertTrue(output.contains(textHeader));
+		assertEquals(output.indexOf(textHeader), output.lastIndexOf(textHeader));
+		LogicalDiffCommand diffCmd = (LogicalDiffCommand)getLogicalCommand();
+		assertEquals(1, diffCmd.getTextEntries().size());
+		assertEquals(1, diffCmd.getModelEntries().size());
+		assertEquals("MixedProject/model.ecore", diffCmd.getModelEntries().get(0).getNewPath());
+		assertNotNull(diffCmd.getPerformer());
+	}
+
+	@Test
+	public void inProcessDiffTest() throws Exception {
+		// The launcher runtime holds the required bundle and uses the workspace of the setup.
+		RevCommit[] commits = createModelChange("InProcessProject");
+		File newSetupFile = new OomphUserModelBuilder() //
+				.setInstallationTaskLocation(AllIntegrationTests.getProvidedPlatformLocation().toString()) //
+				.setWorkspaceLocation(getWorkspaceLocation().getAbsolutePath()) //
+				.setRequirements("org.eclipse.emf.compare") //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		getContext().addArg(LogicalDiffCommand.LOGICAL_DIFF_CMD_NAME, newSetupFile.getAbsolutePath(),
+				commits[0].name(), commits[1].name());
+		Object result = getApp().start(getContext());
+
+		printOut();
+		printErr();
+
+		assertEquals(Returns.COMPLETE.code(), result);
+		assertTrue(((LogicalDiffCommand)getLogicalCommand()).hasRunInProcess());
+		assertFalse(getOutput().contains("Launching the installed product..."));
+	}
+
+	@Test
+	public void spawnedDiffTest() throws Exception {
+		// The feature is installed in the provided platform but not in the launcher runtime.
+		String feature = "org.eclipse.emf.compare.feature.group";
+		assertFalse(LauncherRuntime.provides(Collections.singleton(P2Factory.eINSTANCE
+				.createRequirement(feature))));
+		RevCommit[] commits = createModelChange("SpawnedProject");
+		File newSetupFile = new OomphUserModelBuilder() //
+				.setInstallationTaskLocation(AllIntegrationTests.getProvidedPlatformLocation().toString()) //
+				.setWorkspaceLocation(getWorkspaceLocation().getAbsolutePath()) //
+				.setRequirements(feature) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		getContext().addArg(LogicalDiffCommand.LOGICAL_DIFF_CMD_NAME, newSetupFile.getAbsolutePath(),
+				commits[0].name(), commits[1].name());
+		Object result = getApp().start(getContext());
+
+		printOut();
+		printErr();
+
+		assertEquals(Returns.COMPLETE.code(), result);
+		assertFalse(((LogicalDiffCommand)getLogicalCommand()).hasRunInProcess());
+		assertTrue(getOutput().contains("Launching the installed product..."));
+	}
+
+	private RevCommit[] createModelChange(String projectName) throws Exception {
+		setCmdLocation(getRepositoryPath().toString());
+		File project = new ProjectBuilder(this) //
+				.addNewFileContent("model.ecore", ECORE_HEADER + "/>") //
+				.create(getRepositoryPath().resolve(projectName));
+		RevCommit first = addAllAndCommit("First commit");
+		Files.write(project.toPath().resolve("model.ecore"), (ECORE_HEADER + ">" + EOL
+				+ "<eClassifiers xsi:type=\"ecore:EClass\" name=\"C\"/>" + EOL + "</ecore:EPackage>")
+				.getBytes(StandardCharsets.UTF_8));
+		RevCommit second = addAllAndCommit("Second commit");
+		return new RevCommit[] {first, second };
+	}
 }
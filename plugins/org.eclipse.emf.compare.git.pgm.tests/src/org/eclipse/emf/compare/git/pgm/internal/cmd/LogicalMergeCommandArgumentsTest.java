@@ -43,19 +43,55 @@ public class LogicalMergeCommandArgumentsTest extends AbstractLogicalCommandTest
 	protected String getExpectedUsage() {
 		//@formatter:off
 		return EOL //
-				+ "logicalmerge <setup> <commit> [--debug (-d)] [--git-dir gitFolderPath] [--help (-h)] [--show-stack-trace] [-m message]" + EOL 
-				+ EOL 
-				+ " <setup>                 : Path to the setup file. The setup file is a Oomph" + EOL 
-				+ "                           model." +EOL
-				+ " <commit>                : Commit ID or branch name to merge." + EOL 
-				+ " --debug (-d)            : Launched the provisonned eclipse in debug mode."+ EOL
-				+ " --git-dir gitFolderPath : Path to the .git folder of your repository."+ EOL
-				+ " --help (-h)             : Dispays help for this command." + EOL 
-				+ " --show-stack-trace      : Use this option to display java stack trace in" + EOL
-				+ "                           console on error." + EOL
-				+ " -m message              : Set the commit message to be used for the merge" + EOL 
-				+ "                           commit (in case one is created)." + EOL 
-				+ EOL; 
+				+ "logicalmerge <setup> <commit> [--child-vm-args <args>] [--daemon] [--debug (-d)] [--egit-timeout <seconds>] [--frozen-config] [--git-dir gitFolderPath] [--headless] [--help (-h)] [--offline-first] [--pool <size>] [--pool-max-heap <percent>] [--pool-max-requests <count>] [--reprovision] [--show-stack-trace] [--sparse-import] [--trace <file>] [--workspace-slots <count>] [--workspace-snapshot] [-m message]" + EOL
+				+ EOL
+				+ " <setup>                     : Path to the setup file. The setup file is a" + EOL
+				+ "                               Oomph model." + EOL
+				+ " <commit>                    : Commit ID or branch name to merge." + EOL
+				+ " --child-vm-args <args>      : VM arguments of the eclipse process, replacing" + EOL
+				+ "                               the heap and garbage collector settings computed" + EOL
+				+ "                               from the size of the models." + EOL
+				+ " --daemon                    : Runs the command in a resident eclipse process," + EOL
+				+ "                               started on first use." + EOL
+				+ " --debug (-d)                : Launched the provisonned eclipse in debug mode." + EOL
+				+ " --egit-timeout <seconds>    : Maximum time to wait for EGit to share the" + EOL
+				+ "                               imported projects before connecting them" + EOL
+				+ "                               explicitly." + EOL
+				+ " --frozen-config             : Starts the product from a pre-resolved" + EOL
+				+ "                               configuration area, kept until the installation" + EOL
+				+ "                               changes." + EOL
+				+ " --git-dir gitFolderPath     : Path to the .git folder of your repository." + EOL
+				+ " --headless                  : Turns off the EGit and Team background work not" + EOL
+				+ "                               needed by the command and reports the CPU time." + EOL
+				+ " --help (-h)                 : Dispays help for this command." + EOL
+				+ " --offline-first             : Provisions from the local p2 caches and mirror," + EOL
+				+ "                               going online only if something is missing." + EOL
+				+ " --pool <size>               : Runs the command in a pool of resident eclipse" + EOL
+				+ "                               processes of the given size, refilled in the" + EOL
+				+ "                               background." + EOL
+				+ " --pool-max-heap <percent>   : Share of the maximum heap still used after the" + EOL
+				+ "                               garbage collections beyond which a daemon of the" + EOL
+				+ "                               pool is recycled, 75 by default." + EOL
+				+ " --pool-max-requests <count> : Number of requests after which a daemon of the" + EOL
+				+ "                               pool is recycled, 20 by default." + EOL
+				+ " --reprovision               : Provisions the installation even if it is up to" + EOL
+				+ "                               date." + EOL
+				+ " --show-stack-trace          : Use this option to display java stack trace in" + EOL
+				+ "                               console on error." + EOL
+				+ " --sparse-import             : Imports only the projects holding the changed" + EOL
+				+ "                               files and the projects they refer to." + EOL
+				+ " --trace <file>              : Writes the timeline of the phases of the" + EOL
+				+ "                               command, in the launcher and in the eclipse" + EOL
+				+ "                               process, to the given file in the Chrome trace" + EOL
+				+ "                               event format." + EOL
+				+ " --workspace-slots <count>   : Number of workspaces shared by the concurrent" + EOL
+				+ "                               commands run with the same setup, when the setup" + EOL
+				+ "                               does not define the workspace." + EOL
+				+ " --workspace-snapshot        : Restores the imported workspace from a snapshot" + EOL
+				+ "                               taken once per setup and project layout." + EOL
+				+ " -m message                  : Set the commit message to be used for the merge" + EOL
+				+ "                               commit (in case one is created)." + EOL
+				+ EOL;
 		//@formatter:on
 	}
 
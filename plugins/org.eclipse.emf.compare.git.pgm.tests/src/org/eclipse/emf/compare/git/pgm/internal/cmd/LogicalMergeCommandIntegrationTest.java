@@ -13,10 +13,14 @@ package org.eclipse.emf.compare.git.pgm.internal.cmd;
 import static org.eclipse.emf.compare.git.pgm.internal.cmd.LogicalMergeCommand.LOGICAL_MERGE_CMD_NAME;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import org.eclipse.emf.common.util.URI;
@@ -199,4 +203,114 @@ public class LogicalMergeCommandIntegrationTest extends AbstractLogicalAppTest {
 		assertEquals("My message", mergeCmd.getMessage());
 
 	}
+
+	@Test
+	public void textOnlyMergeInLauncherTest() throws Exception {
+		// The installation would be created by the provisioning.
+		Path installationPath = getTestTmpFolder().resolve("notProvisioned");
+		File setupFile = new OomphUserModelBuilder() //
+				.setInstallationTaskLocation(installationPath.toString()) //
+				.setWorkspaceLocation(getTestTmpFolder().resolve("oomphFolder").resolve("ws").toString()) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		setCmdLocation(getRepositoryPath().toString());
+
+		File project = new ProjectBuilder(this) //
+				.addNewFileContent("file.txt", "base") //
+				.create(getRepositoryPath().resolve("TextProject"));
+		addAllAndCommit("First commit");
+
+		createBranchAndCheckout("branch", "master");
+		Files.write(project.toPath().resolve("other.txt"), "branch".getBytes(StandardCharsets.UTF_8));
+		addAllAndCommit("Branch commit");
+
+		getGit().checkout().setName("master").call();
+		Files.write(project.toPath().resolve("file.txt"), "master".getBytes(StandardCharsets.UTF_8));
+		addAllAndCommit("Master commit");
+
+		getContext().addArg(LOGICAL_MERGE_CMD_NAME, setupFile.getAbsolutePath(), "branch");
+		Object result = getApp().start(getContext());
+
+		printOut();
+		printErr();
+
+		assertOutputMessageEnd("Merge made by 'recursive' strategy." + EOL + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.COMPLETE.code(), result);
+		// Merged by JGit in the launcher.
+		assertNull(getLogicalCommand().getPerformer());
+		assertFalse(installationPath.toFile().exists());
+		assertTrue(project.toPath().resolve("other.txt").toFile().isFile());
+		assertEquals(2, getGit().log().call().iterator().next().getParentCount());
+	}
+
+	@Test
+	public void fastForwardInLauncherTest() throws Exception {
+		// The installation would be created by the provisioning.
+		Path installationPath = getTestTmpFolder().resolve("notProvisioned");
+		File setupFile = new OomphUserModelBuilder() //
+				.setInstallationTaskLocation(installationPath.toString()) //
+				.setWorkspaceLocation(getTestTmpFolder().resolve("oomphFolder").resolve("ws").toString()) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		setCmdLocation(getRepositoryPath().toString());
+
+		// A fast forward does not need the logical merge, even on models.
+		File project = new ProjectBuilder(this) //
+				.addNewFileContent("model.uml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?><base/>") //
+				.create(getRepositoryPath().resolve("ModelProject"));
+		RevCommit first = addAllAndCommit("First commit");
+
+		createBranchAndCheckout("branch", "master");
+		Files.write(project.toPath().resolve("model.uml"),
+				"<?xml version=\"1.0\" encoding=\"UTF-8\"?><branch/>".getBytes(StandardCharsets.UTF_8));
+		RevCommit branch = addAllAndCommit("Branch commit");
+		getGit().checkout().setName("master").call();
+
+		getContext().addArg(LOGICAL_MERGE_CMD_NAME, setupFile.getAbsolutePath(), "branch");
+		Object result = getApp().start(getContext());
+
+		printOut();
+		printErr();
+
+		assertOutputMessageEnd("Updating " + first.abbreviate(7).name() + ".." + branch.abbreviate(7).name()
+				+ EOL + "Fast-forward" + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.COMPLETE.code(), result);
+		assertNull(getLogicalCommand().getPerformer());
+		assertFalse(installationPath.toFile().exists());
+		assertEquals(branch, getGit().getRepository().resolve("master"));
+	}
+
+	@Test
+	public void alreadyUpToDateInLauncherTest() throws Exception {
+		// The installation would be created by the provisioning.
+		Path installationPath = getTestTmpFolder().resolve("notProvisioned");
+		File setupFile = new OomphUserModelBuilder() //
+				.setInstallationTaskLocation(installationPath.toString()) //
+				.setWorkspaceLocation(getTestTmpFolder().resolve("oomphFolder").resolve("ws").toString()) //
+				.saveTo(getTestTmpFolder().resolve("setup.setup").toString());
+
+		setCmdLocation(getRepositoryPath().toString());
+
+		File project = new ProjectBuilder(this) //
+				.addNewFileContent("model.uml", "<?xml version=\"1.0\" encoding=\"UTF-8\"?><base/>") //
+				.create(getRepositoryPath().resolve("ModelProject"));
+		addAllAndCommit("First commit");
+		createBranch("branch", "master");
+		Files.write(project.toPath().resolve("file.txt"), "master".getBytes(StandardCharsets.UTF_8));
+		addAllAndCommit("Master commit");
+
+		getContext().addArg(LOGICAL_MERGE_CMD_NAME, setupFile.getAbsolutePath(), "branch");
+		Object result = getApp().start(getContext());
+
+		printOut();
+		printErr();
+
+		assertOutputMessageEnd("Already up to date." + EOL + EOL);
+		assertEmptyErrorMessage();
+		assertEquals(Returns.COMPLETE.code(), result);
+		assertNull(getLogicalCommand().getPerformer());
+		assertFalse(installationPath.toFile().exists());
+	}
 }
@@ -39,15 +39,25 @@ public class LogicalMergeToolArgumentsCommandTest extends AbstractLogicalCommand
 	protected String getExpectedUsage() {
 		//@formatter:off
 		return EOL //
-				+ "logicalmergetool <setup> [--git-dir gitFolderPath] [--help (-h)] [--show-stack-trace]" + EOL 
-				+ EOL 
-				+ " <setup>                 : Path to the setup file. The setup file is a Oomph" + EOL 
-				+ "                           model." + EOL 
-				+ " --git-dir gitFolderPath : Path to the .git folder of your repository." + EOL 
-				+ " --help (-h)             : Dispays help for this command." + EOL 
-				+ " --show-stack-trace      : Use this option to display java stack trace in" + EOL 
-				+ "                           console on error."+ EOL
-				+ EOL ; //
+				+ "logicalmergetool <setup> [--git-dir gitFolderPath] [--help (-h)] [--offline-first] [--reprovision] [--show-stack-trace] [--trace <file>] [--workspace-slots <count>]" + EOL
+				+ EOL
+				+ " <setup>                   : Path to the setup file. The setup file is a Oomph" + EOL
+				+ "                             model." + EOL
+				+ " --git-dir gitFolderPath   : Path to the .git folder of your repository." + EOL
+				+ " --help (-h)               : Dispays help for this command." + EOL
+				+ " --offline-first           : Provisions from the local p2 caches and mirror," + EOL
+				+ "                             going online only if something is missing." + EOL
+				+ " --reprovision             : Provisions the installation even if it is up to" + EOL
+				+ "                             date." + EOL
+				+ " --show-stack-trace        : Use this option to display java stack trace in" + EOL
+				+ "                             console on error." + EOL
+				+ " --trace <file>            : Writes the timeline of the phases of the command," + EOL
+				+ "                             in the launcher and in the eclipse process, to the" + EOL
+				+ "                             given file in the Chrome trace event format." + EOL
+				+ " --workspace-slots <count> : Number of workspaces shared by the concurrent" + EOL
+				+ "                             commands run with the same setup, when the setup" + EOL
+				+ "                             does not define the workspace." + EOL
+				+ EOL;
 		//@formatter:on
 	}
 
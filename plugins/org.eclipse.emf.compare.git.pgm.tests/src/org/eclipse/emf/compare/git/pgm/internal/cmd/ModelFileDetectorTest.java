@@ -0,0 +1,96 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link ModelFileDetector}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class ModelFileDetectorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private Repository repository;
+
+	private ModelFileDetector detector;
+
+	private RevCommit base;
+
+	@Before
+	public void setUp() throws Exception {
+		git = Git.init().setDirectory(folder.newFolder("repo")).call();
+		repository = git.getRepository();
+		detector = new ModelFileDetector(repository);
+		base = commit("README", "Some text");
+	}
+
+	@After
+	public void tearDown() {
+		repository.close();
+	}
+
+	@Test
+	public void textTest() throws IOException, GitAPIException {
+		RevCommit tip = commit("README", "Some other text");
+		assertFalse(detector.involvesModels(base, tip));
+	}
+
+	@Test
+	public void extensionTest() throws IOException, GitAPIException {
+		RevCommit tip = commit("model.ecore", "Not parsed");
+		assertTrue(detector.involvesModels(base, tip));
+	}
+
+	@Test
+	public void xmlContentTest() throws IOException, GitAPIException {
+		RevCommit tip = commit("model.unknown", "\uFEFF  <?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+		assertTrue(detector.involvesModels(base, tip));
+	}
+
+	@Test
+	public void deletedModelTest() throws IOException, GitAPIException {
+		RevCommit withModel = commit("model.unknown", "<model/>");
+		git.rm().addFilepattern("model.unknown").call();
+		RevCommit withoutModel = git.commit().setMessage("Deletes the model").call();
+		assertTrue(detector.involvesModels(withModel, withoutModel));
+	}
+
+	private RevCommit commit(String path, String content) throws IOException, GitAPIException {
+		File file = new File(repository.getWorkTree(), path);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		git.add().addFilepattern(path).call();
+		return git.commit().setAuthor("Logical test author", "logicaltest@obeo.fr").setMessage(content)
+				.call();
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.compare.git.pgm.internal.ProgressPageLog;
+import org.eclipse.oomph.base.Annotation;
+import org.eclipse.oomph.base.BaseFactory;
+import org.eclipse.oomph.setup.Index;
+import org.eclipse.oomph.setup.SetupFactory;
+import org.eclipse.oomph.setup.SetupTask;
+import org.eclipse.oomph.setup.p2.P2Task;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link OfflineProvisioning}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class OfflineProvisioningTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+	@Test
+	public void readTest() {
+		Index index = SetupFactory.eINSTANCE.createIndex();
+		assertFalse(OfflineProvisioning.read(index, false, folder.getRoot()).isOfflineFirst());
+		assertTrue(OfflineProvisioning.read(index, true, folder.getRoot()).isOfflineFirst());
+
+		Annotation annotation = BaseFactory.eINSTANCE.createAnnotation(OfflineProvisioning.ANNOTATION_SOURCE);
+		annotation.getDetails().put(OfflineProvisioning.OFFLINE_FIRST_DETAIL, "true");
+		annotation.getDetails().put(OfflineProvisioning.MIRROR_DETAIL, "mirror");
+		index.getAnnotations().add(annotation);
+		OfflineProvisioning provisioning = OfflineProvisioning.read(index, false, folder.getRoot());
+		assertTrue(provisioning.isOfflineFirst());
+		assertEquals(new File(folder.getRoot(), "mirror").toURI().toString(), provisioning.getMirror());
+	}
+
+	@Test
+	public void addMirrorTest() {
+		EList<SetupTask> tasks = new BasicEList<SetupTask>();
+		new OfflineProvisioning(true, null).addMirror(tasks);
+		assertTrue(tasks.isEmpty());
+
+		new OfflineProvisioning(true, "file:/mirror").addMirror(tasks);
+		assertEquals(1, tasks.size());
+		assertEquals("file:/mirror", ((P2Task)tasks.get(0)).getRepositories().get(0).getURL());
+	}
+
+	@Test
+	public void offlineSuccessTest() throws Exception {
+		RecordingAttempt attempt = new RecordingAttempt(true, true);
+		assertTrue(new OfflineProvisioning(true, null).perform(attempt, newLog()));
+		assertEquals(Arrays.asList(Boolean.FALSE), attempt.modes);
+		assertTrue(log.toString().contains("Provisioned offline."));
+	}
+
+	@Test
+	public void missingRequirementsTest() throws Exception {
+		RecordingAttempt attempt = new RecordingAttempt(false, true);
+		assertTrue(new OfflineProvisioning(true, null).perform(attempt, newLog()));
+		assertEquals(Arrays.asList(Boolean.FALSE, Boolean.TRUE), attempt.modes);
+		assertTrue(log.toString().contains("provisioning online"));
+		assertFalse(log.toString().contains("Provisioned offline."));
+	}
+
+	@Test
+	public void offlineFailureTest() throws Exception {
+		RecordingAttempt attempt = new RecordingAttempt(null, false);
+		assertFalse(new OfflineProvisioning(true, null).perform(attempt, newLog()));
+		assertEquals(Arrays.asList(Boolean.FALSE, Boolean.TRUE), attempt.modes);
+		assertTrue(log.toString().contains("Offline provisioning failed, provisioning online: offline"));
+	}
+
+	@Test
+	public void onlineTest() throws Exception {
+		RecordingAttempt attempt = new RecordingAttempt(true, true);
+		assertTrue(new OfflineProvisioning(false, null).perform(attempt, newLog()));
+		assertEquals(Arrays.asList(Boolean.TRUE), attempt.modes);
+		assertNull(new OfflineProvisioning(false, null).getMirror());
+		assertEquals("", log.toString());
+	}
+
+	private ProgressPageLog newLog() {
+		return new ProgressPageLog(new PrintStream(log));
+	}
+
+	/**
+	 * Attempt recording the modes it is performed in.
+	 */
+	private static final class RecordingAttempt implements OfflineProvisioning.Attempt {
+
+		private final List<Boolean> modes = new ArrayList<Boolean>();
+
+		private final Boolean offlineResult;
+
+		private final boolean onlineResult;
+
+		/**
+		 * Constructor.
+		 * 
+		 * @param offlineResult
+		 *            the result of the offline attempt, <code>null</code> to fail with an exception.
+		 * @param onlineResult
+		 *            the result of the online attempt.
+		 */
+		RecordingAttempt(Boolean offlineResult, boolean onlineResult) {
+			this.offlineResult = offlineResult;
+			this.onlineResult = onlineResult;
+		}
+
+		public boolean perform(boolean online) throws Exception {
+			modes.add(Boolean.valueOf(online));
+			if (online) {
+				return onlineResult;
+			}
+			if (offlineResult == null) {
+				throw new IllegalStateException("offline");
+			}
+			return offlineResult.booleanValue();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.equinox.p2.engine.IProfile;
+import org.eclipse.equinox.p2.metadata.IInstallableUnit;
+import org.eclipse.equinox.p2.metadata.MetadataFactory;
+import org.eclipse.equinox.p2.metadata.MetadataFactory.InstallableUnitDescription;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.query.IQuery;
+import org.eclipse.oomph.p2.P2Factory;
+import org.eclipse.oomph.p2.Requirement;
+import org.eclipse.oomph.setup.SetupFactory;
+import org.eclipse.oomph.setup.SetupTask;
+import org.eclipse.oomph.setup.p2.P2Task;
+import org.eclipse.oomph.setup.p2.SetupP2Factory;
+import org.junit.Test;
+
+/**
+ * Tests of {@link ProfileDelta}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class ProfileDeltaTest {
+
+	private final IProfile profile = createProfile(createUnit("installed", "1.0.0"));
+
+	@Test
+	public void deltaTest() {
+		P2Task task = createP2Task(createRequirement("installed", null), createRequirement("missing", null));
+		List<P2Task> delta = ProfileDelta.getDeltaTasks(Arrays.<SetupTask> asList(task), profile);
+		assertEquals(1, delta.size());
+		assertNotSame(task, delta.get(0));
+		assertEquals(1, delta.get(0).getRequirements().size());
+		assertEquals("missing", delta.get(0).getRequirements().get(0).getName());
+		// The task of the setup model is left unchanged.
+		assertEquals(2, task.getRequirements().size());
+	}
+
+	@Test
+	public void allInstalledTest() {
+		P2Task task = createP2Task(createRequirement("installed", null));
+		assertTrue(ProfileDelta.getDeltaTasks(Arrays.<SetupTask> asList(task), profile).isEmpty());
+	}
+
+	@Test
+	public void versionRangeTest() {
+		assertTrue(ProfileDelta.isInstalled(profile, createRequirement("installed", new VersionRange(
+				"[1.0.0,2.0.0)"))));
+		assertFalse(ProfileDelta.isInstalled(profile, createRequirement("installed", new VersionRange(
+				"[2.0.0,3.0.0)"))));
+	}
+
+	@Test
+	public void otherNamespaceTest() {
+		Requirement requirement = createRequirement("installed", null);
+		requirement.setNamespace("java.package");
+		assertFalse(ProfileDelta.isInstalled(profile, requirement));
+	}
+
+	@Test
+	public void otherTasksTest() {
+		SetupTask variable = SetupFactory.eINSTANCE.createVariableTask();
+		P2Task task = createP2Task(createRequirement("missing", null));
+		List<SetupTask> tasks = ProfileDelta.getTasksToPerform(Arrays.asList(variable, task), profile);
+		assertEquals(1, tasks.size());
+		assertEquals("missing", ((P2Task)tasks.get(0)).getRequirements().get(0).getName());
+	}
+
+	@Test
+	public void profileNotFoundTest() {
+		SetupTask variable = SetupFactory.eINSTANCE.createVariableTask();
+		P2Task task = createP2Task(createRequirement("installed", null));
+		List<SetupTask> tasks = ProfileDelta.getTasksToPerform(Arrays.asList(variable, task), null);
+		// Nothing is known about the installation, every task is performed.
+		assertEquals(2, tasks.size());
+		assertSame(variable, tasks.get(0));
+		assertSame(task, tasks.get(1));
+	}
+
+	private static P2Task createP2Task(Requirement... requirements) {
+		P2Task task = SetupP2Factory.eINSTANCE.createP2Task();
+		task.getRequirements().addAll(Arrays.asList(requirements));
+		return task;
+	}
+
+	private static Requirement createRequirement(String name, VersionRange range) {
+		Requirement requirement = P2Factory.eINSTANCE.createRequirement(name);
+		if (range != null) {
+			requirement.setVersionRange(range);
+		}
+		return requirement;
+	}
+
+	private static IInstallableUnit createUnit(String id, String version) {
+		InstallableUnitDescription description = new InstallableUnitDescription();
+		description.setId(id);
+		description.setVersion(Version.create(version));
+		return MetadataFactory.createInstallableUnit(description);
+	}
+
+	/**
+	 * Creates a profile holding the given installable units. Only its queries are implemented.
+	 * 
+	 * @param units
+	 *            the installable units of the profile.
+	 * @return the profile.
+	 */
+	private static IProfile createProfile(IInstallableUnit... units) {
+		final List<IInstallableUnit> content = new ArrayList<IInstallableUnit>(Arrays.asList(units));
+		return (IProfile)Proxy.newProxyInstance(ProfileDeltaTest.class.getClassLoader(),
+				new Class<?>[] {IProfile.class }, new InvocationHandler() {
+					@SuppressWarnings("unchecked")
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("query".equals(method.getName())) {
+							return ((IQuery<IInstallableUnit>)args[0]).perform(content.iterator());
+						}
+						return null;
+					}
+				});
+	}
+}
@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link ProvisioningManifest}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class ProvisioningManifestTest {
+
+	private static final String FINGERPRINT = "0123456789abcdef";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path eclipse;
+
+	private ProvisioningManifest manifest;
+
+	@Before
+	public void setUp() throws IOException {
+		Path installation = folder.getRoot().toPath();
+		eclipse = installation.resolve("eclipse");
+		Files.createDirectories(eclipse.resolve("plugins"));
+		Files.createFile(eclipse.resolve("eclipse"));
+		Files.createFile(eclipse.resolve("plugins").resolve("a_1.0.0.jar"));
+		Path absoluteBundle = Files.createFile(installation.resolve("b_1.0.0.jar"));
+		writeBundlesInfo("#version=1", //
+				"a,1.0.0,plugins/a_1.0.0.jar,4,false", //
+				"b,1.0.0," + absoluteBundle.toUri() + ",4,false");
+		manifest = new ProvisioningManifest(installation.toFile(), eclipse.toFile(), "eclipse");
+	}
+
+	@Test
+	public void notProvisionedTest() {
+		assertFalse(manifest.isUpToDate(FINGERPRINT));
+	}
+
+	@Test
+	public void upToDateTest() throws Exception {
+		manifest.record(FINGERPRINT);
+		assertTrue(manifest.isUpToDate(FINGERPRINT));
+		assertFalse(manifest.isUpToDate("fedcba9876543210"));
+	}
+
+	@Test
+	public void invalidateTest() throws Exception {
+		manifest.record(FINGERPRINT);
+		manifest.invalidate();
+		assertFalse(manifest.isUpToDate(FINGERPRINT));
+	}
+
+	@Test
+	public void changedBundleSetTest() throws Exception {
+		manifest.record(FINGERPRINT);
+		writeBundlesInfo("#version=1", "a,1.0.0,plugins/a_1.0.0.jar,4,false");
+		assertFalse(manifest.isUpToDate(FINGERPRINT));
+	}
+
+	@Test
+	public void deletedBundleTest() throws Exception {
+		manifest.record(FINGERPRINT);
+		Files.delete(eclipse.resolve("plugins").resolve("a_1.0.0.jar"));
+		assertFalse(manifest.isUpToDate(FINGERPRINT));
+	}
+
+	@Test
+	public void deletedExecutableTest() throws Exception {
+		manifest.record(FINGERPRINT);
+		Files.delete(eclipse.resolve("eclipse"));
+		assertFalse(manifest.isUpToDate(FINGERPRINT));
+	}
+
+	private void writeBundlesInfo(String... lines) throws IOException {
+		File bundlesInfo = eclipse.resolve(ProvisioningManifest.BUNDLES_INFO).toFile();
+		bundlesInfo.getParentFile().mkdirs();
+		Files.write(bundlesInfo.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link SharedP2Agent}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class SharedP2AgentTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void lockFileTest() throws Exception {
+		File location = new File(folder.getRoot(), "emfcP2");
+		File lockFile = new File(location, SharedP2Agent.LOCK_FILE);
+		SharedP2Agent agent = new SharedP2Agent(location);
+		agent.acquire();
+		agent.acquire();
+		assertTrue(lockFile.isFile());
+		assertNull(FileLocks.tryLock(lockFile));
+
+		// Released at once, however many times it has been acquired.
+		agent.release();
+		FileChannel channel = FileLocks.tryLock(lockFile);
+		assertNotNull(channel);
+		channel.close();
+		agent.release();
+	}
+
+	@Test
+	public void concurrentRunsTest() throws Exception {
+		final File location = new File(folder.getRoot(), "emfcP2");
+		final int runs = 4;
+		final CountDownLatch start = new CountDownLatch(1);
+		final AtomicInteger holders = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(runs);
+		try {
+			// Each run has its own instance, as the commands of a process do.
+			List<Future<Integer>> maxHolders = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < runs * 4; i++) {
+				maxHolders.add(executor.submit(new Callable<Integer>() {
+					public Integer call() throws Exception {
+						SharedP2Agent agent = new SharedP2Agent(location);
+						start.await();
+						agent.acquire();
+						try {
+							int current = holders.incrementAndGet();
+							Thread.sleep(10);
+							return Integer.valueOf(current);
+						} finally {
+							holders.decrementAndGet();
+							agent.release();
+						}
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<Integer> maxHolder : maxHolders) {
+				assertEquals(Integer.valueOf(1), maxHolder.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		// The lock is free once all the runs are done.
+		FileChannel channel = FileLocks.tryLock(new File(location, SharedP2Agent.LOCK_FILE));
+		assertNotNull(channel);
+		channel.close();
+	}
+}
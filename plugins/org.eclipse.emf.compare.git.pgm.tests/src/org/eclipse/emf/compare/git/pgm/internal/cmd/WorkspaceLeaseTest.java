@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link WorkspaceLease} and {@link InstallationLock}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class WorkspaceLeaseTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void slotLocationTest() {
+		File base = new File(folder.getRoot(), "emfcWs");
+		assertEquals(base, WorkspaceLease.getSlotLocation(base, 0));
+		assertEquals(new File(folder.getRoot(), "emfcWs-2"), WorkspaceLease.getSlotLocation(base, 2));
+	}
+
+	@Test
+	public void leaseTest() throws Exception {
+		File base = new File(folder.getRoot(), "emfcWs");
+		WorkspaceLease first = WorkspaceLease.acquire(base, 2);
+		assertEquals(0, first.getSlot());
+		assertEquals(base, first.getLocation());
+		assertTrue(base.isDirectory());
+
+		// The first slot is in use.
+		WorkspaceLease second = WorkspaceLease.acquire(base, 2);
+		assertEquals(1, second.getSlot());
+		assertEquals(base, second.getBase());
+		assertTrue(second.getLocation().isDirectory());
+
+		// The first slot is reused once released.
+		first.release();
+		WorkspaceLease third = WorkspaceLease.acquire(base, 2);
+		assertEquals(0, third.getSlot());
+		second.release();
+		third.release();
+	}
+
+	@Test
+	public void sharedManifestTest() throws Exception {
+		File installation = folder.newFolder("installation");
+		File eclipse = new File(installation, "eclipse");
+		File bundlesInfo = new File(eclipse, ProvisioningManifest.BUNDLES_INFO);
+		bundlesInfo.getParentFile().mkdirs();
+		Files.write(bundlesInfo.toPath(), Arrays.asList("#version=1"), StandardCharsets.UTF_8);
+		new File(eclipse, "eclipse").createNewFile();
+		ProvisioningManifest manifest = new ProvisioningManifest(installation, eclipse, "eclipse");
+
+		File base = new File(folder.getRoot(), "emfcWs");
+		WorkspaceLease first = WorkspaceLease.acquire(base, 2);
+		WorkspaceLease second = WorkspaceLease.acquire(base, 2);
+		assertEquals(1, second.getSlot());
+
+		// The command on the second slot does not provision the installation again.
+		manifest.record(getFingerprint(first, installation));
+		assertTrue(manifest.isUpToDate(getFingerprint(second, installation)));
+		first.release();
+		second.release();
+	}
+
+	@Test
+	public void installationLockTest() throws Exception {
+		File metadata = new File(folder.getRoot(), "metadata");
+		File lockFile = new File(metadata, InstallationLock.LOCK_FILE);
+		InstallationLock lock = new InstallationLock(metadata);
+		lock.acquire(true);
+		lock.acquire(false);
+		assertTrue(lockFile.isFile());
+		assertNull(FileLocks.tryLock(lockFile));
+
+		lock.release();
+		FileChannel channel = FileLocks.tryLock(lockFile);
+		assertNotNull(channel);
+		channel.close();
+		assertTrue(lock.getWaitTime() >= 0);
+	}
+
+	private String getFingerprint(WorkspaceLease lease, File installation) throws Die {
+		return AbstractLogicalCommand.getProvisioningFingerprint("setup", "environment", "[requirement]",
+				installation.getAbsolutePath(), lease, new File(folder.getRoot(), "pool"));
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link GitPreparation}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class GitPreparationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private Repository repository;
+
+	private RevCommit base;
+
+	private RevCommit master;
+
+	@Before
+	public void setUp() throws Exception {
+		git = Git.init().setDirectory(folder.newFolder("repo")).call();
+		repository = git.getRepository();
+		base = commit("model.uml", "base");
+		git.branchCreate().setName("branch").call();
+		master = commit("model.uml", "master");
+	}
+
+	@After
+	public void tearDown() {
+		repository.close();
+	}
+
+	@Test
+	public void diffTest() throws IOException, GitAPIException {
+		RevCommit added = commit("file.txt", "added");
+
+		GitPreparation preparation = GitPreparation.forDiff(repository, base, added, null);
+		// Same entries as the logical diff, which uses the old paths.
+		assertEquals(Arrays.asList("/dev/null", "model.uml"), preparation.getChangedPaths());
+		assertTrue(preparation.isValidForDiff(repository, base, added, null));
+		assertFalse(preparation.isValidForDiff(repository, base, added, "model.uml"));
+		assertFalse(preparation.isValidForDiff(repository, master, added, null));
+
+		preparation = GitPreparation.forDiff(repository, base, added, "model.uml");
+		assertEquals(Arrays.asList("model.uml"), preparation.getChangedPaths());
+		assertFalse(preparation.isLimited());
+	}
+
+	@Test
+	public void limitedDiffTest() throws IOException, GitAPIException {
+		RevCommit added = commit("file.txt", "added");
+		File file = folder.newFile("preparation.properties");
+		List<DiffEntry> entries = GitPreparation.scan(repository, base, added, null);
+		// The launcher has displayed the text file.
+		GitPreparation.forDiff(repository, base, added, null, entries.subList(1, 2)).write(file);
+
+		GitPreparation preparation = GitPreparation.read(file);
+		assertTrue(preparation.isLimited());
+		assertEquals(Arrays.asList("model.uml"), preparation.getChangedPaths());
+	}
+
+	@Test
+	public void mergeTest() throws IOException, GitAPIException {
+		git.checkout().setName("branch").call();
+		RevCommit branch = commit("other.uml", "branch");
+
+		GitPreparation preparation = GitPreparation.forMerge(repository, master);
+		assertEquals(branch, preparation.getHead());
+		assertEquals(base, preparation.getMergeBase());
+		assertEquals(Arrays.asList("model.uml"), preparation.getChangedPaths());
+		assertTrue(preparation.isValidForMerge(repository, master));
+		assertFalse(preparation.isValidForMerge(repository, base));
+	}
+
+	@Test
+	public void writeReadTest() throws IOException, GitAPIException {
+		File file = folder.newFile("preparation.properties");
+		GitPreparation.forDiff(repository, base, master, "model.uml").write(file);
+
+		GitPreparation preparation = GitPreparation.read(file);
+		assertEquals(master, preparation.getHead());
+		assertEquals(Arrays.asList("model.uml"), preparation.getChangedPaths());
+		assertTrue(preparation.isValidForDiff(repository, base, master, "model.uml"));
+
+		// HEAD has moved since the preparation.
+		commit("model.uml", "moved");
+		assertFalse(preparation.isValid(repository));
+	}
+
+	@Test(expected = IOException.class)
+	public void readInvalidTest() throws IOException {
+		File file = folder.newFile("invalid.properties");
+		Files.write(file.toPath(), "head=notAnId\npaths=0\n".getBytes(StandardCharsets.UTF_8));
+		GitPreparation.read(file);
+	}
+
+	private RevCommit commit(String path, String content) throws IOException, GitAPIException {
+		File file = new File(repository.getWorkTree(), path);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+		git.add().addFilepattern(path).call();
+		return git.commit().setAuthor("Logical test author", "logicaltest@obeo.fr").setMessage(content)
+				.call();
+	}
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link ModelReferences}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class ModelReferencesTest {
+
+	@Test
+	public void relativeReferencesTest() {
+		String content = "<eClassifiers xsi:type=\"ecore:EClass\" name=\"A\""
+				+ " eSuperTypes=\"b.ecore#//B ../other/c.ecore#//C\"/>";
+		assertEquals(Arrays.asList("b.ecore", "../other/c.ecore"), ModelReferences.find(content));
+	}
+
+	@Test
+	public void platformReferencesTest() {
+		String content = "<type href=\"platform:/resource/other/model/c.ecore#//C\"/>";
+		assertEquals(Arrays.asList("platform:/resource/other/model/c.ecore"), ModelReferences.find(content));
+	}
+
+	@Test
+	public void ignoredReferencesTest() {
+		String content = "<eStructuralFeatures eType=\"#//A\"/>"
+				+ "<eType href=\"http://www.eclipse.org/emf/2002/Ecore#//EString\"/>"
+				+ "<type href=\"platform:/plugin/org.eclipse.uml2/model/UML.ecore#//Class\"/>";
+		assertEquals(Collections.emptyList(), ModelReferences.find(content));
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link ProjectIndex}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class ProjectIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private Repository repository;
+
+	@Before
+	public void setUp() throws Exception {
+		git = Git.init().setDirectory(folder.newFolder("repo")).call();
+		repository = git.getRepository();
+	}
+
+	@After
+	public void tearDown() {
+		repository.close();
+	}
+
+	@Test
+	public void emptyRepositoryTest() throws Exception {
+		ProjectIndex index = ProjectIndex.get(repository);
+		assertNull(index.getTreeId());
+		assertEquals(Collections.emptyList(), index.getDescriptorPaths());
+	}
+
+	@Test
+	public void scanTest() throws Exception {
+		write("a/.project");
+		write("a/b/.project");
+		write("c/model.project");
+		RevCommit commit = commit();
+
+		ProjectIndex index = ProjectIndex.get(repository);
+		assertEquals(commit.getTree(), index.getTreeId());
+		assertEquals(Arrays.asList("a/.project", "a/b/.project"), index.getDescriptorPaths());
+		assertTrue(new File(repository.getDirectory(), ProjectIndex.INDEX_FILE).isFile());
+	}
+
+	@Test
+	public void updateTest() throws Exception {
+		write("a/.project");
+		write("b/.project");
+		commit();
+		ProjectIndex.get(repository);
+
+		git.rm().addFilepattern("a/.project").call();
+		write("c/.project");
+		RevCommit commit = commit();
+
+		ProjectIndex index = ProjectIndex.get(repository);
+		assertEquals(commit.getTree(), index.getTreeId());
+		assertEquals(Arrays.asList("b/.project", "c/.project"), index.getDescriptorPaths());
+	}
+
+	private void write(String path) throws IOException, GitAPIException {
+		File file = new File(repository.getWorkTree(), path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), "<projectDescription/>".getBytes(StandardCharsets.UTF_8));
+		git.add().addFilepattern(path).call();
+	}
+
+	private RevCommit commit() throws GitAPIException {
+		return git.commit().setAuthor("Logical test author", "logicaltest@obeo.fr").setMessage("commit")
+				.call();
+	}
+}
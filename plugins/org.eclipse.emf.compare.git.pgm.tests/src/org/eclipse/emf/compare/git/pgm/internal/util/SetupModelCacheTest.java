@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.xmi.impl.EcoreResourceFactoryImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link SetupModelCache}.
+ *
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class SetupModelCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File cacheFolder;
+
+	private File model;
+
+	private SetupModelCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		cacheFolder = new File(folder.getRoot(), "cache");
+		model = folder.newFile("model.ecore");
+		cache = new SetupModelCache(cacheFolder);
+	}
+
+	@Test
+	public void cachedLoadTest() throws Exception {
+		writeModel("first");
+		assertEquals("first", load().getName());
+		assertEquals(1, cacheFolder.list().length);
+
+		// Loaded from the binary form.
+		assertEquals("first", load().getName());
+		assertEquals(1, cacheFolder.list().length);
+
+		// The source has changed, it is parsed again.
+		writeModel("second");
+		assertEquals("second", load().getName());
+		assertEquals(2, cacheFolder.list().length);
+	}
+
+	@Test
+	public void corruptedEntryTest() throws Exception {
+		writeModel("first");
+		load();
+		File entry = cacheFolder.listFiles()[0];
+		Files.write(entry.toPath(), "corrupted".getBytes(StandardCharsets.UTF_8));
+
+		assertEquals("first", load().getName());
+		assertTrue(entry.length() > "corrupted".length());
+	}
+
+	@Test
+	public void concurrentLoadTest() throws Exception {
+		writeModel("first");
+		final int runs = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(runs);
+		try {
+			// Each run is parsing or loading the model while the others store its entry.
+			List<Future<String>> names = new ArrayList<Future<String>>();
+			for (int i = 0; i < runs * 4; i++) {
+				names.add(executor.submit(new Callable<String>() {
+					public String call() throws Exception {
+						start.await();
+						return load().getName();
+					}
+				}));
+			}
+			start.countDown();
+			for (Future<String> name : names) {
+				assertEquals("first", name.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		// A single complete entry and no temporary file left.
+		String[] entries = cacheFolder.list();
+		assertEquals(1, entries.length);
+		assertTrue(entries[0].endsWith(".bin"));
+		assertEquals("first", load().getName());
+	}
+
+	private EPackage load() throws Exception {
+		ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.getResourceFactoryRegistry().getExtensionToFactoryMap().put("ecore",
+				new EcoreResourceFactoryImpl());
+		Resource resource = cache.getResource(resourceSet, URI.createFileURI(model.getAbsolutePath()));
+		return (EPackage)resource.getContents().get(0);
+	}
+
+	private void writeModel(String name) throws Exception {
+		String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<ecore:EPackage xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\""
+				+ " xmlns:ecore=\"http://www.eclipse.org/emf/2002/Ecore\" name=\"" + name + "\"/>\n";
+		Files.write(model.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
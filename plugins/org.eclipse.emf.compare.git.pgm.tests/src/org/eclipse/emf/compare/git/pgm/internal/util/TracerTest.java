@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link Tracer}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class TracerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void disabledTest() {
+		Tracer.DISABLED.complete("phase", Tracer.now());
+		assertFalse(Tracer.DISABLED.isEnabled());
+		assertTrue(Tracer.DISABLED.getEvents().isEmpty());
+	}
+
+	@Test
+	public void completeTest() {
+		Tracer tracer = new Tracer("id", "launcher");
+		long start = Tracer.now();
+		tracer.complete("phase", start, "model/a.ecore");
+
+		List<String> events = tracer.getEvents();
+		assertEquals(2, events.size());
+		assertTrue(events.get(0).contains("\"name\":\"process_name\",\"ph\":\"M\""));
+		assertTrue(events.get(0).contains("\"args\":{\"name\":\"launcher\"}"));
+		String event = events.get(1);
+		assertTrue(event.startsWith("{\"name\":\"phase\",\"ph\":\"X\",\"ts\":" + start + ",\"dur\":"));
+		assertTrue(event.endsWith("\"args\":{\"traceId\":\"id\",\"detail\":\"model/a.ecore\"}}"));
+	}
+
+	@Test
+	public void quoteTest() {
+		assertEquals("\"a\\\"b\\\\c\\u000a\"", Tracer.quote("a\"b\\c\n"));
+	}
+
+	@Test
+	public void combinedTraceTest() throws IOException {
+		Tracer child = new Tracer("id", "eclipse");
+		child.complete("performGitCommand", Tracer.now());
+		File events = new File(folder.getRoot(), "events.json");
+		child.writeEvents(events);
+
+		Tracer launcher = new Tracer("id", "launcher");
+		launcher.addEvents(Tracer.readEvents(events));
+		launcher.complete("eclipse process", Tracer.now());
+		assertEquals(4, launcher.getEvents().size());
+
+		File trace = new File(folder.getRoot(), "out/trace.json");
+		launcher.writeTrace(trace);
+		String content = new String(Files.readAllBytes(trace.toPath()), StandardCharsets.UTF_8);
+		assertTrue(content.startsWith("{\"traceEvents\":[\n"));
+		assertTrue(content.contains("\"name\":\"performGitCommand\""));
+		assertTrue(content.endsWith("],\"displayTimeUnit\":\"ms\",\"otherData\":{\"traceId\":\"id\"}}\n"));
+	}
+
+	@Test
+	public void missingEventsTest() throws IOException {
+		assertTrue(Tracer.readEvents(new File(folder.getRoot(), "missing.json")).isEmpty());
+	}
+}
@@ -18,10 +18,13 @@ import static org.junit.Assert.assertEquals;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 /**
  * Util tests.
@@ -31,6 +34,9 @@ import org.junit.Test;
 @SuppressWarnings("nls")
 public class UtilTests {
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void testRelativePath() throws IOException {
 		String systemTmpDir = System.getProperty("java.io.tmpdir");
@@ -49,4 +55,20 @@ public class UtilTests {
 		assertEquals(systemTmpDirPath.resolve("a").resolve("b").resolve("c").resolve("d").toString(), file
 				.toString());
 	}
+
+	@Test
+	public void testDiskUsage() throws IOException {
+		Path root = folder.getRoot().toPath();
+		Files.write(root.resolve("a"), new byte[100]);
+		Files.write(Files.createDirectories(root.resolve("b").resolve("c")).resolve("d"), new byte[2000]);
+		assertEquals(2100, DiskUsage.sizeOf(root.toFile()));
+		assertEquals(0, DiskUsage.sizeOf(root.resolve("missing").toFile()));
+	}
+
+	@Test
+	public void testDiskUsageFormat() {
+		assertEquals("512 B", DiskUsage.format(512));
+		assertEquals("2.0 KB", DiskUsage.format(2048));
+		assertEquals("1.5 MB", DiskUsage.format(1024 * 1024 * 3 / 2));
+	}
 }
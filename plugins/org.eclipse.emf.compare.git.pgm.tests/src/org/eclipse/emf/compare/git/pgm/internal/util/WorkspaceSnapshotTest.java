@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link WorkspaceSnapshot}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("nls")
+public class WorkspaceSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Git git;
+
+	private Repository repository;
+
+	private File setupFile;
+
+	private File snapshotsFolder;
+
+	@Before
+	public void setUp() throws Exception {
+		git = Git.init().setDirectory(folder.newFolder("repo")).call();
+		repository = git.getRepository();
+		setupFile = folder.newFile("user.setup");
+		write(setupFile, "<setup/>");
+		snapshotsFolder = folder.newFolder("snapshots");
+		commit("project/.project", "<projectDescription/>");
+	}
+
+	@After
+	public void tearDown() {
+		repository.close();
+	}
+
+	@Test
+	public void keyTest() throws Exception {
+		WorkspaceSnapshot snapshot = get();
+		assertEquals(snapshot.getLocation(), get().getLocation());
+
+		// Other files do not change the projects to import.
+		commit("project/model.uml", "<model/>");
+		assertEquals(snapshot.getLocation(), get().getLocation());
+
+		commit("other/.project", "<projectDescription/>");
+		assertNotEquals(snapshot.getLocation(), get().getLocation());
+	}
+
+	@Test
+	public void captureRestoreTest() throws Exception {
+		File workspace = folder.newFolder("ws");
+		write(new File(workspace, ".metadata/.plugins/org.eclipse.core.resources/.root/1.tree"), "tree");
+		write(new File(workspace, ".metadata/.lock"), "");
+		WorkspaceSnapshot snapshot = get();
+		assertFalse(snapshot.exists());
+
+		assertTrue(snapshot.capture(workspace));
+		assertTrue(snapshot.exists());
+		assertFalse(new File(snapshot.getLocation(), ".lock").exists());
+
+		File otherWorkspace = folder.newFolder("other");
+		write(new File(otherWorkspace, ".metadata/stale"), "stale");
+		snapshot.restore(otherWorkspace);
+		assertFalse(new File(otherWorkspace, ".metadata/stale").exists());
+		assertEquals("tree", read(new File(otherWorkspace,
+				".metadata/.plugins/org.eclipse.core.resources/.root/1.tree")));
+
+		// Already captured.
+		assertFalse(snapshot.capture(workspace));
+	}
+
+	private WorkspaceSnapshot get() throws Exception {
+		return WorkspaceSnapshot.get(snapshotsFolder, repository, setupFile, "bundles");
+	}
+
+	private void commit(String path, String content) throws IOException, GitAPIException {
+		write(new File(repository.getWorkTree(), path), content);
+		git.add().addFilepattern(path).call();
+		git.commit().setAuthor("Logical test author", "logicaltest@obeo.fr").setMessage(path).call();
+	}
+
+	private static void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
@@ -14,7 +14,28 @@ import junit.framework.JUnit4TestAdapter;
 import junit.framework.Test;
 import junit.textui.TestRunner;
 
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocolTest;
+import org.eclipse.emf.compare.git.pgm.internal.app.EGitReadinessTest;
+import org.eclipse.emf.compare.git.pgm.internal.app.HeadlessProfileTest;
+import org.eclipse.emf.compare.git.pgm.internal.app.ProjectReconcilerTest;
+import org.eclipse.emf.compare.git.pgm.internal.app.WorkspaceBatchTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.ChildVMSizingTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.ClassDataSharingTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.ConfigurationSnapshotTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.DaemonPoolTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.ModelFileDetectorTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.OfflineProvisioningTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.ProfileDeltaTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.ProvisioningManifestTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.SharedP2AgentTest;
+import org.eclipse.emf.compare.git.pgm.internal.cmd.WorkspaceLeaseTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitPreparationTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.ModelReferencesTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.ProjectIndexTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.SetupModelCacheTest;
+import org.eclipse.emf.compare.git.pgm.internal.util.TracerTest;
 import org.eclipse.emf.compare.git.pgm.internal.util.UtilTests;
+import org.eclipse.emf.compare.git.pgm.internal.util.WorkspaceSnapshotTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -23,7 +44,13 @@ import org.junit.runners.Suite.SuiteClasses;
  * @author <a href="mailto:axel.richard@obeo.fr">Axel Richard</a>
  */
 @RunWith(Suite.class)
-@SuiteClasses({UtilTests.class })
+@SuiteClasses({UtilTests.class, ProvisioningManifestTest.class, DaemonProtocolTest.class,
+		ClassDataSharingTest.class, ConfigurationSnapshotTest.class, GitPreparationTest.class,
+		ModelFileDetectorTest.class, SetupModelCacheTest.class, WorkspaceSnapshotTest.class,
+		ModelReferencesTest.class, ProjectIndexTest.class, DaemonPoolTest.class, ChildVMSizingTest.class,
+		TracerTest.class, WorkspaceLeaseTest.class, OfflineProvisioningTest.class,
+		ProfileDeltaTest.class, ProjectReconcilerTest.class, EGitReadinessTest.class,
+		WorkspaceBatchTest.class, HeadlessProfileTest.class, SharedP2AgentTest.class })
 public class AllUtilTests {
 
 	public static void main(String[] args) {
@@ -24,6 +24,7 @@ import org.eclipse.oomph.setup.Index;
 import org.eclipse.oomph.setup.InstallationTask;
 import org.eclipse.oomph.setup.Project;
 import org.eclipse.oomph.setup.ProjectCatalog;
+import org.eclipse.oomph.setup.ResourceCreationTask;
 import org.eclipse.oomph.setup.SetupFactory;
 import org.eclipse.oomph.setup.WorkspaceTask;
 import org.eclipse.oomph.setup.p2.P2Task;
@@ -46,6 +47,8 @@ public class OomphUserModelBuilder {
 
 	private String[] repositories;
 
+	private String[] createdResources;
+
 	public OomphUserModelBuilder setInstallationTaskLocation(String installationTaskLocation) {
 		this.installationTaskLocation = installationTaskLocation;
 		return this;
@@ -71,6 +74,11 @@ public class OomphUserModelBuilder {
 		return this;
 	}
 
+	public OomphUserModelBuilder setCreatedResources(String... createdResources) {
+		this.createdResources = createdResources;
+		return this;
+	}
+
 	private String[] getRequirements() {
 		if (requirements == null) {
 			requirements = new String[] {};
@@ -92,6 +100,13 @@ public class OomphUserModelBuilder {
 		return repositories;
 	}
 
+	private String[] getCreatedResources() {
+		if (createdResources == null) {
+			createdResources = new String[] {};
+		}
+		return createdResources;
+	}
+
 	public File saveTo(String setupFilePath) throws IOException {
 		Resource newResource = new XMIResourceImpl();
 		Index index = SetupFactory.eINSTANCE.createIndex();
@@ -130,6 +145,13 @@ public class OomphUserModelBuilder {
 					repo -> p2Task.getRepositories().add(P2Factory.eINSTANCE.createRepository(repo)));
 		}
 
+		Stream.of(getCreatedResources()).distinct().forEach(targetURL -> {
+			ResourceCreationTask creationTask = SetupFactory.eINSTANCE.createResourceCreationTask();
+			creationTask.setTargetURL(targetURL);
+			creationTask.setContent("");
+			projectCatalog.getSetupTasks().add(creationTask);
+		});
+
 		File setupFile = new File(setupFilePath);
 		FileOutputStream fileOutputStram = new FileOutputStream(setupFile);
 		try {
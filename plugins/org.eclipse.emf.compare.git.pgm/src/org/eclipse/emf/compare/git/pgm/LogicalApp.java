@@ -158,16 +158,21 @@ public class LogicalApp implements IApplication {
 			throw new DiesOn(FATAL).displaying(out.toString()).ready();
 		}
 
-		logicalCommand.build(arguments, environmentSetupURI);
-
-		Object returnCode;
 		try {
-			// Do not catch exception but flush what was currently writing the command
-			returnCode = logicalCommand.execute();
+			logicalCommand.build(arguments, environmentSetupURI);
+
+			Object returnCode;
+			try {
+				// Do not catch exception but flush what was currently writing the command
+				returnCode = logicalCommand.execute();
+			} finally {
+				logicalCommand.flushOutW();
+			}
+			return returnCode;
 		} finally {
-			logicalCommand.flushOutW();
+			// Releases the workspace and the installation for the other commands.
+			logicalCommand.dispose();
 		}
-		return returnCode;
 	}
 
 	/**
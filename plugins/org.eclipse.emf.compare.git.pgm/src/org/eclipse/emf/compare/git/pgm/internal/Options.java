@@ -23,4 +23,36 @@ public class Options {
 	public static final String SHOW_STACK_TRACE_OPT = "--show-stack-trace"; //$NON-NLS-1$
 
 	public static final String GIT_DIR_OPT = "--git-dir"; //$NON-NLS-1$
+
+	public static final String REPROVISION_OPT = "--reprovision"; //$NON-NLS-1$
+
+	public static final String DAEMON_OPT = "--daemon"; //$NON-NLS-1$
+
+	public static final String FROZEN_CONFIG_OPT = "--frozen-config"; //$NON-NLS-1$
+
+	public static final String PREPARED_STATE_OPT = "--prepared-state"; //$NON-NLS-1$
+
+	public static final String OFFLINE_FIRST_OPT = "--offline-first"; //$NON-NLS-1$
+
+	public static final String WORKSPACE_SNAPSHOT_OPT = "--workspace-snapshot"; //$NON-NLS-1$
+
+	public static final String SNAPSHOT_LOCATION_OPT = "--snapshot-location"; //$NON-NLS-1$
+
+	public static final String SPARSE_IMPORT_OPT = "--sparse-import"; //$NON-NLS-1$
+
+	public static final String EGIT_TIMEOUT_OPT = "--egit-timeout"; //$NON-NLS-1$
+
+	public static final String HEADLESS_OPT = "--headless"; //$NON-NLS-1$
+
+	public static final String POOL_OPT = "--pool"; //$NON-NLS-1$
+
+	public static final String POOL_MAX_REQUESTS_OPT = "--pool-max-requests"; //$NON-NLS-1$
+
+	public static final String POOL_MAX_HEAP_OPT = "--pool-max-heap"; //$NON-NLS-1$
+
+	public static final String CHILD_VM_ARGS_OPT = "--child-vm-args"; //$NON-NLS-1$
+
+	public static final String TRACE_OPT = "--trace"; //$NON-NLS-1$
+
+	public static final String WORKSPACE_SLOTS_OPT = "--workspace-slots"; //$NON-NLS-1$
 }
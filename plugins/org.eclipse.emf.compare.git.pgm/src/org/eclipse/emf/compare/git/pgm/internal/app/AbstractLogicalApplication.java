@@ -10,7 +10,12 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.app;
 
+import static org.eclipse.emf.compare.git.pgm.internal.Options.EGIT_TIMEOUT_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.HEADLESS_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.PREPARED_STATE_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.Options.SHOW_STACK_TRACE_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.SNAPSHOT_LOCATION_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.SPARSE_IMPORT_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EMPTY_STRING;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.SEP;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.toFileWithAbsolutePath;
@@ -26,19 +31,18 @@ import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.mapping.RemoteResourceMappingContext;
 import org.eclipse.core.resources.mapping.ResourceMapping;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
-import org.eclipse.core.runtime.jobs.IJobManager;
-import org.eclipse.core.runtime.jobs.Job;
-import org.eclipse.egit.core.JobFamilies;
 import org.eclipse.egit.core.synchronize.GitResourceVariantTreeSubscriber;
 import org.eclipse.egit.core.synchronize.GitSubscriberResourceMappingContext;
 import org.eclipse.egit.core.synchronize.dto.GitSynchronizeData;
@@ -54,6 +58,11 @@ import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
 import org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitPreparation;
+import org.eclipse.emf.compare.git.pgm.internal.util.ProjectIndex;
+import org.eclipse.emf.compare.git.pgm.internal.util.SetupModelCache;
+import org.eclipse.emf.compare.git.pgm.internal.util.Tracer;
+import org.eclipse.emf.compare.git.pgm.internal.util.WorkspaceSnapshot;
 import org.eclipse.emf.compare.ide.ui.internal.logical.EMFModelProvider;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
@@ -64,6 +73,7 @@ import org.eclipse.emf.edit.provider.ComposedAdapterFactory;
 import org.eclipse.equinox.app.IApplication;
 import org.eclipse.equinox.app.IApplicationContext;
 import org.eclipse.equinox.p2.metadata.ILicense;
+import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
@@ -118,6 +128,41 @@ public abstract class AbstractLogicalApplication implements IApplication {
 	@Option(name = SHOW_STACK_TRACE_OPT, usage = "Use this option to display java stack trace in console on error.")
 	private boolean showStackTrace;
 
+	/**
+	 * Holds the file of the git computations prepared by the launcher.
+	 */
+	@Option(name = PREPARED_STATE_OPT, metaVar = "<file>", usage = "Path to the git computations prepared by the launcher.")
+	private File preparedState;
+
+	/**
+	 * Holds the snapshot of the imported workspace, restored by the launcher if it exists.
+	 */
+	@Option(name = SNAPSHOT_LOCATION_OPT, metaVar = "<folder>", usage = "Path to the snapshot of the imported workspace.")
+	private File snapshotLocation;
+
+	/**
+	 * Holds true if only the projects needed by the changes should be imported.
+	 */
+	@Option(name = SPARSE_IMPORT_OPT, usage = "Imports only the projects holding the changed files and the projects they refer to.")
+	private boolean sparseImport;
+
+	/**
+	 * Holds the deadline of the wait for EGit to connect the projects, in seconds.
+	 */
+	@Option(name = EGIT_TIMEOUT_OPT, metaVar = "<seconds>", usage = "Maximum time to wait for EGit to share the imported projects before connecting them explicitly.")
+	private Integer egitTimeout;
+
+	/**
+	 * Holds true if the EGit and Team background work should be turned off.
+	 */
+	@Option(name = HEADLESS_OPT, usage = "Turns off the EGit and Team background work not needed by the command and reports the CPU time.")
+	private boolean headless;
+
+	/**
+	 * Holds true if the workspace only holds the projects needed by the changes.
+	 */
+	private boolean sparseWorkspace;
+
 	/**
 	 * Logs any message from oomph.
 	 */
@@ -128,6 +173,17 @@ public abstract class AbstractLogicalApplication implements IApplication {
 	 */
 	protected Repository repo;
 
+	/**
+	 * Git computations prepared by the launcher, <code>null</code> if there are none. They have to be
+	 * validated against the repository before being used.
+	 */
+	protected GitPreparation gitPreparation;
+
+	/**
+	 * Tracer of the phases of this application, given by the launcher or read from the system properties.
+	 */
+	private Tracer tracer = Tracer.DISABLED;
+
 	/**
 	 * Performs the logical git command (diff or merge).
 	 * 
@@ -135,6 +191,18 @@ public abstract class AbstractLogicalApplication implements IApplication {
 	 */
 	protected abstract Integer performGitCommand() throws Die;
 
+	/**
+	 * Gets the changes the git command works on, so that the sparse import only imports the projects they
+	 * need.
+	 * 
+	 * @return the changes or <code>null</code> if all the projects have to be imported.
+	 * @throws Die
+	 *             if the changes can not be computed.
+	 */
+	protected List<DiffEntry> getSparseImportChanges() throws Die {
+		return null;
+	}
+
 	/**
 	 * Creates and configure the setup task performer to execute the imports of projects referenced in the
 	 * user setup model. Then call the {@link #performGitCommand()}.
@@ -144,6 +212,8 @@ public abstract class AbstractLogicalApplication implements IApplication {
 	 * @throws Die
 	 */
 	protected void performStartup() throws Die {
+		boolean restored = snapshotLocation != null && new WorkspaceSnapshot(snapshotLocation).exists();
+
 		ComposedAdapterFactory adapterFactory = new ComposedAdapterFactory(BaseEditUtil
 				.createAdapterFactory());
 
@@ -155,7 +225,12 @@ public abstract class AbstractLogicalApplication implements IApplication {
 				ECFURIHandlerImpl.CacheHandling.CACHE_WITHOUT_ETAG_CHECKING);
 
 		URI startupSetupURI = URI.createFileURI(setupFile.getAbsolutePath());
-		Resource startupSetupResource = rs.getResource(startupSetupURI, true);
+		Resource startupSetupResource;
+		try {
+			startupSetupResource = SetupModelCache.getDefault().getResource(rs, startupSetupURI);
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		}
 
 		Index startupSetupIndex = (Index)EcoreUtil.getObjectByType(startupSetupResource.getContents(),
 				SetupPackage.Literals.INDEX);
@@ -174,15 +249,26 @@ public abstract class AbstractLogicalApplication implements IApplication {
 			progressPageLog = new ProgressPageLog(System.out);
 			performerStartup.setProgress(progressPageLog);
 
-			cleanWorkspace();
-
-			handleImportProjects(startupSetupIndex, performerStartup);
+			long start = Tracer.now();
+			List<ProjectsImportTask> importTasks = handleImportProjects(startupSetupIndex, performerStartup);
+			tracer.complete("handleImportProjects", start); //$NON-NLS-1$
+			if (restored) {
+				// The projects come from the snapshot, only the other startup tasks are performed.
+				performerStartup.getTriggeredSetupTasks().removeAll(importTasks);
+				refreshRestoredWorkspace();
+			} else if (reconcileProjects(importTasks)) {
+				performerStartup.getTriggeredSetupTasks().removeAll(importTasks);
+			} else {
+				start = Tracer.now();
+				cleanWorkspace();
+				tracer.complete("cleanWorkspace", start); //$NON-NLS-1$
+			}
 
+			start = Tracer.now();
 			performerStartup.perform();
+			tracer.complete("performStartupTasks", start); //$NON-NLS-1$
 
 			validatePerform(performerStartup);
-
-			waitEgitJobs();
 		} catch (Die e) {
 			throw e;
 		} catch (Exception e) {
@@ -203,8 +289,10 @@ public abstract class AbstractLogicalApplication implements IApplication {
 	 *            the root of the setup model.
 	 * @param performerStartup
 	 *            the SetupTaskPerformer.
+	 * @return the import tasks added to the SetupTaskPerformer.
 	 */
-	private void handleImportProjects(Index startupSetupIndex, SetupTaskPerformer performerStartup) {
+	private List<ProjectsImportTask> handleImportProjects(Index startupSetupIndex,
+			SetupTaskPerformer performerStartup) {
 		List<ProjectsImportTask> projectToImport = new ArrayList<ProjectsImportTask>();
 
 		// Import Projects & execute other startup tasks.
@@ -244,6 +332,69 @@ public abstract class AbstractLogicalApplication implements IApplication {
 					.getAbsolutePath(), false);
 			importTask.getSourceLocators().add(sourceLocator);
 			performerStartup.getTriggeredSetupTasks().add(importTask);
+			projectToImport.add(importTask);
+		}
+		return projectToImport;
+	}
+
+	/**
+	 * Updates the projects of the workspace to match the projects the import tasks would import, instead of
+	 * cleaning the workspace and importing everything again.
+	 * 
+	 * @param importTasks
+	 *            the import tasks.
+	 * @return <code>true</code> if the projects have been reconciled, <code>false</code> if the import tasks
+	 *         have to be performed on a clean workspace.
+	 * @throws CoreException
+	 *             if the workspace can not be updated.
+	 * @throws IOException
+	 *             if the changes can not be read for the sparse import.
+	 * @throws Die
+	 *             if the changes can not be computed for the sparse import.
+	 */
+	private boolean reconcileProjects(List<ProjectsImportTask> importTasks) throws CoreException,
+			IOException, Die {
+		IWorkspace workspace = org.eclipse.core.resources.ResourcesPlugin.getWorkspace();
+		ProjectReconciler reconciler = new ProjectReconciler(workspace, repo.getWorkTree(),
+				getProjectIndex());
+		Map<String, IPath> projects = reconciler.discover(importTasks);
+		if (projects == null) {
+			if (sparseImport) {
+				progressPageLog.log("Sparse import not supported by the import tasks, importing all projects"); //$NON-NLS-1$
+			}
+			return false;
+		}
+		if (sparseImport) {
+			List<DiffEntry> changes = getSparseImportChanges();
+			Map<String, IPath> selection = null;
+			if (changes != null) {
+				selection = new SparseImport(repo, workspace, projects).select(changes);
+			}
+			if (selection != null) {
+				progressPageLog.log("Sparse import of " + selection.size() + " projects out of " //$NON-NLS-1$ //$NON-NLS-2$
+						+ projects.size());
+				projects = selection;
+				sparseWorkspace = true;
+			} else {
+				progressPageLog.log("Changes referring outside of the projects, importing all projects"); //$NON-NLS-1$
+			}
+		}
+		reconciler.reconcile(projects, new NullProgressMonitor());
+		progressPageLog.log(reconciler.getSummary());
+		return true;
+	}
+
+	/**
+	 * Gets the project descriptors of the repository from its index.
+	 * 
+	 * @return the project index or <code>null</code> if it can not be built.
+	 */
+	private ProjectIndex getProjectIndex() {
+		try {
+			return ProjectIndex.get(repo);
+		} catch (IOException e) {
+			progressPageLog.log("Unable to index the projects, walking the work tree: " + e.getMessage()); //$NON-NLS-1$
+			return null;
 		}
 	}
 
@@ -333,20 +484,70 @@ public abstract class AbstractLogicalApplication implements IApplication {
 	}
 
 	/**
-	 * Forces to wait for all EGit operation to terminate.
+	 * Refreshes the projects of a workspace restored from a snapshot, since the work tree may have changed
+	 * since the snapshot has been captured.
+	 * 
+	 * @throws CoreException
+	 *             if the workspace can not be refreshed.
+	 */
+	private void refreshRestoredWorkspace() throws CoreException {
+		progressPageLog.log("Workspace restored from " + snapshotLocation); //$NON-NLS-1$
+		org.eclipse.core.resources.ResourcesPlugin.getWorkspace().getRoot().refreshLocal(
+				IResource.DEPTH_INFINITE, new NullProgressMonitor());
+	}
+
+	/**
+	 * Saves the workspace and captures its metadata for the next runs. A failure only means that the next
+	 * runs import the projects again.
+	 * 
+	 * @param snapshot
+	 *            the snapshot to capture.
+	 */
+	private void captureWorkspace(WorkspaceSnapshot snapshot) {
+		IWorkspace workspace = org.eclipse.core.resources.ResourcesPlugin.getWorkspace();
+		try {
+			workspace.save(true, new NullProgressMonitor());
+			if (snapshot.capture(workspace.getRoot().getLocation().toFile())) {
+				progressPageLog.log("Workspace snapshot captured in " + snapshot.getLocation()); //$NON-NLS-1$
+			}
+		} catch (CoreException e) {
+			progressPageLog.log("Unable to capture the workspace snapshot: " + e.getMessage()); //$NON-NLS-1$
+		} catch (IOException e) {
+			progressPageLog.log("Unable to capture the workspace snapshot: " + e.getMessage()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Waits until the projects are connected to the repository by EGit.
 	 * <p>
 	 * If this is not done then it might happen that some projects are not connected yet whereas the git
 	 * command is being performed.
 	 * </p>
 	 * 
-	 * @throws InterruptedException
-	 */
-	private void waitEgitJobs() throws InterruptedException {
-		IJobManager jobMan = Job.getJobManager();
-		jobMan.join(JobFamilies.AUTO_SHARE, new NullProgressMonitor());
-		jobMan.join(JobFamilies.AUTO_IGNORE, new NullProgressMonitor());
-		jobMan.join(JobFamilies.REPOSITORY_CHANGED, new NullProgressMonitor());
-		jobMan.join(JobFamilies.INDEX_DIFF_CACHE_UPDATE, new NullProgressMonitor());
+	 * @throws Die
+	 *             if a project can not be connected.
+	 */
+	private void waitEgitJobs() throws Die {
+		long start = Tracer.now();
+		try {
+			new EGitReadiness(repo, getEGitTimeout(), progressPageLog)
+					.await(org.eclipse.core.resources.ResourcesPlugin.getWorkspace().getRoot());
+		} finally {
+			tracer.complete("waitEgitJobs", start); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Gets the deadline of the wait for EGit to connect the projects.
+	 * 
+	 * @return the deadline given by the <code>--egit-timeout</code> option, in seconds, or
+	 *         {@link EGitReadiness#DEFAULT_TIMEOUT} if the option is not set.
+	 */
+	int getEGitTimeout() {
+		if (egitTimeout != null) {
+			return egitTimeout.intValue();
+		}
+		return EGitReadiness.DEFAULT_TIMEOUT;
 	}
 
 	/**
@@ -357,7 +558,24 @@ public abstract class AbstractLogicalApplication implements IApplication {
 		System.setProperty(IApplicationContext.EXIT_DATA_PROPERTY, EMPTY_STRING);
 		final Map<?, ?> args = context.getArguments();
 		final String[] appArgs = (String[])args.get("application.args"); //$NON-NLS-1$
+		return run(appArgs);
+	}
 
+	/**
+	 * Runs this application with the given arguments.
+	 * <p>
+	 * This is the body of {@link #start(IApplicationContext)}. It is also called by the
+	 * {@link LogicalDaemonApplication} to run a request inside an already started runtime.
+	 * </p>
+	 * 
+	 * @param appArgs
+	 *            the application arguments.
+	 * @return a {@link org.eclipse.emf.compare.git.pgm.Returns}.
+	 */
+	public Object run(String[] appArgs) {
+		if (!tracer.isEnabled()) {
+			tracer = Tracer.fromSystemProperties("eclipse"); //$NON-NLS-1$
+		}
 		// This time it creates the repository using EGit code in order to add the repository to the EGit
 		// cache
 		final CmdLineParserRepositoryBuilder clp = CmdLineParserRepositoryBuilder
@@ -365,29 +583,165 @@ public abstract class AbstractLogicalApplication implements IApplication {
 		try {
 			clp.parseArgument(appArgs);
 			repo = clp.getRepo();
+			gitPreparation = readGitPreparation();
 		} catch (CmdLineException err) {
 			err.printStackTrace();
 			System.err.println(err.getMessage());
 			dispose();
 			return Returns.ERROR;
 		}
+		HeadlessProfile profile = null;
+		if (headless) {
+			profile = new HeadlessProfile();
+			profile.apply();
+		}
+		// The CPU time of the process, which includes the job workers that end during the run.
+		long cpuTime = HeadlessProfile.getCpuTime();
+		WorkspaceBatch batch = new WorkspaceBatch(org.eclipse.core.resources.ResourcesPlugin.getWorkspace());
+		long start = Tracer.now();
 		try {
-			performStartup();
-			return performGitCommand();
+			return performPipeline(batch);
 		} catch (Die e) {
 			Integer returnCode = EMFCompareGitPGMUtil.handleDieError(e, showStackTrace);
 			return returnCode;
 		} finally {
+			if (profile != null) {
+				int deferredJobs = profile.release();
+				if (progressPageLog != null && cpuTime >= 0) {
+					progressPageLog.log("Headless run: " + (HeadlessProfile.getCpuTime() - cpuTime) //$NON-NLS-1$
+							+ " ms of process CPU time, " + deferredJobs + " background jobs deferred"); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+			tracer.complete("workspaceBatches", start, batch.getEventCount() + " resource change events"); //$NON-NLS-1$ //$NON-NLS-2$
 			dispose();
+			writeTraceEvents();
 		}
 
 	}
 
+	/**
+	 * Sets the tracer of the phases of this application, when it runs in the launcher.
+	 * 
+	 * @param tracer
+	 *            the tracer of the launcher.
+	 */
+	public void setTracer(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	/**
+	 * Gets the tracer of the phases of this application.
+	 * 
+	 * @return the tracer, {@link Tracer#DISABLED} if the command is not traced.
+	 */
+	protected Tracer getTracer() {
+		return tracer;
+	}
+
+	/**
+	 * Writes the events of this application in the file given by the launcher, if the command is traced.
+	 */
+	private void writeTraceEvents() {
+		String traceEvents = System.getProperty(Tracer.TRACE_EVENTS_PROPERTY);
+		if (traceEvents == null || !tracer.isEnabled()) {
+			return;
+		}
+		try {
+			tracer.writeEvents(new File(traceEvents));
+		} catch (IOException e) {
+			// The timeline only holds the phases of the launcher.
+		}
+	}
+
+	/**
+	 * Performs the startup and the git command in two workspace batches. EGit connects the imported projects
+	 * once it is notified of their creation, which only happens at the end of the startup batch: the wait
+	 * for EGit is thus done between the batches. When the workspace snapshot has to be captured, it is
+	 * captured between the batches as well, since the workspace can not be saved during a workspace
+	 * operation.
+	 * 
+	 * @param batch
+	 *            the workspace batch.
+	 * @return a {@link org.eclipse.emf.compare.git.pgm.Returns}.
+	 * @throws Die
+	 *             if the startup or the git command fails.
+	 */
+	private Integer performPipeline(WorkspaceBatch batch) throws Die {
+		boolean capture = snapshotLocation != null && !new WorkspaceSnapshot(snapshotLocation).exists();
+		batch.run(new WorkspaceBatch.Step() {
+			public Integer perform() throws Die {
+				performStartup();
+				return null;
+			}
+		});
+		waitEgitJobs();
+		// A sparse workspace does not fit the next runs.
+		if (capture && !sparseWorkspace) {
+			captureWorkspace(new WorkspaceSnapshot(snapshotLocation));
+		}
+		return batch.run(new WorkspaceBatch.Step() {
+			public Integer perform() throws Die {
+				return tracePerformGitCommand();
+			}
+		});
+	}
+
+	/**
+	 * Performs the git command and records its duration.
+	 * 
+	 * @return a {@link org.eclipse.emf.compare.git.pgm.Returns}.
+	 * @throws Die
+	 *             if the git command fails.
+	 */
+	private Integer tracePerformGitCommand() throws Die {
+		long start = Tracer.now();
+		try {
+			return performGitCommand();
+		} finally {
+			tracer.complete("performGitCommand", start); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads the git computations prepared by the launcher.
+	 * 
+	 * @return the git preparation or <code>null</code> if there is none or if it can not be read.
+	 */
+	private GitPreparation readGitPreparation() {
+		if (preparedState == null) {
+			return null;
+		}
+		try {
+			return GitPreparation.read(preparedState);
+		} catch (IOException e) {
+			// Everything is computed again.
+			return null;
+		}
+	}
+
+	/**
+	 * Converts the result of an application to an exit code.
+	 * 
+	 * @param result
+	 *            the result of {@link #run(String[])}.
+	 * @return the exit code.
+	 */
+	public static int toExitCode(Object result) {
+		if (result instanceof Integer) {
+			return ((Integer)result).intValue();
+		} else if (result instanceof Returns) {
+			return ((Returns)result).code().intValue();
+		}
+		return Returns.ERROR.code().intValue();
+	}
+
 	protected void dispose() {
 		if (repo != null) {
 			repo.close();
 		}
-		progressPageLog.setTerminating();
+		if (progressPageLog != null) {
+			progressPageLog.setTerminating();
+		}
 	}
 
 	/**
@@ -0,0 +1,423 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Wire protocol between the launcher and a {@link LogicalDaemonApplication}.
+ * <p>
+ * The launcher sends one request per connection: the daemon token, the identifier of the logical application
+ * to run and its arguments. The daemon answers with a sequence of frames holding the standard and error
+ * output of the application, terminated by a frame holding its exit code.
+ * </p>
+ * <p>
+ * A running daemon publishes its loopback port and token in a state file readable by its owner only. Only
+ * processes able to read this file can talk to the daemon.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+public final class DaemonProtocol {
+
+	/**
+	 * Identifier of the daemon application.
+	 */
+	public static final String DAEMON_APPLICATION_ID = "emf.compare.git.logicaldaemon"; //$NON-NLS-1$
+
+	/**
+	 * Frame holding bytes written on the standard output.
+	 */
+	public static final byte STDOUT = 'O';
+
+	/**
+	 * Frame holding bytes written on the error output.
+	 */
+	public static final byte STDERR = 'E';
+
+	/**
+	 * Frame holding the exit code of the application.
+	 */
+	public static final byte EXIT = 'X';
+
+	/**
+	 * Maximum number of arguments of a request.
+	 */
+	public static final int MAX_ARGUMENTS = 1024;
+
+	/**
+	 * Maximum number of bytes of an output frame.
+	 */
+	public static final int MAX_FRAME_LENGTH = 1 << 20;
+
+	private static final String STARTING_SUFFIX = ".starting"; //$NON-NLS-1$
+
+	private static final String LOCK_SUFFIX = ".lock"; //$NON-NLS-1$
+
+	private static final String CLAIM_SUFFIX = ".claim"; //$NON-NLS-1$
+
+	private static final String TMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+
+	private static final String PORT_KEY = "port"; //$NON-NLS-1$
+
+	private static final String TOKEN_KEY = "token"; //$NON-NLS-1$
+
+	private DaemonProtocol() {
+	}
+
+	/**
+	 * Receives the output of a request.
+	 */
+	public interface OutputHandler {
+		/**
+		 * Handles a chunk of output.
+		 * 
+		 * @param channel
+		 *            {@link DaemonProtocol#STDOUT} or {@link DaemonProtocol#STDERR}.
+		 * @param bytes
+		 *            the bytes written by the application.
+		 * @throws IOException
+		 *             if the output can not be handled.
+		 */
+		void handle(byte channel, byte[] bytes) throws IOException;
+	}
+
+	/**
+	 * A request sent by the launcher.
+	 */
+	public static final class Request {
+
+		private final String token;
+
+		private final String application;
+
+		private final List<String> arguments;
+
+		Request(String token, String application, List<String> arguments) {
+			this.token = token;
+			this.application = application;
+			this.arguments = Collections.unmodifiableList(arguments);
+		}
+
+		public String getToken() {
+			return token;
+		}
+
+		public String getApplication() {
+			return application;
+		}
+
+		public List<String> getArguments() {
+			return arguments;
+		}
+	}
+
+	/**
+	 * The published state of a running daemon.
+	 */
+	public static final class State {
+
+		private final int port;
+
+		private final String token;
+
+		State(int port, String token) {
+			this.port = port;
+			this.token = token;
+		}
+
+		public int getPort() {
+			return port;
+		}
+
+		public String getToken() {
+			return token;
+		}
+	}
+
+	/**
+	 * Writes a request.
+	 * 
+	 * @param out
+	 *            the connection to the daemon.
+	 * @param token
+	 *            the token of the daemon.
+	 * @param application
+	 *            the identifier of the logical application to run.
+	 * @param arguments
+	 *            the arguments of the logical application.
+	 * @throws IOException
+	 *             if the request can not be sent.
+	 */
+	public static void writeRequest(DataOutputStream out, String token, String application,
+			List<String> arguments) throws IOException {
+		out.writeUTF(token);
+		out.writeUTF(application);
+		out.writeInt(arguments.size());
+		for (String argument : arguments) {
+			out.writeUTF(argument);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Reads a request. The token is checked before the rest of the request is read.
+	 * 
+	 * @param in
+	 *            the connection to the launcher.
+	 * @param expectedToken
+	 *            the token of the daemon.
+	 * @return the request.
+	 * @throws IOException
+	 *             if the request can not be read, does not carry the expected token or has more than
+	 *             {@link #MAX_ARGUMENTS} arguments.
+	 */
+	public static Request readRequest(DataInputStream in, String expectedToken) throws IOException {
+		String token = in.readUTF();
+		if (!expectedToken.equals(token)) {
+			throw new IOException("Invalid token"); //$NON-NLS-1$
+		}
+		String application = in.readUTF();
+		int size = in.readInt();
+		if (size < 0 || size > MAX_ARGUMENTS) {
+			throw new IOException("Invalid number of arguments: " + size); //$NON-NLS-1$
+		}
+		List<String> arguments = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			arguments.add(in.readUTF());
+		}
+		return new Request(token, application, arguments);
+	}
+
+	/**
+	 * Creates a stream writing output frames on the given connection.
+	 * 
+	 * @param out
+	 *            the connection to the launcher.
+	 * @param channel
+	 *            {@link #STDOUT} or {@link #STDERR}.
+	 * @return a stream.
+	 */
+	public static OutputStream newOutputStream(final DataOutputStream out, final byte channel) {
+		return new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] {(byte)b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				int written = 0;
+				while (written < len) {
+					int length = Math.min(len - written, MAX_FRAME_LENGTH);
+					synchronized (out) {
+						out.writeByte(channel);
+						out.writeInt(length);
+						out.write(b, off + written, length);
+					}
+					written += length;
+				}
+			}
+
+			@Override
+			public void flush() throws IOException {
+				synchronized (out) {
+					out.flush();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Writes the exit code of the application. This is the last frame of a response.
+	 * 
+	 * @param out
+	 *            the connection to the launcher.
+	 * @param code
+	 *            the exit code.
+	 * @throws IOException
+	 *             if the frame can not be written.
+	 */
+	public static void writeExit(DataOutputStream out, int code) throws IOException {
+		synchronized (out) {
+			out.writeByte(EXIT);
+			out.writeInt(code);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Reads the response to a request.
+	 * 
+	 * @param in
+	 *            the connection to the daemon.
+	 * @param handler
+	 *            receives the output of the application.
+	 * @return the exit code of the application.
+	 * @throws IOException
+	 *             if the response can not be read or holds a frame longer than {@link #MAX_FRAME_LENGTH}.
+	 */
+	public static int readResponse(DataInputStream in, OutputHandler handler) throws IOException {
+		while (true) {
+			byte frame = in.readByte();
+			if (frame == EXIT) {
+				return in.readInt();
+			}
+			int length = in.readInt();
+			if (length < 0 || length > MAX_FRAME_LENGTH) {
+				throw new IOException("Invalid frame length: " + length); //$NON-NLS-1$
+			}
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			handler.handle(frame, bytes);
+		}
+	}
+
+	/**
+	 * Publishes the port and the token of a running daemon. The file is created readable and writable by its
+	 * owner only, since the token is all a process needs to run commands as the owner of the daemon.
+	 * 
+	 * @param stateFile
+	 *            the state file.
+	 * @param port
+	 *            the loopback port the daemon listens on.
+	 * @param token
+	 *            the token of the daemon.
+	 * @throws IOException
+	 *             if the file can not be written.
+	 */
+	public static void writeState(File stateFile, int port, String token) throws IOException {
+		Properties state = new Properties();
+		state.setProperty(PORT_KEY, Integer.toString(port));
+		state.setProperty(TOKEN_KEY, token);
+		File parent = stateFile.getAbsoluteFile().getParentFile();
+		parent.mkdirs();
+		File tmp = createPrivateFile(parent, stateFile.getName());
+		OutputStream out = new FileOutputStream(tmp);
+		try {
+			state.store(out, null);
+		} finally {
+			out.close();
+		}
+		// Readers never see a partially written file.
+		Files.move(tmp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Creates an empty temporary file readable and writable by its owner only.
+	 * 
+	 * @param parent
+	 *            the folder of the file.
+	 * @param prefix
+	 *            the prefix of the name of the file.
+	 * @return the file.
+	 * @throws IOException
+	 *             if the file can not be created.
+	 */
+	private static File createPrivateFile(File parent, String prefix) throws IOException {
+		Path tmp;
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) { //$NON-NLS-1$
+			tmp = Files.createTempFile(parent.toPath(), prefix, TMP_SUFFIX, PosixFilePermissions
+					.asFileAttribute(PosixFilePermissions.fromString("rw-------"))); //$NON-NLS-1$
+		} else {
+			tmp = Files.createTempFile(parent.toPath(), prefix, TMP_SUFFIX);
+			File file = tmp.toFile();
+			file.setReadable(false, false);
+			file.setReadable(true, true);
+			file.setWritable(false, false);
+			file.setWritable(true, true);
+		}
+		return tmp.toFile();
+	}
+
+	/**
+	 * Gets the marker created by a launcher while the daemon publishing the given state file starts.
+	 * 
+	 * @param stateFile
+	 *            the state file of the daemon.
+	 * @return the marker.
+	 */
+	public static File getStartingMarker(File stateFile) {
+		return new File(stateFile.getPath() + STARTING_SUFFIX);
+	}
+
+	/**
+	 * Gets the file locked by the daemon publishing the given state file for as long as its process lives,
+	 * including while it starts and while it shuts its workspace down.
+	 * 
+	 * @param stateFile
+	 *            the state file of the daemon.
+	 * @return the lock file.
+	 */
+	public static File getLockFile(File stateFile) {
+		return new File(stateFile.getPath() + LOCK_SUFFIX);
+	}
+
+	/**
+	 * Gets the file locked by a launcher while it sends a request to the daemon publishing the given state
+	 * file, so that the other launchers look for another daemon.
+	 * 
+	 * @param stateFile
+	 *            the state file of the daemon.
+	 * @return the claim file.
+	 */
+	public static File getClaimFile(File stateFile) {
+		return new File(stateFile.getPath() + CLAIM_SUFFIX);
+	}
+
+	/**
+	 * Reads the state file of a daemon.
+	 * 
+	 * @param stateFile
+	 *            the state file.
+	 * @return the state of the daemon or <code>null</code> if there is no valid state file.
+	 */
+	public static State readState(File stateFile) {
+		if (!stateFile.isFile()) {
+			return null;
+		}
+		Properties state = new Properties();
+		try {
+			InputStream in = new FileInputStream(stateFile);
+			try {
+				state.load(in);
+			} finally {
+				in.close();
+			}
+			String token = state.getProperty(TOKEN_KEY);
+			if (token == null) {
+				return null;
+			}
+			return new State(Integer.parseInt(state.getProperty(PORT_KEY)), token);
+		} catch (IOException e) {
+			return null;
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.egit.core.JobFamilies;
+import org.eclipse.egit.core.op.ConnectProviderOperation;
+import org.eclipse.egit.core.project.RepositoryMapping;
+import org.eclipse.emf.compare.git.pgm.internal.ProgressPageLog;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Barrier waiting until the projects of the repository are shared with EGit.
+ * <p>
+ * The logical commands only need the projects of the work tree to be mapped to the repository. Instead of
+ * joining every EGit job family, among which index diff recalculations the commands never use, the barrier
+ * checks the mappings of the projects and only waits for the auto share jobs while some projects are not
+ * mapped yet. The projects still not mapped when the auto share jobs are done, or when the deadline is
+ * reached, are connected explicitly.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class EGitReadiness {
+
+	/**
+	 * Default deadline, in seconds.
+	 */
+	static final int DEFAULT_TIMEOUT = 60;
+
+	private static final long MILLIS_PER_SECOND = 1000L;
+
+	private static final String AUTO_SHARE_FAMILY = "AUTO_SHARE"; //$NON-NLS-1$
+
+	/**
+	 * The repository the projects should be mapped to.
+	 */
+	private final Repository repository;
+
+	/**
+	 * The deadline of the wait, in milliseconds.
+	 */
+	private final long timeout;
+
+	/**
+	 * The log reporting the waits.
+	 */
+	private final ProgressPageLog log;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param repository
+	 *            the repository the projects should be mapped to.
+	 * @param timeout
+	 *            the deadline of the wait, in seconds.
+	 * @param log
+	 *            the log reporting the waits.
+	 */
+	EGitReadiness(Repository repository, int timeout, ProgressPageLog log) {
+		this.repository = repository;
+		this.timeout = timeout * MILLIS_PER_SECOND;
+		this.log = log;
+	}
+
+	/**
+	 * Waits until the open projects of the work tree are mapped to the repository.
+	 * 
+	 * @param root
+	 *            the workspace root.
+	 * @throws Die
+	 *             if a project can not be connected to the repository.
+	 */
+	void await(IWorkspaceRoot root) throws Die {
+		List<IProject> pending = getUnmappedProjects(root);
+		if (pending.isEmpty()) {
+			return;
+		}
+
+		final long start = System.currentTimeMillis();
+		final long deadline = start + timeout;
+		try {
+			Job.getJobManager().join(JobFamilies.AUTO_SHARE, new NullProgressMonitor() {
+				@Override
+				public boolean isCanceled() {
+					return System.currentTimeMillis() > deadline;
+				}
+			});
+		} catch (OperationCanceledException e) {
+			log.log("EGit auto share not done after " + timeout + " ms"); //$NON-NLS-1$ //$NON-NLS-2$
+		} catch (InterruptedException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		}
+		log.log("Waited " + (System.currentTimeMillis() - start) + " ms on job family " //$NON-NLS-1$ //$NON-NLS-2$
+				+ AUTO_SHARE_FAMILY);
+
+		pending = getUnmappedProjects(root);
+		if (!pending.isEmpty()) {
+			connect(pending);
+		}
+	}
+
+	/**
+	 * Connects projects to the repository.
+	 * 
+	 * @param projects
+	 *            the projects to connect.
+	 * @throws Die
+	 *             if a project can not be connected.
+	 */
+	private void connect(List<IProject> projects) throws Die {
+		log.log("Connecting " + projects.size() + " projects to the repository"); //$NON-NLS-1$ //$NON-NLS-2$
+		File gitDir = repository.getDirectory();
+		for (IProject project : projects) {
+			// Connected by the auto share jobs in the meantime.
+			if (RepositoryMapping.getMapping(project) != null) {
+				continue;
+			}
+			try {
+				new ConnectProviderOperation(project, gitDir).execute(new NullProgressMonitor());
+			} catch (CoreException e) {
+				throw new DiesOn(DeathType.FATAL).duedTo(e).displaying(
+						"Unable to connect the project " + project.getName() + " to the repository").ready();
+			}
+		}
+	}
+
+	/**
+	 * Gets the open projects of the work tree not mapped to a repository yet.
+	 * 
+	 * @param root
+	 *            the workspace root.
+	 * @return the projects not mapped yet.
+	 */
+	private List<IProject> getUnmappedProjects(IWorkspaceRoot root) {
+		IPath workTree = new Path(repository.getWorkTree().getAbsolutePath());
+		List<IProject> unmapped = new ArrayList<IProject>();
+		for (IProject project : root.getProjects()) {
+			IPath location = project.getLocation();
+			if (project.isOpen() && location != null && workTree.isPrefixOf(location)
+					&& RepositoryMapping.getMapping(project) == null) {
+				unmapped.add(project);
+			}
+		}
+		return unmapped;
+	}
+}
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.egit.core.JobFamilies;
+
+/**
+ * Runtime profile turning off the EGit and Team background work the logical commands do not need.
+ * <p>
+ * The profile changes the default preferences so that EGit neither ignores the derived resources nor
+ * refreshes the repositories on index changes, does not compute the dirty state of the decorations, and so
+ * that the workspace is not refreshed automatically. The jobs of the auto ignore, index diff and repository
+ * change families that are scheduled anyway are canceled before they run. None of them contributes to the
+ * result of a diff or a merge, and the auto ignore jobs could even modify the <code>.gitignore</code> files
+ * of the work tree during a merge.
+ * </p>
+ * <p>
+ * The previous default preferences are restored when the profile is released, so that the runs sharing the
+ * same runtime afterwards, in a daemon or in the launcher, are not affected by the profile.
+ * </p>
+ * <p>
+ * The CPU time of a run with the profile is reported, to be compared with the CPU time of a run without it.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class HeadlessProfile extends JobChangeAdapter {
+
+	private static final String EGIT_CORE = "org.eclipse.egit.core"; //$NON-NLS-1$
+
+	private static final String EGIT_UI = "org.eclipse.egit.ui"; //$NON-NLS-1$
+
+	private static final String RESOURCES = "org.eclipse.core.resources"; //$NON-NLS-1$
+
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	/**
+	 * Default preferences changed by this profile: node, key and value.
+	 */
+	private static final String[][] PREFERENCES = {
+			{EGIT_CORE, "core_autoIgnoreDerivedResources", Boolean.FALSE.toString() }, //$NON-NLS-1$
+			{EGIT_UI, "refesh_on_index_change", Boolean.FALSE.toString() }, //$NON-NLS-1$
+			{EGIT_UI, "refesh_index_interval", "0" }, //$NON-NLS-1$ //$NON-NLS-2$
+			{EGIT_UI, "decorator_calculate_dirty", Boolean.FALSE.toString() }, //$NON-NLS-1$
+			{RESOURCES, "refresh.enabled", Boolean.FALSE.toString() }, //$NON-NLS-1$
+			{RESOURCES, "refresh.lightweight.enabled", Boolean.FALSE.toString() }, //$NON-NLS-1$
+	};
+
+	/**
+	 * Job families of the background work deferred by this profile.
+	 */
+	private static final Object[] DEFERRED_FAMILIES = {JobFamilies.AUTO_IGNORE,
+			JobFamilies.INDEX_DIFF_CACHE_UPDATE, JobFamilies.REPOSITORY_CHANGED, };
+
+	/**
+	 * Number of jobs canceled since this profile has been applied.
+	 */
+	private final AtomicInteger deferredJobs = new AtomicInteger();
+
+	/**
+	 * Default values of the {@link #PREFERENCES} before this profile has been applied, <code>null</code> for
+	 * the unset ones.
+	 */
+	private final String[] previousValues = new String[PREFERENCES.length];
+
+	/**
+	 * Applies this profile to the running platform. The default preferences are changed and the jobs of the
+	 * deferred families are canceled until {@link #release()} is called.
+	 */
+	void apply() {
+		for (int i = 0; i < PREFERENCES.length; i++) {
+			IEclipsePreferences node = DefaultScope.INSTANCE.getNode(PREFERENCES[i][0]);
+			previousValues[i] = node.get(PREFERENCES[i][1], null);
+			node.put(PREFERENCES[i][1], PREFERENCES[i][2]);
+		}
+
+		Job.getJobManager().addJobChangeListener(this);
+		for (Object family : DEFERRED_FAMILIES) {
+			Job.getJobManager().cancel(family);
+		}
+	}
+
+	/**
+	 * Stops canceling the jobs of the deferred families and restores the default preferences.
+	 * 
+	 * @return the number of jobs canceled while this profile was applied.
+	 */
+	int release() {
+		Job.getJobManager().removeJobChangeListener(this);
+		for (int i = 0; i < PREFERENCES.length; i++) {
+			IEclipsePreferences node = DefaultScope.INSTANCE.getNode(PREFERENCES[i][0]);
+			if (previousValues[i] == null) {
+				node.remove(PREFERENCES[i][1]);
+			} else {
+				node.put(PREFERENCES[i][1], previousValues[i]);
+			}
+		}
+		return deferredJobs.get();
+	}
+
+	/**
+	 * {@inheritDoc}. The jobs of the deferred families are canceled before they run.
+	 */
+	@Override
+	public void aboutToRun(IJobChangeEvent event) {
+		Job job = event.getJob();
+		for (Object family : DEFERRED_FAMILIES) {
+			if (job.belongsTo(family)) {
+				job.cancel();
+				deferredJobs.incrementAndGet();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Gets the CPU time consumed so far by the process, including the time of the threads that have ended
+	 * such as the job workers.
+	 * 
+	 * @return the CPU time in milliseconds or <code>-1</code> if the VM does not tell it.
+	 */
+	@SuppressWarnings("restriction")
+	static long getCpuTime() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean) {
+			long time = ((com.sun.management.OperatingSystemMXBean)os).getProcessCpuTime();
+			if (time >= 0) {
+				return time / NANOS_PER_MILLI;
+			}
+		}
+		return -1;
+	}
+}
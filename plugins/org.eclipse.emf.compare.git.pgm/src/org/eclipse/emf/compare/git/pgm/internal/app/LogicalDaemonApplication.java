@@ -0,0 +1,397 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EMPTY_STRING;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol.Request;
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol.State;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil;
+import org.eclipse.emf.compare.git.pgm.internal.util.Fingerprint;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Resident logical application. <h3>Name</h3>
+ * <p>
+ * logicaldaemon - Keeps a provisioned runtime warm for logical commands
+ * </p>
+ * <h4>Synopsis</h4>
+ * <p>
+ * logicaldaemon &lt;stateFile&gt; [--idle-timeout &lt;seconds&gt;] [--max-requests &lt;count&gt;] [--max-heap
+ * &lt;percent&gt;]
+ * </p>
+ * <h4>Description</h4>
+ * <p>
+ * The daemon listens on a loopback port published with a random token in the state file. Each connection
+ * carries one request that runs a {@link LogicalDiffApplication} or a {@link LogicalMergeApplication} in this
+ * runtime, so that the JVM start, the OSGi resolution and the EGit activation are paid once.
+ * </p>
+ * <p>
+ * Since all requests share the workspace of this runtime and the standard streams of the process, they are
+ * serialized. The daemon exits when no request has been received during the idle timeout.
+ * </p>
+ * <p>
+ * A daemon of a pool is recycled after a number of requests, or once the heap still used after the last
+ * garbage collections crosses a share of the maximum heap. It then withdraws its state file before answering
+ * its last request, so that no other request is sent to it, and exits. The daemon holds a lock on a file next
+ * to its state file until its process ends, so that no new daemon is started on the same workspace before.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+public class LogicalDaemonApplication implements IApplication {
+
+	/**
+	 * Default idle timeout in seconds.
+	 */
+	public static final int DEFAULT_IDLE_TIMEOUT = 600;
+
+	private static final int TOKEN_LENGTH = 16;
+
+	private static final int PERCENT = 100;
+
+	private static final long REQUEST_POLL_INTERVAL = 50L;
+
+	private static final String UTF_8 = "UTF-8"; //$NON-NLS-1$
+
+	/**
+	 * File where the port and the token of this daemon are published.
+	 */
+	@Argument(index = 0, metaVar = "<stateFile>", required = true, usage = "File where the port and the token of the daemon are published.")
+	private File stateFile;
+
+	/**
+	 * Idle time in seconds after which the daemon exits.
+	 */
+	@Option(name = "--idle-timeout", metaVar = "seconds", usage = "Idle time after which the daemon exits.")
+	private int idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+	/**
+	 * Number of requests after which the daemon exits, <code>0</code> for no limit.
+	 */
+	@Option(name = "--max-requests", metaVar = "count", usage = "Number of requests after which the daemon exits.")
+	private int maxRequests;
+
+	/**
+	 * Share of the maximum heap, in percent, whose use after a request makes the daemon exit.
+	 */
+	@Option(name = "--max-heap", metaVar = "percent", usage = "Share of the maximum heap still used after the garbage collections beyond which the daemon exits.")
+	private int maxHeap = PERCENT;
+
+	/**
+	 * Log of this daemon, captured before the standard streams are redirected to the requests.
+	 */
+	private PrintStream log;
+
+	/**
+	 * Lock of the workspace and of the standard streams.
+	 */
+	private final Lock workspaceLock = new ReentrantLock();
+
+	/**
+	 * Number of requests being handled.
+	 */
+	private final AtomicInteger activeRequests = new AtomicInteger();
+
+	/**
+	 * Number of requests handled since the start.
+	 */
+	private final AtomicInteger handledRequests = new AtomicInteger();
+
+	/**
+	 * Channel of the lock file, held open until the process exits.
+	 */
+	private FileChannel lockChannel;
+
+	/**
+	 * The socket this daemon listens on.
+	 */
+	private volatile ServerSocket serverSocket;
+
+	/**
+	 * Secret expected in every request.
+	 */
+	private String token;
+
+	/**
+	 * {@inheritDoc}.
+	 */
+	public Object start(IApplicationContext context) throws Exception {
+		System.setProperty(IApplicationContext.EXIT_DATA_PROPERTY, EMPTY_STRING);
+		log = System.out;
+		final Map<?, ?> args = context.getArguments();
+		final String[] appArgs = (String[])args.get("application.args"); //$NON-NLS-1$
+		try {
+			new CmdLineParser(this).parseArgument(appArgs);
+		} catch (CmdLineException err) {
+			System.err.println(err.getMessage());
+			if (stateFile != null) {
+				DaemonProtocol.getStartingMarker(stateFile).delete();
+			}
+			return Returns.ERROR.code();
+		}
+		if (!lock()) {
+			System.err.println("Another logical daemon is running on " + stateFile); //$NON-NLS-1$
+			DaemonProtocol.getStartingMarker(stateFile).delete();
+			return Returns.ERROR.code();
+		}
+
+		byte[] secret = new byte[TOKEN_LENGTH];
+		new SecureRandom().nextBytes(secret);
+		token = Fingerprint.toHexString(secret);
+
+		serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+		try {
+			serverSocket.setSoTimeout((int)TimeUnit.SECONDS.toMillis(idleTimeout));
+			DaemonProtocol.writeState(stateFile, serverSocket.getLocalPort(), token);
+			DaemonProtocol.getStartingMarker(stateFile).delete();
+			log.println("Logical daemon listening on port " //$NON-NLS-1$
+					+ serverSocket.getLocalPort());
+			serve();
+			// A recycled daemon still answers its last request.
+			while (activeRequests.get() > 0) {
+				Thread.sleep(REQUEST_POLL_INTERVAL);
+			}
+		} finally {
+			withdrawState();
+			serverSocket.close();
+		}
+		return Returns.COMPLETE.code();
+	}
+
+	/**
+	 * Locks the lock file of the state file. The lock is released by the end of the process.
+	 * 
+	 * @return <code>false</code> if another daemon holds the lock.
+	 * @throws IOException
+	 *             if the lock file can not be opened.
+	 */
+	private boolean lock() throws IOException {
+		File lockFile = DaemonProtocol.getLockFile(stateFile);
+		lockFile.getAbsoluteFile().getParentFile().mkdirs();
+		lockChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+		FileLock lock = lockChannel.tryLock();
+		if (lock == null) {
+			lockChannel.close();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Deletes the state file if it is still the one published by this daemon.
+	 */
+	private void withdrawState() {
+		State state = DaemonProtocol.readState(stateFile);
+		if (state != null && token.equals(state.getToken())) {
+			stateFile.delete();
+		}
+	}
+
+	/**
+	 * Tells whether this daemon should be recycled after the requests handled so far.
+	 * 
+	 * @return <code>true</code> if this daemon should exit.
+	 */
+	private boolean shouldRecycle() {
+		if (maxRequests > 0 && handledRequests.get() >= maxRequests) {
+			return true;
+		}
+		if (maxHeap >= PERCENT) {
+			return false;
+		}
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			// The usage after the last collection, the current usage includes the garbage.
+			MemoryUsage usage = pool.getCollectionUsage();
+			if (pool.getType() == MemoryType.HEAP && usage != null) {
+				used += usage.getUsed();
+			}
+		}
+		return used * PERCENT > Runtime.getRuntime().maxMemory() * maxHeap;
+	}
+
+	/**
+	 * Accepts connections until the idle timeout expires with no request being handled.
+	 * 
+	 * @throws IOException
+	 *             if the server socket fails.
+	 */
+	private void serve() throws IOException {
+		while (!serverSocket.isClosed()) {
+			final Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (SocketTimeoutException e) {
+				if (activeRequests.get() == 0) {
+					log.println("Logical daemon idle, exiting."); //$NON-NLS-1$
+					return;
+				}
+				continue;
+			} catch (SocketException e) {
+				// Closed by stop()
+				return;
+			}
+			activeRequests.incrementAndGet();
+			Thread handler = new Thread(new Runnable() {
+				public void run() {
+					try {
+						handle(socket);
+					} finally {
+						activeRequests.decrementAndGet();
+					}
+				}
+			}, "Logical daemon request"); //$NON-NLS-1$
+			handler.start();
+		}
+	}
+
+	/**
+	 * Handles one request.
+	 * 
+	 * @param socket
+	 *            the connection to the launcher.
+	 */
+	private void handle(Socket socket) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			Request request = DaemonProtocol.readRequest(in, token);
+			int code = run(request, out);
+			handledRequests.incrementAndGet();
+			if (shouldRecycle()) {
+				log.println("Logical daemon recycled after " + handledRequests.get() //$NON-NLS-1$
+						+ " requests, exiting."); //$NON-NLS-1$
+				withdrawState();
+				stop();
+			}
+			DaemonProtocol.writeExit(out, code);
+		} catch (IOException e) {
+			// The launcher went away or is not entitled to send requests.
+			EMFCompareGitPGMUtil.handleDieError(new DiesOn(DeathType.ERROR).duedTo(e).displaying(
+					"Request aborted: " + e.getMessage()).ready(), false, log, log); //$NON-NLS-1$
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Nothing to do.
+			}
+		}
+	}
+
+	/**
+	 * Runs the application of a request, forwarding its output to the launcher.
+	 * 
+	 * @param request
+	 *            the request.
+	 * @param out
+	 *            the connection to the launcher.
+	 * @return the exit code of the application.
+	 * @throws IOException
+	 *             if the output can not be forwarded.
+	 */
+	private int run(Request request, DataOutputStream out) throws IOException {
+		final AbstractLogicalApplication application = createApplication(request.getApplication());
+		if (application == null || request.getArguments().isEmpty()) {
+			return Returns.ERROR.code();
+		}
+		String[] arguments = request.getArguments().toArray(new String[request.getArguments().size()]);
+		workspaceLock.lock();
+		try {
+			PrintStream previousOut = System.out;
+			PrintStream previousErr = System.err;
+			PrintStream requestOut = new PrintStream(DaemonProtocol.newOutputStream(out,
+					DaemonProtocol.STDOUT), true, UTF_8);
+			PrintStream requestErr = new PrintStream(DaemonProtocol.newOutputStream(out,
+					DaemonProtocol.STDERR), true, UTF_8);
+			System.setOut(requestOut);
+			System.setErr(requestErr);
+			try {
+				return AbstractLogicalApplication.toExitCode(application.run(arguments));
+			} catch (RuntimeException e) {
+				return EMFCompareGitPGMUtil.handleDieError(new DiesOn(DeathType.SOFTWARE_ERROR).duedTo(e)
+						.displaying(e.toString()).ready(), true, requestOut, requestErr).intValue();
+			} finally {
+				requestOut.flush();
+				requestErr.flush();
+				System.setOut(previousOut);
+				System.setErr(previousErr);
+			}
+		} finally {
+			workspaceLock.unlock();
+		}
+	}
+
+	/**
+	 * Creates the logical application matching the given identifier.
+	 * 
+	 * @param applicationId
+	 *            the identifier of the application.
+	 * @return the application or <code>null</code> if the identifier is unknown.
+	 */
+	private static AbstractLogicalApplication createApplication(String applicationId) {
+		if (LogicalDiffApplication.APPLICATION_ID.equals(applicationId)) {
+			return new LogicalDiffApplication();
+		} else if (LogicalMergeApplication.APPLICATION_ID.equals(applicationId)) {
+			return new LogicalMergeApplication();
+		}
+		return null;
+	}
+
+	/**
+	 * {@inheritDoc}.
+	 */
+	public void stop() {
+		ServerSocket socket = serverSocket;
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// Nothing to do.
+			}
+		}
+	}
+}
@@ -11,7 +11,9 @@
 package org.eclipse.emf.compare.git.pgm.internal.app;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -29,6 +31,10 @@ import org.eclipse.emf.compare.EMFCompare;
 import org.eclipse.emf.compare.git.pgm.Returns;
 import org.eclipse.emf.compare.git.pgm.internal.args.PathFilterHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.RefOptionHandler;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.util.Tracer;
 import org.eclipse.emf.compare.ide.ui.internal.logical.ComparisonScopeBuilder;
 import org.eclipse.emf.compare.ide.ui.internal.logical.EMFResourceMapping;
 import org.eclipse.emf.compare.ide.ui.internal.logical.IdenticalResourceMinimizer;
@@ -41,6 +47,7 @@ import org.eclipse.emf.ecore.util.EcoreUtil.Copier;
 import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
 import org.eclipse.jgit.api.DiffCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
@@ -68,6 +75,11 @@ import org.kohsuke.args4j.Option;
 @SuppressWarnings({"restriction" })
 public class LogicalDiffApplication extends AbstractLogicalApplication {
 
+	/**
+	 * Identifier of this application.
+	 */
+	public static final String APPLICATION_ID = "emf.compare.git.logicaldiff"; //$NON-NLS-1$
+
 	/**
 	 * Holds the reference from which the differences should be displayed.
 	 */
@@ -96,21 +108,9 @@ public class LogicalDiffApplication extends AbstractLogicalApplication {
 
 			// Call JGit diff to get the files involved
 			OutputStream out = new ByteArrayOutputStream();
-			DiffCommand diffCommand = Git.open(repo.getDirectory()).diff().setOutputStream(out);
-			if (commit != null) {
-				diffCommand = diffCommand.setOldTree(getTreeIterator(repo, commit));
-			}
-			if (commitWith != null) {
-				diffCommand = diffCommand.setNewTree(getTreeIterator(repo, commitWith));
-			}
-			if (pathFilter != null) {
-				diffCommand = diffCommand.setPathFilter(pathFilter);
-			}
+			DiffCommand diffCommand = createDiffCommand(out);
 			Set<IFile> files = new HashSet<IFile>();
-			List<DiffEntry> entries = diffCommand.call();
-
-			for (DiffEntry diffEntry : entries) {
-				String path = diffEntry.getOldPath();
+			for (String path : getChangedPaths(diffCommand)) {
 				if (path != null) {
 					IFile file = ws.getRoot().getFile(new Path(path));
 					if (file != null) {
@@ -125,6 +125,7 @@ public class LogicalDiffApplication extends AbstractLogicalApplication {
 			}
 
 			for (IFile file : files) {
+				long start = Tracer.now();
 				RemoteResourceMappingContext mergeContext = createSubscriberForComparison(repo, commit,
 						commitWith, file);
 				if (!isEMFCompareCompliantFile(mergeContext, file)) {
@@ -164,6 +165,7 @@ public class LogicalDiffApplication extends AbstractLogicalApplication {
 						}
 					}
 				}
+				getTracer().complete("compare", start, file.getFullPath().toString()); //$NON-NLS-1$
 			}
 		} catch (Exception e) {
 			System.err.println(e.getMessage());
@@ -173,4 +175,69 @@ public class LogicalDiffApplication extends AbstractLogicalApplication {
 		return Returns.COMPLETE.code();
 	}
 
+	/**
+	 * {@inheritDoc}.
+	 */
+	@Override
+	protected List<DiffEntry> getSparseImportChanges() throws Die {
+		try {
+			return createDiffCommand(new ByteArrayOutputStream()).setShowNameAndStatusOnly(true).call();
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		} catch (GitAPIException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		}
+	}
+
+	/**
+	 * Creates the JGit diff command between the commits of this diff.
+	 * 
+	 * @param out
+	 *            the stream receiving the formatted diff.
+	 * @return the diff command.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	private DiffCommand createDiffCommand(OutputStream out) throws IOException {
+		DiffCommand diffCommand = Git.open(repo.getDirectory()).diff().setOutputStream(out);
+		if (commit != null) {
+			diffCommand = diffCommand.setOldTree(getTreeIterator(repo, commit));
+		}
+		if (commitWith != null) {
+			diffCommand = diffCommand.setNewTree(getTreeIterator(repo, commitWith));
+		}
+		if (pathFilter != null) {
+			diffCommand = diffCommand.setPathFilter(pathFilter);
+		}
+		return diffCommand;
+	}
+
+	/**
+	 * Gets the paths of the files involved in the diff, from the git preparation of the launcher if it
+	 * applies to this diff. Otherwise the diff is computed again, keeping to the paths of the preparation if
+	 * the launcher has displayed the other entries.
+	 * 
+	 * @param diffCommand
+	 *            the diff command to call otherwise.
+	 * @return the paths of the files involved in the diff.
+	 * @throws GitAPIException
+	 *             if the diff command fails.
+	 */
+	private List<String> getChangedPaths(DiffCommand diffCommand) throws GitAPIException {
+		String filteredPath = null;
+		if (pathFilter instanceof PathFilter) {
+			filteredPath = ((PathFilter)pathFilter).getPath();
+		}
+		if (gitPreparation != null && gitPreparation.isValidForDiff(repo, commit, commitWith, filteredPath)) {
+			return gitPreparation.getChangedPaths();
+		}
+		List<String> paths = new ArrayList<String>();
+		for (DiffEntry diffEntry : diffCommand.call()) {
+			if (gitPreparation == null || !gitPreparation.isLimited()
+					|| gitPreparation.getChangedPaths().contains(diffEntry.getOldPath())) {
+				paths.add(diffEntry.getOldPath());
+			}
+		}
+		return paths;
+	}
 }
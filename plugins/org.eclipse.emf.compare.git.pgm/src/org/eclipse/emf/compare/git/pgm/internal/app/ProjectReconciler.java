@@ -0,0 +1,358 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IProjectDescription;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.emf.compare.git.pgm.internal.util.ProjectIndex;
+import org.eclipse.oomph.resources.EclipseProjectFactory;
+import org.eclipse.oomph.resources.ProjectFactory;
+import org.eclipse.oomph.resources.SourceLocator;
+import org.eclipse.oomph.setup.projects.ProjectsImportTask;
+
+/**
+ * Brings the projects of the workspace in line with the projects the import tasks would import.
+ * <p>
+ * The <code>.project</code> descriptors the source locators of the import tasks would discover are compared
+ * with the projects of the workspace: only the missing projects are created, the unknown ones deleted and the
+ * moved ones relocated, in a single workspace operation. The projects already in place are only refreshed,
+ * so that consecutive runs on the same branch do not import anything.
+ * </p>
+ * <p>
+ * The projects of the work tree of the repository are looked up in its {@link ProjectIndex} when there is
+ * one, the other root folders are walked.
+ * </p>
+ * <p>
+ * Source locators filtering the projects with predicates or discovering other kinds of projects are not
+ * supported, the import tasks are then performed by Oomph as usual.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class ProjectReconciler {
+
+	private static final String PROJECT_DESCRIPTOR = ".project"; //$NON-NLS-1$
+
+	/**
+	 * Folders never holding projects to import.
+	 */
+	private static final Set<String> SKIPPED_FOLDERS = new HashSet<String>();
+
+	static {
+		SKIPPED_FOLDERS.add(".git"); //$NON-NLS-1$
+		SKIPPED_FOLDERS.add(".metadata"); //$NON-NLS-1$
+	}
+
+	/**
+	 * The workspace.
+	 */
+	private final IWorkspace workspace;
+
+	/**
+	 * The work tree of the repository, <code>null</code> if there is no project index.
+	 */
+	private final IPath workTree;
+
+	/**
+	 * The project descriptors of the work tree, <code>null</code> to walk the work tree.
+	 */
+	private final ProjectIndex index;
+
+	private int created;
+
+	private int deleted;
+
+	private int relocated;
+
+	private int kept;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param workspace
+	 *            the workspace.
+	 * @param workTree
+	 *            the work tree of the repository.
+	 * @param index
+	 *            the project descriptors of the work tree or <code>null</code> to walk the work tree.
+	 */
+	ProjectReconciler(IWorkspace workspace, File workTree, ProjectIndex index) {
+		this.workspace = workspace;
+		if (workTree != null && index != null) {
+			this.workTree = new Path(workTree.getAbsolutePath());
+			this.index = index;
+		} else {
+			this.workTree = null;
+			this.index = null;
+		}
+	}
+
+	/**
+	 * Discovers the projects the import tasks would import.
+	 * 
+	 * @param importTasks
+	 *            the import tasks, with absolute root folders.
+	 * @return the locations of the projects by name, or <code>null</code> if a source locator is not
+	 *         supported.
+	 * @throws CoreException
+	 *             if a project descriptor can not be read.
+	 */
+	Map<String, IPath> discover(List<ProjectsImportTask> importTasks) throws CoreException {
+		Map<String, IPath> projects = new LinkedHashMap<String, IPath>();
+		for (ProjectsImportTask importTask : importTasks) {
+			for (SourceLocator sourceLocator : importTask.getSourceLocators()) {
+				if (!isSupported(sourceLocator)) {
+					return null;
+				}
+				File root = new File(sourceLocator.getRootFolder());
+				Set<File> excluded = new HashSet<File>();
+				for (String excludedPath : sourceLocator.getExcludedPaths()) {
+					excluded.add(new File(root, excludedPath));
+				}
+				if (index != null && workTree.isPrefixOf(new Path(root.getAbsolutePath()))) {
+					locateIndexed(root, sourceLocator.isLocateNestedProjects(), excluded, projects);
+				} else {
+					locate(root, sourceLocator.isLocateNestedProjects(), excluded, projects);
+				}
+			}
+		}
+		return projects;
+	}
+
+	/**
+	 * Creates, deletes, relocates and refreshes the projects of the workspace in a single workspace
+	 * operation.
+	 * 
+	 * @param projects
+	 *            the locations of the projects to have in the workspace, by name.
+	 * @param monitor
+	 *            the progress monitor.
+	 * @throws CoreException
+	 *             if the workspace can not be updated.
+	 */
+	void reconcile(final Map<String, IPath> projects, IProgressMonitor monitor) throws CoreException {
+		final IWorkspaceRoot root = workspace.getRoot();
+		workspace.run(new IWorkspaceRunnable() {
+			public void run(IProgressMonitor runMonitor) throws CoreException {
+				Set<String> existing = new HashSet<String>();
+				for (IProject project : root.getProjects()) {
+					existing.add(project.getName());
+					IPath location = projects.get(project.getName());
+					if (location == null) {
+						// Deletes the project from the workspace, not its content.
+						project.delete(false, true, runMonitor);
+						deleted++;
+					} else if (!location.equals(project.getLocation())) {
+						project.delete(false, true, runMonitor);
+						create(project, location, runMonitor);
+						relocated++;
+					} else {
+						if (!project.isOpen()) {
+							project.open(runMonitor);
+						}
+						// The work tree may have changed since the previous run.
+						project.refreshLocal(IResource.DEPTH_INFINITE, runMonitor);
+						kept++;
+					}
+				}
+				for (Map.Entry<String, IPath> entry : projects.entrySet()) {
+					if (!existing.contains(entry.getKey())) {
+						create(root.getProject(entry.getKey()), entry.getValue(), runMonitor);
+						created++;
+					}
+				}
+			}
+		}, root, IWorkspace.AVOID_UPDATE, monitor);
+	}
+
+	/**
+	 * Gets a summary of the last reconciliation.
+	 * 
+	 * @return the numbers of created, deleted, relocated and kept projects.
+	 */
+	String getSummary() {
+		return "Projects reconciled: " + created + " created, " + deleted + " deleted, " + relocated //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ " relocated, " + kept + " kept"; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Creates and opens a project.
+	 * 
+	 * @param project
+	 *            the project to create.
+	 * @param location
+	 *            the folder holding the project descriptor.
+	 * @param monitor
+	 *            the progress monitor.
+	 * @throws CoreException
+	 *             if the project can not be created.
+	 */
+	private void create(IProject project, IPath location, IProgressMonitor monitor) throws CoreException {
+		IProjectDescription description = workspace.loadProjectDescription(location
+				.append(PROJECT_DESCRIPTOR));
+		IPath defaultLocation = workspace.getRoot().getLocation().append(project.getName());
+		if (defaultLocation.equals(location)) {
+			description.setLocation(null);
+		} else {
+			description.setLocation(location);
+		}
+		project.create(description, monitor);
+		project.open(monitor);
+	}
+
+	/**
+	 * Collects the project descriptors of a folder.
+	 * 
+	 * @param folder
+	 *            the folder.
+	 * @param nested
+	 *            <code>true</code> to look for projects inside projects.
+	 * @param excluded
+	 *            the folders to ignore.
+	 * @param projects
+	 *            the locations of the projects by name, completed by this method.
+	 * @throws CoreException
+	 *             if a project descriptor can not be read.
+	 */
+	private void locate(File folder, boolean nested, Set<File> excluded, Map<String, IPath> projects)
+			throws CoreException {
+		if (excluded.contains(folder)) {
+			return;
+		}
+		File descriptor = new File(folder, PROJECT_DESCRIPTOR);
+		if (descriptor.isFile()) {
+			IPath location = new Path(folder.getAbsolutePath());
+			String name = workspace.loadProjectDescription(location.append(PROJECT_DESCRIPTOR)).getName();
+			// Like the import, keeps the first project of a given name.
+			if (!projects.containsKey(name)) {
+				projects.put(name, location);
+			}
+			if (!nested) {
+				return;
+			}
+		}
+		File[] children = folder.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				if (child.isDirectory() && !SKIPPED_FOLDERS.contains(child.getName())) {
+					locate(child, nested, excluded, projects);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects the project descriptors of a folder of the work tree from the project index.
+	 * 
+	 * @param folder
+	 *            the folder.
+	 * @param nested
+	 *            <code>true</code> to look for projects inside projects.
+	 * @param excluded
+	 *            the folders to ignore.
+	 * @param projects
+	 *            the locations of the projects by name, completed by this method.
+	 * @throws CoreException
+	 *             if a project descriptor can not be read.
+	 */
+	private void locateIndexed(File folder, boolean nested, Set<File> excluded, Map<String, IPath> projects)
+			throws CoreException {
+		IPath root = new Path(folder.getAbsolutePath());
+		List<IPath> excludedPaths = new ArrayList<IPath>();
+		for (File excludedFolder : excluded) {
+			excludedPaths.add(new Path(excludedFolder.getAbsolutePath()));
+		}
+		List<IPath> locations = new ArrayList<IPath>();
+		for (String descriptorPath : index.getDescriptorPaths()) {
+			locations.add(workTree.append(descriptorPath).removeLastSegments(1));
+		}
+		// The enclosing projects first.
+		Collections.sort(locations, new Comparator<IPath>() {
+			public int compare(IPath location1, IPath location2) {
+				return location1.segmentCount() - location2.segmentCount();
+			}
+		});
+		Set<IPath> located = new HashSet<IPath>();
+		for (IPath location : locations) {
+			if (!root.isPrefixOf(location) || isExcluded(location, excludedPaths)
+					|| !nested && isInLocatedProject(location, root, located)) {
+				continue;
+			}
+			IPath descriptor = location.append(PROJECT_DESCRIPTOR);
+			// Deleted from the work tree since the commit.
+			if (!descriptor.toFile().isFile()) {
+				continue;
+			}
+			located.add(location);
+			String name = workspace.loadProjectDescription(descriptor).getName();
+			if (!projects.containsKey(name)) {
+				projects.put(name, location);
+			}
+		}
+	}
+
+	private static boolean isExcluded(IPath location, List<IPath> excludedPaths) {
+		for (IPath excludedPath : excludedPaths) {
+			if (excludedPath.isPrefixOf(location)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isInLocatedProject(IPath location, IPath root, Set<IPath> located) {
+		IPath parent = location.removeLastSegments(1);
+		while (root.isPrefixOf(parent)) {
+			if (located.contains(parent)) {
+				return true;
+			}
+			parent = parent.removeLastSegments(1);
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a source locator only discovers the eclipse projects of its root folder.
+	 * 
+	 * @param sourceLocator
+	 *            the source locator.
+	 * @return <code>true</code> if the projects of the source locator can be discovered by this class.
+	 */
+	private static boolean isSupported(SourceLocator sourceLocator) {
+		if (sourceLocator.getRootFolder() == null || !sourceLocator.getPredicates().isEmpty()) {
+			return false;
+		}
+		for (ProjectFactory projectFactory : sourceLocator.getProjectFactories()) {
+			if (!(projectFactory instanceof EclipseProjectFactory)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
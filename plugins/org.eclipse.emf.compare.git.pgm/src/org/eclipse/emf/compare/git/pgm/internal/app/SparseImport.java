@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.ModelReferences.PLATFORM_RESOURCE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.git.pgm.internal.util.ModelReferences;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.errors.LargeObjectException;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Selection of the projects to import for a given set of changes.
+ * <p>
+ * A diff or a merge only needs the projects holding the changed files, on both sides of the changes, and the
+ * projects their models refer to. The references of the changed files are found by scanning their contents
+ * with {@link ModelReferences}, the projects referenced by the project descriptors of the selected projects
+ * are added as well.
+ * </p>
+ * <p>
+ * The selection gives up, so that every project is imported, as soon as a reference points to a file outside
+ * of the discovered projects, or a changed file can not be scanned.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class SparseImport {
+
+	private static final String PROJECT_DESCRIPTOR = ".project"; //$NON-NLS-1$
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/**
+	 * The repository holding the changes.
+	 */
+	private final Repository repository;
+
+	/**
+	 * The workspace, reading the project descriptors.
+	 */
+	private final IWorkspace workspace;
+
+	/**
+	 * The locations of all the projects that may be imported, by name.
+	 */
+	private final Map<String, IPath> projects;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param repository
+	 *            the repository holding the changes.
+	 * @param workspace
+	 *            the workspace.
+	 * @param projects
+	 *            the locations of all the projects that may be imported, by name.
+	 */
+	SparseImport(Repository repository, IWorkspace workspace, Map<String, IPath> projects) {
+		this.repository = repository;
+		this.workspace = workspace;
+		this.projects = projects;
+	}
+
+	/**
+	 * Selects the projects needed by some changes.
+	 * 
+	 * @param changes
+	 *            the changes, whose old and new sides are both considered.
+	 * @return the locations of the selected projects by name, or <code>null</code> if all the projects have
+	 *         to be imported.
+	 * @throws IOException
+	 *             if a changed file can not be read.
+	 */
+	Map<String, IPath> select(List<DiffEntry> changes) throws IOException {
+		Set<String> selected = new LinkedHashSet<String>();
+		for (DiffEntry change : changes) {
+			if (!addChangedFile(change.getOldPath(), change.getOldId(), selected)
+					|| !addChangedFile(change.getNewPath(), change.getNewId(), selected)) {
+				return null;
+			}
+		}
+		addReferencedProjects(selected);
+
+		Map<String, IPath> selection = new LinkedHashMap<String, IPath>();
+		for (Map.Entry<String, IPath> project : projects.entrySet()) {
+			if (selected.contains(project.getKey())) {
+				selection.put(project.getKey(), project.getValue());
+			}
+		}
+		return selection;
+	}
+
+	/**
+	 * Selects the project holding a changed file and the projects referenced by its content.
+	 * 
+	 * @param path
+	 *            the path of the file in the repository.
+	 * @param id
+	 *            the identifier of its content.
+	 * @param selected
+	 *            the names of the selected projects, completed by this method.
+	 * @return <code>false</code> if the file refers to something outside of the projects.
+	 * @throws IOException
+	 *             if the file can not be read.
+	 */
+	private boolean addChangedFile(String path, AbbreviatedObjectId id, Set<String> selected)
+			throws IOException {
+		if (DiffEntry.DEV_NULL.equals(path)) {
+			return true;
+		}
+		File file = new File(repository.getWorkTree(), path);
+		IPath filePath = new Path(file.getAbsolutePath());
+		String project = getEnclosingProject(filePath);
+		if (project == null) {
+			// Not imported in any case.
+			return true;
+		}
+		selected.add(project);
+
+		String content = read(file, id);
+		if (content == null) {
+			return false;
+		}
+		for (String reference : ModelReferences.find(content)) {
+			String referenced;
+			if (reference.startsWith(PLATFORM_RESOURCE)) {
+				referenced = URI.decode(reference.substring(PLATFORM_RESOURCE.length()).split("/")[0]); //$NON-NLS-1$
+				if (!projects.containsKey(referenced)) {
+					referenced = null;
+				}
+			} else {
+				IPath target = filePath.removeLastSegments(1).append(URI.decode(reference));
+				referenced = getEnclosingProject(target);
+			}
+			if (referenced == null) {
+				return false;
+			}
+			selected.add(referenced);
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the projects referenced by the project descriptors of the selected projects, recursively.
+	 * 
+	 * @param selected
+	 *            the names of the selected projects, completed by this method.
+	 */
+	private void addReferencedProjects(Set<String> selected) {
+		LinkedList<String> queue = new LinkedList<String>(selected);
+		while (!queue.isEmpty()) {
+			IPath location = projects.get(queue.removeFirst());
+			IProject[] references;
+			try {
+				references = workspace.loadProjectDescription(location.append(PROJECT_DESCRIPTOR))
+						.getReferencedProjects();
+			} catch (CoreException e) {
+				// Reported by the import.
+				continue;
+			}
+			for (IProject reference : references) {
+				// Eclipse tolerates references to missing projects.
+				if (projects.containsKey(reference.getName()) && selected.add(reference.getName())) {
+					queue.add(reference.getName());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the project whose location holds a file.
+	 * 
+	 * @param filePath
+	 *            the absolute path of the file.
+	 * @return the name of the innermost project holding the file or <code>null</code> if there is none.
+	 */
+	private String getEnclosingProject(IPath filePath) {
+		String enclosing = null;
+		int segments = -1;
+		for (Map.Entry<String, IPath> project : projects.entrySet()) {
+			IPath location = project.getValue();
+			if (location.isPrefixOf(filePath) && location.segmentCount() > segments) {
+				enclosing = project.getKey();
+				segments = location.segmentCount();
+			}
+		}
+		return enclosing;
+	}
+
+	/**
+	 * Reads a side of a change, from the object database or from the work tree for a change of the working
+	 * copy.
+	 * 
+	 * @param file
+	 *            the file in the work tree.
+	 * @param id
+	 *            the identifier of the content.
+	 * @return the content or <code>null</code> if it is too large to be scanned.
+	 * @throws IOException
+	 *             if the content can not be read.
+	 */
+	private String read(File file, AbbreviatedObjectId id) throws IOException {
+		try {
+			if (id != null && id.isComplete()) {
+				ObjectId objectId = id.toObjectId();
+				if (ObjectId.zeroId().equals(objectId)) {
+					return ""; //$NON-NLS-1$
+				}
+				if (repository.hasObject(objectId)) {
+					return new String(repository.open(objectId).getBytes(), UTF_8);
+				}
+			}
+		} catch (LargeObjectException e) {
+			return null;
+		}
+		if (file.isFile()) {
+			return new String(Files.readAllBytes(file.toPath()), UTF_8);
+		}
+		return ""; //$NON-NLS-1$
+	}
+}
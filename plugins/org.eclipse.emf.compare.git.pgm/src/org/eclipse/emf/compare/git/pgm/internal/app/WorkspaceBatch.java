@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.app;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+
+/**
+ * Runs the steps of an application in workspace operations, with the auto build turned off.
+ * <p>
+ * The project import, the checkout of a merge and the refreshes would otherwise each fire their resource
+ * change events, run the builders and notify the listeners one after another. The operation defers the
+ * notifications to its end, so that they are coalesced in a single delta. It has no scheduling rule, so that
+ * the jobs the steps wait for are not blocked, their notifications may then still happen in the middle of the
+ * operation. The workspace description is restored once the operation is done.
+ * </p>
+ * <p>
+ * The resource change events fired during the operations are counted.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class WorkspaceBatch implements IResourceChangeListener {
+
+	/**
+	 * Steps run in a batch.
+	 */
+	interface Step {
+
+		/**
+		 * Performs the step.
+		 * 
+		 * @return a {@link org.eclipse.emf.compare.git.pgm.Returns} or <code>null</code>.
+		 * @throws Die
+		 *             if the step fails.
+		 */
+		Integer perform() throws Die;
+	}
+
+	/**
+	 * The workspace.
+	 */
+	private final IWorkspace workspace;
+
+	/**
+	 * Number of resource change events fired during the batches.
+	 */
+	private final AtomicInteger events = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param workspace
+	 *            the workspace.
+	 */
+	WorkspaceBatch(IWorkspace workspace) {
+		this.workspace = workspace;
+	}
+
+	/**
+	 * Runs a step in a workspace operation.
+	 * 
+	 * @param step
+	 *            the step.
+	 * @return the result of the step.
+	 * @throws Die
+	 *             if the step fails or if the workspace operation can not be run.
+	 */
+	Integer run(final Step step) throws Die {
+		final Integer[] result = new Integer[1];
+		final Die[] failure = new Die[1];
+		IWorkspaceDescription original = workspace.getDescription();
+		workspace.addResourceChangeListener(this);
+		try {
+			setAutoBuilding(false);
+			workspace.run(new IWorkspaceRunnable() {
+				public void run(IProgressMonitor monitor) throws CoreException {
+					try {
+						result[0] = step.perform();
+					} catch (Die e) {
+						failure[0] = e;
+					}
+				}
+			}, null, IWorkspace.AVOID_UPDATE, new NullProgressMonitor());
+		} catch (CoreException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		} finally {
+			workspace.removeResourceChangeListener(this);
+			restore(original);
+		}
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+		return result[0];
+	}
+
+	/**
+	 * Gets the number of resource change events fired during the batches.
+	 * 
+	 * @return the number of events.
+	 */
+	int getEventCount() {
+		return events.get();
+	}
+
+	/**
+	 * {@inheritDoc}.
+	 */
+	public void resourceChanged(IResourceChangeEvent event) {
+		events.incrementAndGet();
+	}
+
+	private void setAutoBuilding(boolean autoBuilding) throws CoreException {
+		IWorkspaceDescription description = workspace.getDescription();
+		if (description.isAutoBuilding() != autoBuilding) {
+			description.setAutoBuilding(autoBuilding);
+			workspace.setDescription(description);
+		}
+	}
+
+	/**
+	 * Restores the workspace description. A failure leaves the auto build off, which does not affect the
+	 * results of the logical commands.
+	 * 
+	 * @param original
+	 *            the workspace description before the batch.
+	 */
+	private void restore(IWorkspaceDescription original) {
+		try {
+			workspace.setDescription(original);
+		} catch (CoreException e) {
+			// The auto build stays off.
+		}
+	}
+}
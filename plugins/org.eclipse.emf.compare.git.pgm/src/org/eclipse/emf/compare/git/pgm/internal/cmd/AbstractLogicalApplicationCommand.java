@@ -0,0 +1,791 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.eclipse.emf.compare.git.pgm.internal.Options.CHILD_VM_ARGS_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.DAEMON_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.EGIT_TIMEOUT_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.FROZEN_CONFIG_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.HEADLESS_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.POOL_MAX_HEAP_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.POOL_MAX_REQUESTS_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.POOL_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.PREPARED_STATE_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.SHOW_STACK_TRACE_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.SNAPSHOT_LOCATION_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.SPARSE_IMPORT_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.WORKSPACE_SNAPSHOT_OPT;
+
+import com.google.common.base.Joiner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.app.AbstractLogicalApplication;
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol;
+import org.eclipse.emf.compare.git.pgm.internal.app.LogicalDaemonApplication;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.util.DiskUsage;
+import org.eclipse.emf.compare.git.pgm.internal.util.Fingerprint;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitPreparation;
+import org.eclipse.emf.compare.git.pgm.internal.util.Tracer;
+import org.eclipse.emf.compare.git.pgm.internal.util.WorkspaceSnapshot;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.oomph.setup.util.OS;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Abstract class for the logical commands running a headless logical application in the provisioned
+ * installation.
+ * <p>
+ * When the launcher runtime already holds everything the user setup model requires and is free to use the
+ * workspace of the installation, the application is run in the launcher itself. Otherwise it is run in a new
+ * eclipse process. With the --daemon option, it is run in a {@link LogicalDaemonApplication} kept alive
+ * between the commands instead. The first command started with this option launches the daemon in the
+ * background and runs in a new eclipse process as usual, the next ones reuse the daemon. With the --pool
+ * option, it is run in the first idle daemon of a {@link DaemonPool}, whose empty slots are refilled in the
+ * background by each command.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+@SuppressWarnings("restriction")
+public abstract class AbstractLogicalApplicationCommand extends AbstractLogicalCommand {
+
+	private static final String DAEMON_FOLDER = "daemon"; //$NON-NLS-1$
+
+	private static final String DAEMON_WORKSPACE_SUFFIX = "-daemon"; //$NON-NLS-1$
+
+	private static final String POOL_WORKSPACE_SUFFIX = "-pool"; //$NON-NLS-1$
+
+	/**
+	 * Default number of requests after which a daemon of the pool is recycled.
+	 */
+	private static final int POOL_MAX_REQUESTS = 20;
+
+	/**
+	 * Default share of the maximum heap, in percent, beyond which a daemon of the pool is recycled.
+	 */
+	private static final int POOL_MAX_HEAP = 75;
+
+	/**
+	 * Holds true if the application should run in a resident daemon.
+	 */
+	@Option(name = DAEMON_OPT, usage = "Runs the command in a resident eclipse process, started on first use.")
+	private boolean daemon;
+
+	/**
+	 * Holds true if the application should start from a frozen configuration area.
+	 */
+	@Option(name = FROZEN_CONFIG_OPT, usage = "Starts the product from a pre-resolved configuration area, kept until the installation changes.")
+	private boolean frozenConfig;
+
+	/**
+	 * Holds true if the imported workspace should be restored from a snapshot.
+	 */
+	@Option(name = WORKSPACE_SNAPSHOT_OPT, usage = "Restores the imported workspace from a snapshot taken once per setup and project layout.")
+	private boolean workspaceSnapshot;
+
+	/**
+	 * Holds true if only the projects needed by the changes should be imported.
+	 */
+	@Option(name = SPARSE_IMPORT_OPT, usage = "Imports only the projects holding the changed files and the projects they refer to.")
+	private boolean sparseImport;
+
+	/**
+	 * Holds the deadline of the wait for EGit to connect the projects, in seconds.
+	 */
+	@Option(name = EGIT_TIMEOUT_OPT, metaVar = "<seconds>", usage = "Maximum time to wait for EGit to share the imported projects before connecting them explicitly.")
+	private Integer egitTimeout;
+
+	/**
+	 * Holds true if the EGit and Team background work should be turned off in the application.
+	 */
+	@Option(name = HEADLESS_OPT, usage = "Turns off the EGit and Team background work not needed by the command and reports the CPU time.")
+	private boolean headless;
+
+	/**
+	 * Holds the number of daemons of the pool running the application.
+	 */
+	@Option(name = POOL_OPT, metaVar = "<size>", usage = "Runs the command in a pool of resident eclipse processes of the given size, refilled in the background.")
+	private Integer pool;
+
+	/**
+	 * Holds the number of requests after which a daemon of the pool is recycled.
+	 */
+	@Option(name = POOL_MAX_REQUESTS_OPT, metaVar = "<count>", usage = "Number of requests after which a daemon of the pool is recycled, 20 by default.")
+	private int poolMaxRequests = POOL_MAX_REQUESTS;
+
+	/**
+	 * Holds the share of the maximum heap, in percent, beyond which a daemon of the pool is recycled.
+	 */
+	@Option(name = POOL_MAX_HEAP_OPT, metaVar = "<percent>", usage = "Share of the maximum heap still used after the garbage collections beyond which a daemon of the pool is recycled, 75 by default.")
+	private int poolMaxHeap = POOL_MAX_HEAP;
+
+	/**
+	 * Holds the VM arguments of the eclipse process, replacing the computed heap and garbage collector
+	 * settings.
+	 */
+	@Option(name = CHILD_VM_ARGS_OPT, metaVar = "<args>", usage = "VM arguments of the eclipse process, replacing the heap and garbage collector settings computed from the size of the models.")
+	private String childVMArgs;
+
+	/**
+	 * Holds true once the application has run in the launcher runtime.
+	 */
+	private boolean ranInProcess;
+
+	/**
+	 * Gets the identifier of the eclipse application to run.
+	 * 
+	 * @return the identifier of the eclipse application.
+	 */
+	protected abstract String getApplicationId();
+
+	/**
+	 * Gets the arguments specific to the application, following the git directory and the setup file.
+	 * 
+	 * @return the arguments specific to the application.
+	 */
+	protected abstract List<String> getApplicationArguments();
+
+	/**
+	 * Creates the application to run in the launcher runtime.
+	 * 
+	 * @return a new instance of the application.
+	 */
+	protected abstract AbstractLogicalApplication createApplication();
+
+	/**
+	 * Tells whether the application may be run in the launcher runtime.
+	 * 
+	 * @return <code>true</code> if the application may be run in the launcher runtime.
+	 */
+	protected boolean isInProcessAllowed() {
+		return true;
+	}
+
+	/**
+	 * Adds the VM arguments specific to this command to the eclipse process.
+	 * 
+	 * @param vmArgs
+	 *            the VM arguments of the eclipse process.
+	 */
+	protected void addVMArguments(List<String> vmArgs) {
+		// Nothing by default.
+	}
+
+	/**
+	 * Gets the commits whose differences the application handles, the common side of the differences first.
+	 * They are used to size the heap of the eclipse process.
+	 * 
+	 * @return the commits or an empty list if the size of the models should not be estimated.
+	 */
+	protected List<ObjectId> getComparedCommits() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Tells whether the error output of the application should be displayed.
+	 * 
+	 * @return <code>true</code> if the error output of the application should be displayed.
+	 */
+	protected boolean isErrorOutputDisplayed() {
+		return true;
+	}
+
+	/**
+	 * Runs the application in the provisioned installation.
+	 * 
+	 * @return the return code of the application.
+	 * @throws Die
+	 *             if the application can not be run.
+	 */
+	protected Integer launchApplication() throws Die {
+		OS os = getPerformer().getOS();
+
+		if (!os.isCurrent()) {
+			return Returns.ERROR.code();
+		}
+
+		List<String> arguments = new ArrayList<String>();
+		// Propagates the show stack trace option to the application.
+		if (isShowStackTrace()) {
+			arguments.add(SHOW_STACK_TRACE_OPT);
+		}
+		// Hands the git computations done during the provisioning to the application.
+		File preparedState = writeGitPreparation();
+		if (preparedState != null) {
+			arguments.add(PREPARED_STATE_OPT);
+			arguments.add(preparedState.getAbsolutePath());
+		}
+		// The daemons keep their own workspaces, whose metadata can not be replaced while they run.
+		if (workspaceSnapshot && !daemon && pool == null) {
+			WorkspaceSnapshot snapshot = restoreWorkspaceSnapshot();
+			if (snapshot != null) {
+				arguments.add(SNAPSHOT_LOCATION_OPT);
+				arguments.add(snapshot.getLocation().getAbsolutePath());
+			}
+		}
+		if (sparseImport) {
+			arguments.add(SPARSE_IMPORT_OPT);
+		}
+		if (egitTimeout != null) {
+			arguments.add(EGIT_TIMEOUT_OPT);
+			arguments.add(egitTimeout.toString());
+		}
+		if (headless) {
+			arguments.add(HEADLESS_OPT);
+		}
+		arguments.add(getRepository().getDirectory().getAbsolutePath());
+		arguments.add(getSetupFile().getAbsolutePath());
+		arguments.addAll(getApplicationArguments());
+
+		try {
+			return runApplication(arguments);
+		} finally {
+			if (preparedState != null) {
+				preparedState.delete();
+			}
+		}
+	}
+
+	/**
+	 * Runs the application in the launcher runtime, in the daemon, in the pool or in a new eclipse process.
+	 * 
+	 * @param arguments
+	 *            the arguments of the application.
+	 * @return the return code of the application.
+	 * @throws Die
+	 *             if the application can not be run.
+	 */
+	private Integer runApplication(List<String> arguments) throws Die {
+		if (isInProcessAllowed() && LauncherRuntime.provides(getUserRequirements())
+				&& LauncherRuntime.useWorkspace(getPerformer().getWorkspaceLocation())) {
+			return runInProcess(arguments);
+		}
+
+		try {
+			long start = Tracer.now();
+			if (pool != null && pool.intValue() > 0) {
+				Integer returnValue = runInPool(arguments, pool.intValue());
+				if (returnValue != null) {
+					getTracer().complete("daemon request", start, POOL_OPT); //$NON-NLS-1$
+					return Returns.valueOf(returnValue.intValue()).code();
+				}
+			} else if (daemon) {
+				Integer returnValue = runInDaemon(arguments);
+				if (returnValue != null) {
+					getTracer().complete("daemon request", start, DAEMON_OPT); //$NON-NLS-1$
+					return Returns.valueOf(returnValue.intValue()).code();
+				}
+			}
+			out().println("Launching the installed product..."); //$NON-NLS-1$
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		}
+
+		File workspace = getPerformer().getWorkspaceLocation();
+		ConfigurationSnapshot configurationSnapshot = null;
+		File configurationArea = null;
+		if (frozenConfig) {
+			configurationSnapshot = getConfigurationSnapshot();
+			if (configurationSnapshot != null && configurationSnapshot.isFrozen()) {
+				configurationArea = configurationSnapshot.getLocation();
+			} else if (configurationSnapshot != null) {
+				try {
+					configurationArea = configurationSnapshot.prepare();
+				} catch (IOException e) {
+					// Runs with the configuration area of the installation.
+					configurationSnapshot = null;
+				}
+			}
+		}
+		List<String> command = createEclipseCommand(getApplicationId(), arguments, workspace,
+				configurationArea);
+		if (configurationSnapshot != null && configurationSnapshot.isFrozen()) {
+			command.add(ConfigurationSnapshot.READ_ONLY_ARG);
+		}
+		ClassDataSharing classDataSharing = getClassDataSharing();
+		File dumpedArchive = null;
+		if (classDataSharing != null && !classDataSharing.addSharedArchiveArguments(command)) {
+			try {
+				dumpedArchive = classDataSharing.addDumpArguments(command);
+			} catch (IOException e) {
+				// Runs without class data sharing.
+			}
+		}
+		addVMArguments(command);
+		try {
+			addSizingArguments(command);
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		}
+		File traceEvents = addTraceArguments(command);
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		Process process;
+		long spawnStart = Tracer.now();
+		try {
+			process = builder.start();
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		}
+		getTracer().complete("spawn", spawnStart); //$NON-NLS-1$
+
+		// output both stdout and stderr data from proc to stdout of this
+		// process
+		if (isErrorOutputDisplayed()) {
+			StreamGobbler errorGobbler = new StreamGobbler(process.getErrorStream());
+			new Thread(errorGobbler).start();
+		}
+		StreamGobbler outputGobbler = new StreamGobbler(process.getInputStream());
+		new Thread(outputGobbler).start();
+
+		int returnValue;
+		try {
+			returnValue = process.waitFor();
+		} catch (InterruptedException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		}
+		getTracer().complete("eclipse process", spawnStart); //$NON-NLS-1$
+		if (traceEvents != null) {
+			readTraceEvents(traceEvents);
+		}
+
+		if (dumpedArchive != null) {
+			classDataSharing.publish(dumpedArchive);
+		}
+		if (configurationSnapshot != null && !configurationSnapshot.isFrozen()) {
+			configurationSnapshot.freeze(configurationArea);
+		}
+
+		return Returns.valueOf(returnValue).code();
+	}
+
+	/**
+	 * Adds the heap and garbage collector settings of the eclipse process, given by the user or computed from
+	 * the size of the models handled by the application, and displays them.
+	 * 
+	 * @param vmArgs
+	 *            the VM arguments of the eclipse process.
+	 * @throws IOException
+	 *             if the settings can not be displayed.
+	 */
+	private void addSizingArguments(List<String> vmArgs) throws IOException {
+		if (childVMArgs != null) {
+			List<String> userArgs = Arrays.asList(childVMArgs.trim().split("\\s+")); //$NON-NLS-1$
+			vmArgs.addAll(userArgs);
+			out().println("Child VM arguments: " + Joiner.on(' ').join(userArgs) //$NON-NLS-1$
+					+ " (" + CHILD_VM_ARGS_OPT + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+			return;
+		}
+		List<ObjectId> commits = getComparedCommits();
+		if (commits.size() < 2) {
+			return;
+		}
+		ChildVMSizing sizing = new ChildVMSizing(getRepository());
+		try {
+			sizing.estimate(commits.get(0), commits.subList(1, commits.size()));
+		} catch (IOException e) {
+			// The settings of the installation apply.
+			return;
+		}
+		List<String> sizingArgs = sizing.getVMArguments();
+		vmArgs.addAll(sizingArgs);
+		out().println("Child VM arguments: " + Joiner.on(' ').join(sizingArgs) //$NON-NLS-1$
+				+ " (estimated from " + sizing.getModelFiles() + " model files, " //$NON-NLS-1$ //$NON-NLS-2$
+				+ DiskUsage.format(sizing.getModelBytes()) + ")"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Hands the trace identifier and the file receiving the events of the eclipse process over to it, when
+	 * the command is traced.
+	 * 
+	 * @param vmArgs
+	 *            the VM arguments of the eclipse process.
+	 * @return the file receiving the events of the eclipse process or <code>null</code> if the command is
+	 *         not traced.
+	 * @throws Die
+	 *             if the file can not be created.
+	 */
+	private File addTraceArguments(List<String> vmArgs) throws Die {
+		Tracer tracer = getTracer();
+		if (!tracer.isEnabled()) {
+			return null;
+		}
+		File traceEvents;
+		try {
+			traceEvents = File.createTempFile("traceEvents", ".json"); //$NON-NLS-1$ //$NON-NLS-2$
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		}
+		vmArgs.add("-D" + Tracer.TRACE_ID_PROPERTY + "=" + tracer.getTraceId()); //$NON-NLS-1$ //$NON-NLS-2$
+		vmArgs.add("-D" + Tracer.TRACE_EVENTS_PROPERTY + "=" + traceEvents.getAbsolutePath()); //$NON-NLS-1$ //$NON-NLS-2$
+		return traceEvents;
+	}
+
+	/**
+	 * Adds the events written by the eclipse process to the timeline of the command.
+	 * 
+	 * @param traceEvents
+	 *            the file holding the events of the eclipse process.
+	 */
+	private void readTraceEvents(File traceEvents) {
+		try {
+			getTracer().addEvents(Tracer.readEvents(traceEvents));
+		} catch (IOException e) {
+			// The timeline only holds the phases of the launcher.
+		} finally {
+			traceEvents.delete();
+		}
+	}
+
+	/**
+	 * Restores the workspace of the installation from its snapshot, if it has been captured.
+	 * 
+	 * @return the snapshot of the workspace, restored or to be captured by the application, or
+	 *         <code>null</code> if the snapshot mode is not available.
+	 */
+	private WorkspaceSnapshot restoreWorkspaceSnapshot() {
+		File workspace = getPerformer().getWorkspaceLocation();
+		if (workspace == null) {
+			return null;
+		}
+		WorkspaceSnapshot snapshot;
+		try {
+			String bundlesFingerprint = getProvisioningManifest().getBundlesFingerprint();
+			if (bundlesFingerprint == null) {
+				return null;
+			}
+			File snapshotsFolder = new File(getMetadataFolder(), WorkspaceSnapshot.SNAPSHOTS_FOLDER);
+			snapshot = WorkspaceSnapshot.get(snapshotsFolder, getRepository(), getSetupFile(),
+					bundlesFingerprint);
+		} catch (IOException e) {
+			return null;
+		} catch (Die e) {
+			return null;
+		}
+		if (snapshot.exists()) {
+			try {
+				snapshot.restore(workspace);
+			} catch (IOException e) {
+				// The application imports the projects in a new workspace.
+				return null;
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Writes the git preparation of this command in a temporary file.
+	 * 
+	 * @return the file or <code>null</code> if there is no preparation to hand over.
+	 */
+	private File writeGitPreparation() {
+		GitPreparation gitPreparation = getGitPreparation();
+		if (gitPreparation == null) {
+			return null;
+		}
+		File file = null;
+		try {
+			file = File.createTempFile("gitPreparation", ".properties"); //$NON-NLS-1$ //$NON-NLS-2$
+			gitPreparation.write(file);
+			return file;
+		} catch (IOException e) {
+			// The application computes everything itself.
+			if (file != null) {
+				file.delete();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Runs the application in the launcher runtime.
+	 * 
+	 * @param arguments
+	 *            the arguments of the application.
+	 * @return the return code of the application.
+	 */
+	private Integer runInProcess(List<String> arguments) {
+		ranInProcess = true;
+		out().flush();
+		PrintStream err = System.err;
+		if (!isErrorOutputDisplayed()) {
+			System.setErr(new PrintStream(new OutputStream() {
+				@Override
+				public void write(int b) {
+					// Discarded.
+				}
+			}));
+		}
+		try {
+			AbstractLogicalApplication application = createApplication();
+			application.setTracer(getTracer());
+			Object result = application.run(arguments.toArray(new String[arguments.size()]));
+			return Returns.valueOf(AbstractLogicalApplication.toExitCode(result)).code();
+		} finally {
+			System.out.flush();
+			System.setErr(err);
+		}
+	}
+
+	/**
+	 * Gets the class data sharing archive of the installation. It depends on the installed bundle set and on
+	 * the launcher configuration file, which holds the VM to use.
+	 * 
+	 * @return the class data sharing archive or <code>null</code> if the installation has no bundle list.
+	 */
+	private ClassDataSharing getClassDataSharing() {
+		try {
+			String bundlesFingerprint = getProvisioningManifest().getBundlesFingerprint();
+			if (bundlesFingerprint == null) {
+				return null;
+			}
+			Fingerprint key = new Fingerprint().add(bundlesFingerprint);
+			File launcherIni = getLauncherIni();
+			if (launcherIni.isFile()) {
+				key.add(launcherIni);
+			}
+			File cdsFolder = new File(getMetadataFolder(), ClassDataSharing.CDS_FOLDER);
+			return new ClassDataSharing(cdsFolder, key.toHex());
+		} catch (IOException e) {
+			return null;
+		} catch (Die e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the frozen configuration area of the installation.
+	 * 
+	 * @return the frozen configuration area or <code>null</code> if the installation has no bundle list.
+	 */
+	private ConfigurationSnapshot getConfigurationSnapshot() {
+		try {
+			String bundlesFingerprint = getProvisioningManifest().getBundlesFingerprint();
+			if (bundlesFingerprint == null) {
+				return null;
+			}
+			File snapshotsFolder = new File(getMetadataFolder(), ConfigurationSnapshot.SNAPSHOTS_FOLDER);
+			return new ConfigurationSnapshot(snapshotsFolder, getEclipseFolder(), bundlesFingerprint);
+		} catch (IOException e) {
+			return null;
+		} catch (Die e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the configuration file of the eclipse launcher, next to the eclipse executable.
+	 * 
+	 * @return the configuration file of the eclipse launcher.
+	 */
+	private File getLauncherIni() {
+		File eclipseFile = new File(getEclipseFolder(), getPerformer().getOS().getEclipseExecutable());
+		String name = eclipseFile.getName();
+		if (name.endsWith(".exe")) { //$NON-NLS-1$
+			name = name.substring(0, name.length() - ".exe".length()); //$NON-NLS-1$
+		}
+		return new File(eclipseFile.getParentFile(), name + ".ini"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Runs the application in the daemon of the installation, and starts the daemon in the background if
+	 * none is running.
+	 * 
+	 * @param arguments
+	 *            the arguments of the application.
+	 * @return the return code of the application or <code>null</code> if no daemon was running.
+	 * @throws IOException
+	 *             if the daemon fails.
+	 * @throws Die
+	 *             if the state file of the daemon can not be located.
+	 */
+	private Integer runInDaemon(List<String> arguments) throws IOException, Die {
+		// The daemons do not depend on the workspace slot leased by this command.
+		File workspace = getWorkspaceBase();
+		if (workspace == null) {
+			return null;
+		}
+		File daemonWorkspace = new File(workspace.getPath() + DAEMON_WORKSPACE_SUFFIX);
+		File stateFile = getDaemonStateFile(daemonWorkspace);
+		DaemonClient client = new DaemonClient(stateFile);
+		Integer returnValue = client.execute(getApplicationId(), arguments, out(),
+				isErrorOutputDisplayed());
+		if (returnValue == null && client.markStarting()) {
+			startDaemon(stateFile, daemonWorkspace, new ArrayList<String>());
+		}
+		return returnValue;
+	}
+
+	/**
+	 * Runs the application in an idle daemon of the pool of the installation, after starting in the
+	 * background the daemons of the empty slots of the pool.
+	 * 
+	 * @param arguments
+	 *            the arguments of the application.
+	 * @param size
+	 *            the number of daemons of the pool.
+	 * @return the return code of the application or <code>null</code> if no daemon of the pool was idle.
+	 * @throws IOException
+	 *             if a daemon fails.
+	 * @throws Die
+	 *             if the state files of the daemons can not be located.
+	 */
+	private Integer runInPool(List<String> arguments, int size) throws IOException, Die {
+		// The daemons do not depend on the workspace slot leased by this command.
+		File workspace = getWorkspaceBase();
+		if (workspace == null) {
+			return null;
+		}
+		List<File> workspaces = new ArrayList<File>();
+		List<File> stateFiles = new ArrayList<File>();
+		for (int slot = 0; slot < size; slot++) {
+			File slotWorkspace = new File(workspace.getPath() + POOL_WORKSPACE_SUFFIX + slot);
+			workspaces.add(slotWorkspace);
+			stateFiles.add(getDaemonStateFile(slotWorkspace));
+		}
+		DaemonPool daemonPool = new DaemonPool(stateFiles);
+
+		List<String> daemonArguments = new ArrayList<String>();
+		daemonArguments.add("--max-requests"); //$NON-NLS-1$
+		daemonArguments.add(Integer.toString(poolMaxRequests));
+		daemonArguments.add("--max-heap"); //$NON-NLS-1$
+		daemonArguments.add(Integer.toString(poolMaxHeap));
+		for (Integer slot : daemonPool.markEmptySlots()) {
+			startDaemon(stateFiles.get(slot.intValue()), workspaces.get(slot.intValue()), daemonArguments);
+		}
+
+		return daemonPool.execute(getApplicationId(), arguments, out(), isErrorOutputDisplayed());
+	}
+
+	/**
+	 * Gets the state file of the daemon using the given workspace. A daemon only serves the bundle set it has
+	 * been started with, so that a provisioning of the installation leads to a new daemon.
+	 * 
+	 * @param daemonWorkspace
+	 *            the workspace of the daemon.
+	 * @return the state file of the daemon.
+	 * @throws IOException
+	 *             if the bundle set of the installation can not be read.
+	 * @throws Die
+	 *             if the digest algorithm is not available.
+	 */
+	private File getDaemonStateFile(File daemonWorkspace) throws IOException, Die {
+		String key = new Fingerprint().add(daemonWorkspace.getAbsolutePath()).add(
+				String.valueOf(getProvisioningManifest().getBundlesFingerprint())).toHex();
+		return new File(getDaemonFolder(), key + ".properties"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Gets the folder holding the state and log files of the daemons of the installation.
+	 * 
+	 * @return the folder holding the state and log files of the daemons.
+	 */
+	private File getDaemonFolder() {
+		return new File(getMetadataFolder(), DAEMON_FOLDER);
+	}
+
+	/**
+	 * Starts a daemon in the background. Its output is written in a log file next to its state file.
+	 * 
+	 * @param stateFile
+	 *            the state file of the daemon.
+	 * @param daemonWorkspace
+	 *            the workspace of the daemon.
+	 * @param options
+	 *            the options of the daemon application.
+	 * @throws IOException
+	 *             if the daemon can not be started.
+	 */
+	private void startDaemon(File stateFile, File daemonWorkspace, List<String> options) throws IOException {
+		List<String> arguments = new ArrayList<String>(options);
+		arguments.add(stateFile.getAbsolutePath());
+		List<String> command = createEclipseCommand(DaemonProtocol.DAEMON_APPLICATION_ID, arguments,
+				daemonWorkspace, null);
+		ClassDataSharing classDataSharing = getClassDataSharing();
+		if (classDataSharing != null) {
+			classDataSharing.addSharedArchiveArguments(command);
+		}
+
+		File log = new File(stateFile.getPath() + ".log"); //$NON-NLS-1$
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(Redirect.appendTo(log));
+		try {
+			builder.start();
+		} catch (IOException e) {
+			DaemonProtocol.getStartingMarker(stateFile).delete();
+			throw e;
+		}
+		out().println("Starting a logical daemon for the next commands (log: " + log //$NON-NLS-1$
+				+ ")."); //$NON-NLS-1$
+	}
+
+	/**
+	 * Creates the command line running an application of the installation.
+	 * 
+	 * @param applicationId
+	 *            the identifier of the application.
+	 * @param arguments
+	 *            the arguments of the application.
+	 * @param workspace
+	 *            the workspace of the eclipse process, may be <code>null</code>.
+	 * @param configurationArea
+	 *            the configuration area of the eclipse process, <code>null</code> to use the one of the
+	 *            installation.
+	 * @return the command line, ending with the VM arguments.
+	 */
+	private List<String> createEclipseCommand(String applicationId, List<String> arguments, File workspace,
+			File configurationArea) {
+		File eclipseFile = new File(getEclipseFolder(), getPerformer().getOS().getEclipseExecutable());
+
+		List<String> command = new ArrayList<String>();
+		command.add(eclipseFile.toString());
+		command.add("-nosplash"); //$NON-NLS-1$
+		command.add("--launcher.suppressErrors"); //$NON-NLS-1$
+		command.add("-application"); //$NON-NLS-1$
+		command.add(applicationId);
+		command.addAll(arguments);
+
+		if (workspace != null) {
+			command.add("-data"); //$NON-NLS-1$
+			command.add(workspace.toString());
+		}
+
+		if (configurationArea != null) {
+			command.add("-configuration"); //$NON-NLS-1$
+			command.add(configurationArea.toURI().toString());
+		}
+
+		command.add("-vmargs"); //$NON-NLS-1$
+		command.add("-D" + PROP_SETUP_CONFIRM_SKIP + "=true"); //$NON-NLS-1$ //$NON-NLS-2$
+		command.add("-D" + PROP_SETUP_OFFLINE_STARTUP + "=" + isOfflineFirst()); //$NON-NLS-1$ //$NON-NLS-2$
+		command.add("-D" + PROP_SETUP_MIRRORS_STARTUP + "=" + !isOfflineFirst()); //$NON-NLS-1$ //$NON-NLS-2$
+		return command;
+	}
+
+	// For testing purpose
+	boolean hasRunInProcess() {
+		return ranInProcess;
+	}
+}
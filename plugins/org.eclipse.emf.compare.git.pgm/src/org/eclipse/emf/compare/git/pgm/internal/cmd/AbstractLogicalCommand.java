@@ -12,7 +12,11 @@ package org.eclipse.emf.compare.git.pgm.internal.cmd;
 
 import static org.eclipse.emf.compare.git.pgm.internal.Options.GIT_DIR_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.Options.HELP_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.OFFLINE_FIRST_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.REPROVISION_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.Options.SHOW_STACK_TRACE_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.TRACE_OPT;
+import static org.eclipse.emf.compare.git.pgm.internal.Options.WORKSPACE_SLOTS_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType.FATAL;
 import static org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType.SOFTWARE_ERROR;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
@@ -23,17 +27,27 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.Paths;
 import java.security.cert.Certificate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
@@ -46,17 +60,27 @@ import org.eclipse.emf.compare.git.pgm.internal.exception.ArgumentValidationErro
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+import org.eclipse.emf.compare.git.pgm.internal.util.DiskUsage;
+import org.eclipse.emf.compare.git.pgm.internal.util.Fingerprint;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitPreparation;
+import org.eclipse.emf.compare.git.pgm.internal.util.SetupModelCache;
+import org.eclipse.emf.compare.git.pgm.internal.util.Tracer;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.URIConverter;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.edit.domain.AdapterFactoryEditingDomain;
 import org.eclipse.emf.edit.provider.ComposedAdapterFactory;
+import org.eclipse.equinox.p2.engine.IProfile;
 import org.eclipse.equinox.p2.metadata.ILicense;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.util.io.ThrowingPrintWriter;
 import org.eclipse.oomph.base.provider.BaseEditUtil;
 import org.eclipse.oomph.internal.setup.SetupPrompter;
+import org.eclipse.oomph.p2.Requirement;
+import org.eclipse.oomph.p2.core.Agent;
+import org.eclipse.oomph.p2.core.AgentManager;
+import org.eclipse.oomph.p2.core.P2Util;
 import org.eclipse.oomph.setup.Index;
 import org.eclipse.oomph.setup.InstallationTask;
 import org.eclipse.oomph.setup.Product;
@@ -95,6 +119,21 @@ public abstract class AbstractLogicalCommand {
 
 	protected static final String PROP_SETUP_MIRRORS_STARTUP = "oomph.setup.mirrors.startup"; //$NON-NLS-1$
 
+	/**
+	 * Name of the p2 agent shared by the installations in the system temp directory.
+	 */
+	private static final String SHARED_P2_AGENT = "emfcP2"; //$NON-NLS-1$
+
+	/**
+	 * Number of workspaces shared by the concurrent commands run with the same setup, by default.
+	 */
+	private static final int DEFAULT_WORKSPACE_SLOTS = 4;
+
+	/**
+	 * Folder of an installation holding the eclipse executable.
+	 */
+	private static final String ECLIPSE_FOLDER = "eclipse"; //$NON-NLS-1$
+
 	/**
 	 * Holds true if a user has set the help option to true.
 	 */
@@ -119,6 +158,30 @@ public abstract class AbstractLogicalCommand {
 	@Option(name = GIT_DIR_OPT, metaVar = "gitFolderPath", usage = "Path to the .git folder of your repository.", handler = GitDirHandler.class)
 	private String gitdir;
 
+	/**
+	 * Holds true if the installation should be provisioned even if it is up to date.
+	 */
+	@Option(name = REPROVISION_OPT, usage = "Provisions the installation even if it is up to date.")
+	private boolean reprovision;
+
+	/**
+	 * Holds true if the installation should be provisioned offline first.
+	 */
+	@Option(name = OFFLINE_FIRST_OPT, usage = "Provisions from the local p2 caches and mirror, going online only if something is missing.")
+	private boolean offlineFirst;
+
+	/**
+	 * Holds the file receiving the timeline of the command.
+	 */
+	@Option(name = TRACE_OPT, metaVar = "<file>", usage = "Writes the timeline of the phases of the command, in the launcher and in the eclipse process, to the given file in the Chrome trace event format.")
+	private File trace;
+
+	/**
+	 * Holds the number of workspaces shared by the concurrent commands run with the same setup.
+	 */
+	@Option(name = WORKSPACE_SLOTS_OPT, metaVar = "<count>", usage = "Number of workspaces shared by the concurrent commands run with the same setup, when the setup does not define the workspace.")
+	private Integer workspaceSlots;
+
 	/**
 	 * Name of this command.
 	 */
@@ -129,6 +192,11 @@ public abstract class AbstractLogicalCommand {
 	 */
 	private ThrowingPrintWriter out;
 
+	/**
+	 * Stream written by {@link #out}, to write bytes as they are.
+	 */
+	private OutputStream outStream;
+
 	/**
 	 * Usage of this command. This field is filled only if the help parameter has been provided.
 	 */
@@ -146,6 +214,51 @@ public abstract class AbstractLogicalCommand {
 
 	private ProgressLog progressPageLog;
 
+	/**
+	 * Fingerprint of everything the provisioning of the installation depends on.
+	 */
+	private String provisioningFingerprint;
+
+	/**
+	 * Bundle pool shared by the installations.
+	 */
+	private File bundlePool;
+
+	/**
+	 * The p2 agent shared by the installations, locked while this command provisions its installation.
+	 */
+	private SharedP2Agent sharedAgent;
+
+	/**
+	 * Requirements of the P2 tasks of the user setup model.
+	 */
+	private final List<Requirement> userRequirements = new ArrayList<Requirement>();
+
+	/**
+	 * Git computations of this command, run while the installation is being provisioned.
+	 */
+	private GitPreparation gitPreparation;
+
+	/**
+	 * Offline-first settings of the command line and of the user setup model.
+	 */
+	private OfflineProvisioning offlineProvisioning;
+
+	/**
+	 * Tracer of the phases of this command.
+	 */
+	private Tracer tracer = Tracer.DISABLED;
+
+	/**
+	 * Lease of the workspace of this command.
+	 */
+	private WorkspaceLease workspaceLease;
+
+	/**
+	 * Lock of the installation, shared while this command uses it.
+	 */
+	private InstallationLock installationLock;
+
 	/**
 	 * Constructor.
 	 */
@@ -174,13 +287,46 @@ public abstract class AbstractLogicalCommand {
 	 */
 	public final Integer execute() throws Die, IOException {
 		if (!help) {
-			return internalRun();
+			long start = Tracer.now();
+			try {
+				return internalRun();
+			} finally {
+				tracer.complete("internalRun", start); //$NON-NLS-1$
+				writeTrace();
+			}
 		} else {
 			out.print(usage);
 		}
 		return Returns.COMPLETE.code();
 	}
 
+	/**
+	 * Writes the timeline of this command if it has been requested.
+	 * 
+	 * @throws IOException
+	 *             if the output of the command fails.
+	 */
+	private void writeTrace() throws IOException {
+		if (!tracer.isEnabled()) {
+			return;
+		}
+		try {
+			tracer.writeTrace(trace);
+			out.println("Trace written to " + trace.getAbsolutePath()); //$NON-NLS-1$
+		} catch (IOException e) {
+			out.println("Unable to write the trace: " + e.getMessage()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Gets the tracer of the phases of this command.
+	 * 
+	 * @return the tracer, {@link Tracer#DISABLED} if the command is not traced.
+	 */
+	protected Tracer getTracer() {
+		return tracer;
+	}
+
 	/**
 	 * Gets the git repository.
 	 * 
@@ -280,6 +426,20 @@ public abstract class AbstractLogicalCommand {
 		return out;
 	}
 
+	/**
+	 * Writes bytes in console as they are, after the messages already written with {@link #out()}.
+	 * 
+	 * @param bytes
+	 *            the bytes to write.
+	 * @throws IOException
+	 *             if the bytes can not be written.
+	 */
+	protected void write(byte[] bytes) throws IOException {
+		out.flush();
+		outStream.write(bytes);
+		outStream.flush();
+	}
+
 	/**
 	 * Runs the command.
 	 * 
@@ -306,7 +466,12 @@ public abstract class AbstractLogicalCommand {
 	 */
 	public void build(Collection<String> args, URI environmentSetupURI) throws Die, IOException {
 
+		long parseStart = Tracer.now();
 		repo = parseArgumentsAndBuildRepo(args);
+		if (trace != null && !help) {
+			tracer = new Tracer(Tracer.newTraceId(), "launcher"); //$NON-NLS-1$
+		}
+		tracer.complete("parseArgumentsAndBuildRepo", parseStart); //$NON-NLS-1$
 
 		try {
 			final String outputEncoding;
@@ -315,11 +480,12 @@ public abstract class AbstractLogicalCommand {
 			} else {
 				outputEncoding = null;
 			}
+			outStream = System.out;
 			BufferedWriter outbufw;
 			if (outputEncoding != null) {
-				outbufw = new BufferedWriter(new OutputStreamWriter(System.out, outputEncoding));
+				outbufw = new BufferedWriter(new OutputStreamWriter(outStream, outputEncoding));
 			} else {
-				outbufw = new BufferedWriter(new OutputStreamWriter(System.out));
+				outbufw = new BufferedWriter(new OutputStreamWriter(outStream));
 			}
 			out = new ThrowingPrintWriter(outbufw);
 		} catch (IOException e) {
@@ -327,21 +493,338 @@ public abstract class AbstractLogicalCommand {
 		}
 
 		if (!help) {
+			inspectRepository();
+		}
+		if (!help && needsInstallation()) {
+			// The git computations do not depend on the installation.
+			Future<GitPreparation> preparation = startGitPreparation();
 			try {
 				// Loads eclipse environment setup model.
-				performer = createSetupTaskPerformer(setupFile.getAbsolutePath(), environmentSetupURI);
-				performer.perform();
-
-				if (!performer.hasSuccessfullyPerformed()) {
-					throw new DiesOn(DeathType.FATAL).displaying("Error durring Oomph operation").ready();
-				}
+				long start = Tracer.now();
+				performer = createSetupTaskPerformer(setupFile.getAbsolutePath(), environmentSetupURI, false);
+				tracer.complete("createSetupTaskPerformer", start); //$NON-NLS-1$
+				provision(environmentSetupURI);
 			} catch (Die e) {
 				throw e;
 			} catch (Exception e) {
 				throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
 			}
+			gitPreparation = getGitPreparation(preparation);
+			reportLockWaits();
+		}
+
+	}
+
+	/**
+	 * Releases the workspace and the installation for the other commands.
+	 */
+	public void dispose() {
+		if (workspaceLease != null) {
+			workspaceLease.release();
+			workspaceLease = null;
+		}
+		if (sharedAgent != null) {
+			sharedAgent.release();
+		}
+		if (installationLock != null) {
+			installationLock.release();
+			installationLock = null;
+		}
+	}
+
+	/**
+	 * Logs the time spent waiting for the other commands, to size the pool of workspaces.
+	 */
+	private void reportLockWaits() {
+		if (workspaceLease == null || installationLock == null) {
+			return;
+		}
+		progressPageLog.log("Waited " + installationLock.getWaitTime() + " ms for the installation and " //$NON-NLS-1$ //$NON-NLS-2$
+				+ workspaceLease.getWaitTime() + " ms for the workspace slot " + workspaceLease.getSlot() //$NON-NLS-1$
+				+ " (" + workspaceLease.getLocation() + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Computes in the launcher what this command has to know about the repository to tell whether it needs
+	 * the installation. It is called once the arguments are parsed, before {@link #needsInstallation()}.
+	 * 
+	 * @throws Die
+	 *             if the repository can not be read.
+	 */
+	protected void inspectRepository() throws Die {
+		// Nothing by default.
+	}
+
+	/**
+	 * Tells whether this command needs the provisioned installation. A command that can handle the state of
+	 * the repository in the launcher alone returns <code>false</code>, the installation is then neither
+	 * loaded nor provisioned and {@link #getPerformer()} returns <code>null</code>.
+	 * 
+	 * @return <code>true</code> if the installation has to be provisioned before running this command.
+	 * @throws Die
+	 *             if the repository can not be read.
+	 */
+	protected boolean needsInstallation() throws Die {
+		return true;
+	}
+
+	/**
+	 * Computes the git side of this command, that is to say everything that does not depend on the
+	 * provisioned installation. It is called in a background thread while the installation is being
+	 * provisioned.
+	 * 
+	 * @return the git preparation or <code>null</code> if this command has nothing to prepare.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	protected GitPreparation prepareGit() throws IOException {
+		return null;
+	}
+
+	/**
+	 * Gets the git computations of this command.
+	 * 
+	 * @return the git preparation or <code>null</code> if it is not available.
+	 */
+	protected GitPreparation getGitPreparation() {
+		return gitPreparation;
+	}
+
+	/**
+	 * Starts {@link #prepareGit()} in a background thread.
+	 * 
+	 * @return the pending preparation.
+	 */
+	private Future<GitPreparation> startGitPreparation() {
+		ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Git preparation"); //$NON-NLS-1$
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			return executor.submit(new Callable<GitPreparation>() {
+				public GitPreparation call() throws IOException {
+					long start = Tracer.now();
+					try {
+						return prepareGit();
+					} finally {
+						tracer.complete("prepareGit", start); //$NON-NLS-1$
+					}
+				}
+			});
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Waits for the git preparation.
+	 * 
+	 * @param preparation
+	 *            the pending preparation.
+	 * @return the preparation or <code>null</code> if it has failed, in which case the application computes
+	 *         everything itself.
+	 */
+	private GitPreparation getGitPreparation(Future<GitPreparation> preparation) {
+		try {
+			return preparation.get();
+		} catch (ExecutionException e) {
+			progressPageLog.log("Unable to prepare the git command: " + e.getCause().getMessage()); //$NON-NLS-1$
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * Provisions the eclipse environment unless the provisioning manifest of the installation shows that it
+	 * has already been provisioned with the same setup. In offline-first mode, the provisioning is performed
+	 * online if some requirements are not available locally, without releasing the installation in between.
+	 * 
+	 * @param environmentSetupURI
+	 *            the URI of the environment setup model, to create the online performer.
+	 * @throws Exception
+	 *             if the provisioning fails.
+	 */
+	private void provision(final URI environmentSetupURI) throws Exception {
+		lockInstallation(true);
+		if (!reprovision && getProvisioningManifest().isUpToDate(provisioningFingerprint)) {
+			progressPageLog.log("Installation is up to date, skipping provisioning."); //$NON-NLS-1$
+			return;
+		}
+
+		// The shared lock is released before the exclusive one is acquired, the manifest is thus checked
+		// again once the installation is locked exclusively.
+		lockInstallation(false);
+		try {
+			ProvisioningManifest manifest = getProvisioningManifest();
+			if (reprovision) {
+				manifest.invalidate();
+			} else if (manifest.isUpToDate(provisioningFingerprint)) {
+				progressPageLog.log("Installation provisioned by another command, skipping provisioning."); //$NON-NLS-1$
+				return;
+			}
+			// The shared agent and its bundle pool are written whatever the installation.
+			lockSharedAgent();
+			boolean performed = offlineProvisioning.perform(new OfflineProvisioning.Attempt() {
+				public boolean perform(boolean online) throws Exception {
+					if (online && performer.isOffline()) {
+						long start = Tracer.now();
+						performer = createSetupTaskPerformer(setupFile.getAbsolutePath(),
+								environmentSetupURI, true);
+						tracer.complete("createSetupTaskPerformer", start, "online"); //$NON-NLS-1$ //$NON-NLS-2$
+					}
+					performSetupTasks();
+					return performer.hasSuccessfullyPerformed();
+				}
+			}, progressPageLog);
+			if (!performed) {
+				throw new DiesOn(DeathType.FATAL).displaying("Error durring Oomph operation").ready();
+			}
+
+			try {
+				manifest.record(provisioningFingerprint);
+			} catch (IOException e) {
+				// The next run will provision the installation again.
+				progressPageLog.log("Unable to record the provisioning manifest: " + e.getMessage()); //$NON-NLS-1$
+			}
+			reportFootprint();
+		} finally {
+			sharedAgent.release();
+			lockInstallation(true);
+		}
+	}
+
+	/**
+	 * Acquires the exclusive lock of the p2 agent shared by the installations.
+	 * 
+	 * @throws IOException
+	 *             if the lock file can not be locked.
+	 */
+	private void lockSharedAgent() throws IOException {
+		long start = Tracer.now();
+		sharedAgent.acquire();
+		tracer.complete("p2 agent lock", start); //$NON-NLS-1$
+	}
+
+	/**
+	 * Acquires the lock of the installation.
+	 * 
+	 * @param shared
+	 *            <code>true</code> to use the installation, <code>false</code> to provision it.
+	 * @throws IOException
+	 *             if the lock file can not be locked.
+	 */
+	private void lockInstallation(boolean shared) throws IOException {
+		if (installationLock == null) {
+			installationLock = new InstallationLock(getMetadataFolder());
+		}
+		long start = Tracer.now();
+		installationLock.acquire(shared);
+		final String mode;
+		if (shared) {
+			mode = "shared"; //$NON-NLS-1$
+		} else {
+			mode = "exclusive"; //$NON-NLS-1$
+		}
+		tracer.complete("installation lock", start, mode); //$NON-NLS-1$
+	}
+
+	/**
+	 * Performs the setup tasks of the provisioning.
+	 * 
+	 * @throws Exception
+	 *             if the provisioning fails.
+	 */
+	private void performSetupTasks() throws Exception {
+		long start = Tracer.now();
+		try {
+			performer.perform();
+		} finally {
+			String mode;
+			if (performer.isOffline()) {
+				mode = "offline"; //$NON-NLS-1$
+			} else {
+				mode = "online"; //$NON-NLS-1$
+			}
+			tracer.complete("perform", start, mode); //$NON-NLS-1$
 		}
+	}
+
+	/**
+	 * Logs the disk footprint of the installation, not counting the bundles it shares with the other
+	 * installations.
+	 */
+	private void reportFootprint() {
+		try {
+			long installationSize = DiskUsage.sizeOf(getInstallationFolder());
+			long poolSize = DiskUsage.sizeOf(bundlePool);
+			progressPageLog.log("Installation footprint: " + DiskUsage.format(installationSize) //$NON-NLS-1$
+					+ " (shared bundle pool " + bundlePool + ": " + DiskUsage.format(poolSize) + ")"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		} catch (IOException e) {
+			// The footprint is only informative.
+		}
+	}
 
+	/**
+	 * Tells whether the installation is provisioned offline first. The started applications then perform
+	 * their startup tasks offline too.
+	 * 
+	 * @return <code>true</code> in offline-first mode.
+	 */
+	protected boolean isOfflineFirst() {
+		return offlineProvisioning != null && offlineProvisioning.isOfflineFirst();
+	}
+
+	/**
+	 * Gets the requirements of the P2 tasks of the user setup model, that is to say what the user setup model
+	 * adds to the product.
+	 * 
+	 * @return the requirements of the user setup model.
+	 */
+	protected List<Requirement> getUserRequirements() {
+		return Collections.unmodifiableList(userRequirements);
+	}
+
+	/**
+	 * Gets the provisioning manifest of the installation.
+	 * 
+	 * @return the provisioning manifest of the installation.
+	 */
+	ProvisioningManifest getProvisioningManifest() {
+		return new ProvisioningManifest(getInstallationFolder(), getEclipseFolder(), performer.getOS()
+				.getEclipseExecutable());
+	}
+
+	/**
+	 * Gets the folder of the installation holding the data managed by this program.
+	 * 
+	 * @return the metadata folder of the installation.
+	 */
+	protected File getMetadataFolder() {
+		return new File(getInstallationFolder(), ProvisioningManifest.METADATA_FOLDER);
+	}
+
+	/**
+	 * Gets the root folder of the installation.
+	 * 
+	 * @return the absolute root folder of the installation.
+	 */
+	protected File getInstallationFolder() {
+		String setupFileBasePath = Paths.get(setupFile.getAbsolutePath()).getParent().toString();
+		return toFileWithAbsolutePath(setupFileBasePath, performer.getInstallationLocation().getPath());
+	}
+
+	/**
+	 * Gets the folder of the installation holding the eclipse executable.
+	 * 
+	 * @return the absolute folder of the installation holding the eclipse executable.
+	 */
+	protected File getEclipseFolder() {
+		return new File(getInstallationFolder(), performer.getOS().getEclipseDir());
 	}
 
 	/**
@@ -349,13 +832,15 @@ public abstract class AbstractLogicalCommand {
 	 * 
 	 * @param userSetupFilePath
 	 *            the path of the user setup model.
+	 * @param online
+	 *            <code>true</code> to perform the P2 tasks online even in offline-first mode.
 	 * @return a SetupTaskPerformer.
 	 * @throws Die
 	 * @throws IOException
 	 * @throws Exception
 	 */
-	private SetupTaskPerformer createSetupTaskPerformer(String userSetupFilePath, URI environmentSetupURI)
-			throws IOException, Die {
+	private SetupTaskPerformer createSetupTaskPerformer(String userSetupFilePath, URI environmentSetupURI,
+			boolean online) throws IOException, Die {
 		// Load user setup model.
 		ComposedAdapterFactory adapterFactory = new ComposedAdapterFactory(BaseEditUtil
 				.createAdapterFactory());
@@ -367,10 +852,11 @@ public abstract class AbstractLogicalCommand {
 		rs.getLoadOptions().put(ECFURIHandlerImpl.OPTION_CACHE_HANDLING,
 				ECFURIHandlerImpl.CacheHandling.CACHE_WITHOUT_ETAG_CHECKING);
 
+		SetupModelCache setupModelCache = SetupModelCache.getDefault();
 		URI startupSetupURI = URI.createFileURI(userSetupFilePath);
 		Resource startupSetup = null;
 		try {
-			startupSetup = rs.getResource(startupSetupURI, true);
+			startupSetup = setupModelCache.getResource(rs, startupSetupURI);
 		} catch (Exception e) {
 			// Does nothing handle later
 		}
@@ -385,9 +871,14 @@ public abstract class AbstractLogicalCommand {
 			throw new DiesOn(SOFTWARE_ERROR).displaying("The index of of the setup file should not be null")
 					.ready();
 		}
+		offlineProvisioning = OfflineProvisioning.read(startupSetupIndex, offlineFirst, new File(
+				userSetupFilePath).getParentFile());
 
 		// Check workspace path and content.
-		if (!modelDefinesWorkspacePath(startupSetupIndex)) {
+		if (modelDefinesWorkspacePath(startupSetupIndex)) {
+			// A single workspace, used by one command at a time.
+			leaseWorkspace(new File(getWorkspacePath(startupSetupIndex)), 1);
+		} else {
 			// Use default workspace.
 			useDefaultWorkspace(startupSetupIndex);
 		}
@@ -403,7 +894,7 @@ public abstract class AbstractLogicalCommand {
 
 		progressPageLog = new ProgressPageLog(System.out);
 
-		Resource environmentSetup = rs.getResource(environmentSetupURI, true);
+		Resource environmentSetup = setupModelCache.getResource(rs, environmentSetupURI);
 		Index eclipseSetupIndex = (Index)EcoreUtil.getObjectByType(environmentSetup.getContents(),
 				SetupPackage.Literals.INDEX);
 
@@ -413,11 +904,13 @@ public abstract class AbstractLogicalCommand {
 		ProductVersion productVersion = product.getVersions().get(0);
 
 		// Add extra plugins to install from user setup model.
+		userRequirements.clear();
 		for (ProjectCatalog projectCatalog : startupSetupIndex.getProjectCatalogs()) {
 			for (SetupTask setupTask : projectCatalog.getSetupTasks()) {
 				if (setupTask instanceof P2Task) {
 					SetupTask copy = EcoreUtil.copy(setupTask);
 					catalog.getSetupTasks().add(copy);
+					userRequirements.addAll(((P2Task)setupTask).getRequirements());
 				}
 			}
 			for (Project project : projectCatalog.getProjects()) {
@@ -425,15 +918,30 @@ public abstract class AbstractLogicalCommand {
 					if (setupTask instanceof P2Task) {
 						SetupTask copy = EcoreUtil.copy(setupTask);
 						catalog.getSetupTasks().add(copy);
+						userRequirements.addAll(((P2Task)setupTask).getRequirements());
 					}
 				}
 			}
 		}
 
+		if (offlineProvisioning.isOfflineFirst()) {
+			offlineProvisioning.addMirror(catalog.getSetupTasks());
+		}
+
+		if (sharedAgent == null) {
+			sharedAgent = new SharedP2Agent(createOrGetTempDir(SHARED_P2_AGENT));
+		}
+		bundlePool = sharedAgent.getBundlePool();
+
+		URIConverter uriConverter = rs.getURIConverter();
+		provisioningFingerprint = getProvisioningFingerprint(generateIDForSetup(userSetupFilePath),
+				new Fingerprint().add(uriConverter.createInputStream(environmentSetupURI)).toHex(),
+				getP2Requirements(catalog, product, productVersion).toString(), installationPath,
+				workspaceLease, bundlePool);
+
 		// Create Oomph setup context.
 		final SetupContext setupContext = SetupContext.create(rs, productVersion);
 		Trigger triggerBootstrap = Trigger.BOOTSTRAP;
-		URIConverter uriConverter = rs.getURIConverter();
 		SetupTaskPerformer aPerformer;
 		try {
 			aPerformer = SetupTaskPerformer.create(uriConverter, SetupPrompter.CANCEL, triggerBootstrap,
@@ -445,12 +953,21 @@ public abstract class AbstractLogicalCommand {
 		aPerformer.put(ILicense.class, confirmer);
 		aPerformer.put(Certificate.class, confirmer);
 		aPerformer.setProgress(progressPageLog);
-		aPerformer.setOffline(false);
-		aPerformer.setMirrors(true);
+		boolean offline = offlineProvisioning.isOfflineFirst() && !online;
+		aPerformer.setOffline(offline);
+		aPerformer.setMirrors(!offline);
+		if (offline && offlineProvisioning.getMirror() != null) {
+			progressPageLog.log("Provisioning offline with the local mirror " //$NON-NLS-1$
+					+ offlineProvisioning.getMirror());
+		}
+		// Installs the bundles in the shared pool, the installation only holds its configuration.
+		aPerformer.put(AgentManager.PROP_BUNDLE_POOL_LOCATION, bundlePool.getAbsolutePath());
 
-		if (installationPathContainsExistingEclipse(installationPath)) {
-			aPerformer.getTriggeredSetupTasks().clear();
+		if (!reprovision && installationPathContainsExistingEclipse(installationPath)) {
 			progressPageLog.log("Existing eclipse environment found at : " + installationPath); //$NON-NLS-1$
+			List<SetupTask> tasks = getTasksToPerform(aPerformer.getTriggeredSetupTasks(), installationPath);
+			aPerformer.getTriggeredSetupTasks().clear();
+			aPerformer.getTriggeredSetupTasks().addAll(tasks);
 		}
 
 		// Add installation task and workspace task from user setup model.
@@ -462,6 +979,71 @@ public abstract class AbstractLogicalCommand {
 		return aPerformer;
 	}
 
+	/**
+	 * Reduces the P2 tasks of the bootstrap to the requirements the existing installation does not satisfy
+	 * yet.
+	 * 
+	 * @param tasks
+	 *            the triggered tasks of the bootstrap.
+	 * @param installationPath
+	 *            the root folder of the existing installation.
+	 * @return the P2 tasks installing the missing requirements, empty if the installation satisfies them all,
+	 *         or all the tasks of the bootstrap if its profile is not found in the shared p2 agent.
+	 */
+	private List<SetupTask> getTasksToPerform(List<SetupTask> tasks, String installationPath) {
+		Agent agent = P2Util.getAgentManager().getAgent(sharedAgent.getLocation());
+		IProfile profile = null;
+		if (agent != null) {
+			profile = ProfileDelta.findProfile(agent, new File(installationPath, ECLIPSE_FOLDER));
+		}
+		if (profile == null) {
+			progressPageLog.log("No p2 profile found for the existing environment, performing all the tasks"); //$NON-NLS-1$
+			return ProfileDelta.getTasksToPerform(tasks, null);
+		}
+		List<SetupTask> deltaTasks = ProfileDelta.getTasksToPerform(tasks, profile);
+		int missing = 0;
+		for (SetupTask deltaTask : deltaTasks) {
+			missing += ((P2Task)deltaTask).getRequirements().size();
+		}
+		if (missing > 0) {
+			progressPageLog.log("Installing " + missing //$NON-NLS-1$
+					+ " missing requirements in the existing environment"); //$NON-NLS-1$
+		}
+		return deltaTasks;
+	}
+
+	/**
+	 * Collects the requirements and repositories of the P2 tasks that the bootstrap will perform.
+	 * 
+	 * @param catalog
+	 *            the product catalog holding the P2 tasks of the user setup model.
+	 * @param product
+	 *            the product.
+	 * @param productVersion
+	 *            the product version.
+	 * @return a sorted set describing the requirements and repositories.
+	 */
+	private static Set<String> getP2Requirements(ProductCatalog catalog, Product product,
+			ProductVersion productVersion) {
+		Set<String> requirements = new TreeSet<String>();
+		Iterable<?>[] allTasks = {catalog.getSetupTasks(), product.getSetupTasks(),
+				productVersion.getSetupTasks(), };
+		for (Iterable<?> tasks : allTasks) {
+			for (Object setupTask : tasks) {
+				if (setupTask instanceof P2Task) {
+					for (Requirement requirement : ((P2Task)setupTask).getRequirements()) {
+						requirements.add(requirement.getName() + ' ' + requirement.getVersionRange() + ' '
+								+ requirement.isOptional());
+					}
+					for (org.eclipse.oomph.p2.Repository repository : ((P2Task)setupTask).getRepositories()) {
+						requirements.add(repository.getURL());
+					}
+				}
+			}
+		}
+		return requirements;
+	}
+
 	/**
 	 * Check if the given Index defines an installation task with a non null location.
 	 * 
@@ -623,7 +1205,8 @@ public abstract class AbstractLogicalCommand {
 	 * If the given index hasn't defined workspace task, this method generates a unique id in the temporary
 	 * folder of the system, add a new workspace task in the given Index, and set the location of this new
 	 * workspace task with the generated id. If the generated id already exists (cause a command already been
-	 * called with the same Index), it is reused.
+	 * called with the same Index), it is reused. The concurrent commands each lease their own slot of a pool
+	 * of workspaces derived from this location.
 	 * 
 	 * @param index
 	 *            the given Index.
@@ -633,7 +1216,11 @@ public abstract class AbstractLogicalCommand {
 	 */
 	private String useDefaultWorkspace(Index index) throws IOException, Die {
 		String id = generateIDForSetup(index.eResource().getURI().toFileString());
-		File ws = createOrGetTempDir("emfcWs" + id); //$NON-NLS-1$
+		int slots = DEFAULT_WORKSPACE_SLOTS;
+		if (workspaceSlots != null) {
+			slots = Math.max(1, workspaceSlots.intValue());
+		}
+		File ws = leaseWorkspace(createOrGetTempDir("emfcWs" + id), slots); //$NON-NLS-1$
 		WorkspaceTask wsTask = SetupFactory.eINSTANCE.createWorkspaceTask();
 		wsTask.setLocation(ws.getPath());
 		EList<ProjectCatalog> projectCatalogs = index.getProjectCatalogs();
@@ -643,6 +1230,45 @@ public abstract class AbstractLogicalCommand {
 		return ws.getAbsolutePath();
 	}
 
+	/**
+	 * Leases a slot of a pool of workspaces, unless this command already holds a lease.
+	 * 
+	 * @param base
+	 *            the workspace of the first slot.
+	 * @param slots
+	 *            the number of slots of the pool.
+	 * @return the leased workspace.
+	 * @throws Die
+	 *             if the workspace can not be leased.
+	 */
+	private File leaseWorkspace(File base, int slots) throws Die {
+		if (workspaceLease == null) {
+			long start = Tracer.now();
+			try {
+				workspaceLease = WorkspaceLease.acquire(base, slots);
+			} catch (IOException e) {
+				throw new DiesOn(FATAL).duedTo(e).ready();
+			} catch (InterruptedException e) {
+				throw new DiesOn(FATAL).duedTo(e).ready();
+			}
+			tracer.complete("workspace lease", start, workspaceLease.getLocation().getPath()); //$NON-NLS-1$
+		}
+		return workspaceLease.getLocation();
+	}
+
+	/**
+	 * Gets the workspace of the first slot of the pool of workspaces of this command. It does not depend on
+	 * the slot leased by this command.
+	 * 
+	 * @return the workspace of the first slot.
+	 */
+	protected File getWorkspaceBase() {
+		if (workspaceLease != null) {
+			return workspaceLease.getBase();
+		}
+		return performer.getWorkspaceLocation();
+	}
+
 	/**
 	 * Creates a temporary directory in the system temp directory.
 	 * 
@@ -665,6 +1291,39 @@ public abstract class AbstractLogicalCommand {
 				+ baseName + "0 to " + baseName + (10000 - 1) + ')');
 	}
 
+	/**
+	 * Computes the fingerprint of the provisioning of an installation. The workspace is identified by the
+	 * first slot of its pool rather than by the leased slot, so that the commands using the other slots share
+	 * the same provisioning manifest.
+	 * 
+	 * @param setupId
+	 *            the identifier of the user setup model.
+	 * @param environmentId
+	 *            the fingerprint of the environment setup model.
+	 * @param requirements
+	 *            the P2 requirements of the installation.
+	 * @param installationPath
+	 *            the location of the installation.
+	 * @param lease
+	 *            the workspace lease of the command.
+	 * @param bundlePool
+	 *            the shared bundle pool.
+	 * @return the fingerprint of the provisioning.
+	 * @throws Die
+	 *             if the digest algorithm is not available.
+	 */
+	static String getProvisioningFingerprint(String setupId, String environmentId, String requirements,
+			String installationPath, WorkspaceLease lease, File bundlePool) throws Die {
+		return new Fingerprint() //
+				.add(setupId) //
+				.add(environmentId) //
+				.add(requirements) //
+				.add(installationPath) //
+				.add(lease.getBase().getAbsolutePath()) //
+				.add(bundlePool.getAbsolutePath()) //
+				.toHex();
+	}
+
 	/**
 	 * Generate a unique ID for the a given file.
 	 * 
@@ -676,25 +1335,7 @@ public abstract class AbstractLogicalCommand {
 	 *             On any other program error.
 	 */
 	private static String generateIDForSetup(String setupFilePath) throws IOException, Die {
-		File f = new File(setupFilePath);
-		MessageDigest digest;
-		try {
-			digest = MessageDigest.getInstance("SHA-1");
-		} catch (NoSuchAlgorithmException e) {
-			throw new DiesOn(DeathType.ERROR).duedTo(e).ready();
-		}
-		FileInputStream inputStream = new FileInputStream(f);
-		byte[] bytesBuffer = new byte[1024];
-		int bytesRead = -1;
-
-		while ((bytesRead = inputStream.read(bytesBuffer)) != -1) {
-			digest.update(bytesBuffer, 0, bytesRead);
-		}
-		inputStream.close();
-
-		byte[] hashedBytes = digest.digest();
-
-		return convertByteArrayToHexString(hashedBytes);
+		return Fingerprint.of(new File(setupFilePath));
 	}
 
 	/**
@@ -721,21 +1362,6 @@ public abstract class AbstractLogicalCommand {
 		return install.getAbsolutePath();
 	}
 
-	/**
-	 * Converts an array of bytes into a string of hexadecimal values.
-	 * 
-	 * @param arrayBytes
-	 *            the given array of bytes.
-	 * @return a string of hexadecimal values.
-	 */
-	private static String convertByteArrayToHexString(byte[] arrayBytes) {
-		StringBuffer stringBuffer = new StringBuffer();
-		for (int i = 0; i < arrayBytes.length; i++) {
-			stringBuffer.append(Integer.toString((arrayBytes[i] & 0xff) + 0x100, 16).substring(1));
-		}
-		return stringBuffer.toString();
-	}
-
 	/**
 	 * Flush the out stream. This is mainly use to handle premature exit.
 	 * 
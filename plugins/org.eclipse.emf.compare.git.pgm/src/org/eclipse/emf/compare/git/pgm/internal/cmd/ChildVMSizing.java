@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import static org.eclipse.emf.compare.git.pgm.internal.util.ModelReferences.PLATFORM_RESOURCE;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.git.pgm.internal.util.ModelReferences;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Sizing of the heap and of the garbage collector of the eclipse process running a logical application.
+ * <p>
+ * The working set of a logical command is estimated from the changed files that may be models, on every
+ * side of the command, and from the files of their logical models, that is to say the files they refer to
+ * with relative URIs, recursively. A serialized model takes several times its size once loaded, and a
+ * comparison holds every side of it along with the match and the differences, so that the heap grows with
+ * the total size of these files. Each loaded file also costs its resource set entries and its URI maps.
+ * </p>
+ * <p>
+ * Small heaps use the serial collector, which starts faster and has no thread to spawn. Medium heaps use the
+ * parallel collector, the one with the best throughput for a batch run. Large heaps use G1 with the
+ * deduplication of strings, which are a large share of a loaded XMI model.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class ChildVMSizing {
+
+	private static final long MEGABYTE = 1024L * 1024L;
+
+	/**
+	 * Heap used by the runtime itself, with EGit and EMF Compare loaded, in megabytes.
+	 */
+	private static final long RUNTIME_HEAP = 256;
+
+	/**
+	 * Ratio between the heap used by a model during a comparison and its serialized size.
+	 */
+	private static final long MODEL_EXPANSION = 12;
+
+	/**
+	 * Heap used by each loaded resource beyond its content, in kilobytes.
+	 */
+	private static final long RESOURCE_OVERHEAD = 64;
+
+	private static final long KILOBYTES_PER_MEGABYTE = 1024;
+
+	/**
+	 * Granularity of the maximum heap, in megabytes.
+	 */
+	private static final long HEAP_STEP = 256;
+
+	private static final long MIN_HEAP = 512;
+
+	/**
+	 * Maximum heap when the physical memory is unknown, in megabytes.
+	 */
+	private static final long DEFAULT_MAX_HEAP = 4096;
+
+	/**
+	 * Largest heap using the serial collector, in megabytes.
+	 */
+	private static final long SERIAL_GC_LIMIT = 1024;
+
+	/**
+	 * Largest heap using the parallel collector, in megabytes.
+	 */
+	private static final long PARALLEL_GC_LIMIT = 4096;
+
+	/**
+	 * Largest file scanned for references. Bigger files are counted but not scanned.
+	 */
+	private static final long SCAN_LIMIT = 16 * MEGABYTE;
+
+	/**
+	 * Largest number of files of the logical models, beyond which the references are no longer followed.
+	 */
+	private static final int MAX_FILES = 10000;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/**
+	 * Repository holding the models.
+	 */
+	private final Repository repository;
+
+	/**
+	 * Detects the files that may be models.
+	 */
+	private final ModelFileDetector detector;
+
+	/**
+	 * Total size of the files of the logical models, in bytes.
+	 */
+	private long modelBytes;
+
+	/**
+	 * Number of files of the logical models, counted once per side.
+	 */
+	private int modelFiles;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param repository
+	 *            the repository holding the models.
+	 */
+	ChildVMSizing(Repository repository) {
+		this.repository = repository;
+		this.detector = new ModelFileDetector(repository);
+	}
+
+	/**
+	 * Estimates the working set of a command from the files changed between a base and other commits.
+	 * 
+	 * @param base
+	 *            the common side of the changes.
+	 * @param tips
+	 *            the other sides of the changes.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	void estimate(ObjectId base, List<ObjectId> tips) throws IOException {
+		RevWalk walk = new RevWalk(repository);
+		TreeWalk treeWalk = new TreeWalk(repository);
+		ObjectReader reader = repository.newObjectReader();
+		try {
+			List<RevTree> trees = new ArrayList<RevTree>();
+			trees.add(walk.parseTree(base));
+			for (ObjectId tip : tips) {
+				trees.add(walk.parseTree(tip));
+			}
+			treeWalk.setRecursive(true);
+			for (RevTree tree : trees) {
+				treeWalk.addTree(tree);
+			}
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+
+			List<List<String>> changedModels = new ArrayList<List<String>>();
+			for (int tree = 0; tree < trees.size(); tree++) {
+				changedModels.add(new ArrayList<String>());
+			}
+			while (treeWalk.next()) {
+				String path = treeWalk.getPathString();
+				for (int tree = 0; tree < trees.size(); tree++) {
+					if (detector.isModel(path, treeWalk.getObjectId(tree), treeWalk.getFileMode(tree))) {
+						changedModels.get(tree).add(path);
+					}
+				}
+			}
+			for (int tree = 0; tree < trees.size(); tree++) {
+				addLogicalModels(reader, trees.get(tree), changedModels.get(tree));
+			}
+		} finally {
+			reader.release();
+			treeWalk.release();
+			walk.release();
+		}
+	}
+
+	/**
+	 * Adds the files of the logical models of some files of a tree.
+	 * 
+	 * @param reader
+	 *            the reader of the repository.
+	 * @param tree
+	 *            the tree holding the files.
+	 * @param paths
+	 *            the paths of the files.
+	 * @throws IOException
+	 *             if a file can not be read.
+	 */
+	private void addLogicalModels(ObjectReader reader, RevTree tree, List<String> paths) throws IOException {
+		Set<String> visited = new HashSet<String>(paths);
+		LinkedList<String> queue = new LinkedList<String>(paths);
+		while (!queue.isEmpty()) {
+			String path = queue.removeFirst();
+			TreeWalk file = TreeWalk.forPath(reader, path, tree);
+			if (file == null) {
+				// Dangling reference.
+				continue;
+			}
+			ObjectId blob;
+			try {
+				if (file.getFileMode(0).getObjectType() != Constants.OBJ_BLOB) {
+					continue;
+				}
+				blob = file.getObjectId(0);
+			} finally {
+				file.release();
+			}
+			long size = reader.getObjectSize(blob, Constants.OBJ_BLOB);
+			modelBytes += size;
+			modelFiles++;
+			if (size > SCAN_LIMIT || visited.size() >= MAX_FILES) {
+				continue;
+			}
+			String content = new String(reader.open(blob, Constants.OBJ_BLOB).getBytes(), UTF_8);
+			for (String reference : ModelReferences.find(content)) {
+				// The projects of the platform URIs are only known in the installation.
+				if (!reference.startsWith(PLATFORM_RESOURCE)) {
+					String referenced = resolve(path, URI.decode(reference));
+					if (referenced != null && visited.add(referenced)) {
+						queue.add(referenced);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the total size of the files of the logical models.
+	 * 
+	 * @return the size in bytes.
+	 */
+	long getModelBytes() {
+		return modelBytes;
+	}
+
+	/**
+	 * Gets the number of files of the logical models.
+	 * 
+	 * @return the number of files, counted once per side.
+	 */
+	int getModelFiles() {
+		return modelFiles;
+	}
+
+	/**
+	 * Gets the VM arguments sizing the eclipse process for the estimated working set.
+	 * 
+	 * @return the VM arguments.
+	 */
+	List<String> getVMArguments() {
+		return getVMArguments(getMaxHeap(modelBytes, modelFiles, getPhysicalMemory()));
+	}
+
+	/**
+	 * Computes the maximum heap of a working set.
+	 * 
+	 * @param bytes
+	 *            the total size of the files of the logical models, in bytes.
+	 * @param files
+	 *            the number of files of the logical models.
+	 * @param physicalMemory
+	 *            the physical memory of the machine in bytes, <code>-1</code> if it is unknown.
+	 * @return the maximum heap in megabytes.
+	 */
+	static long getMaxHeap(long bytes, int files, long physicalMemory) {
+		long estimate = RUNTIME_HEAP + bytes * MODEL_EXPANSION / MEGABYTE + files * RESOURCE_OVERHEAD
+				/ KILOBYTES_PER_MEGABYTE;
+		long heap = Math.max(MIN_HEAP, (estimate + HEAP_STEP - 1) / HEAP_STEP * HEAP_STEP);
+		long limit = DEFAULT_MAX_HEAP;
+		if (physicalMemory > 0) {
+			// Leaves room for the launcher, the metaspace and the rest of the machine.
+			limit = Math.max(MIN_HEAP, physicalMemory * 3 / 4 / MEGABYTE / HEAP_STEP * HEAP_STEP);
+		}
+		return Math.min(heap, limit);
+	}
+
+	/**
+	 * Gets the VM arguments of a maximum heap.
+	 * 
+	 * @param maxHeap
+	 *            the maximum heap in megabytes.
+	 * @return the VM arguments.
+	 */
+	static List<String> getVMArguments(long maxHeap) {
+		List<String> vmArgs = new ArrayList<String>();
+		// The collector options are not known by every VM.
+		vmArgs.add("-XX:+IgnoreUnrecognizedVMOptions"); //$NON-NLS-1$
+		vmArgs.add("-Xmx" + maxHeap + "m"); //$NON-NLS-1$ //$NON-NLS-2$
+		// Avoids the heap resizings of the first phases.
+		vmArgs.add("-Xms" + maxHeap / 2 + "m"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (maxHeap <= SERIAL_GC_LIMIT) {
+			vmArgs.add("-XX:+UseSerialGC"); //$NON-NLS-1$
+		} else if (maxHeap <= PARALLEL_GC_LIMIT) {
+			vmArgs.add("-XX:+UseParallelGC"); //$NON-NLS-1$
+		} else {
+			vmArgs.add("-XX:+UseG1GC"); //$NON-NLS-1$
+			vmArgs.add("-XX:+UseStringDeduplication"); //$NON-NLS-1$
+		}
+		return vmArgs;
+	}
+
+	/**
+	 * Resolves a relative reference against the path of the referencing file.
+	 * 
+	 * @param path
+	 *            the path of the referencing file in the repository.
+	 * @param reference
+	 *            the decoded relative reference.
+	 * @return the path of the referenced file or <code>null</code> if it is outside of the repository.
+	 */
+	static String resolve(String path, String reference) {
+		LinkedList<String> segments = new LinkedList<String>();
+		String[] base = path.split("/"); //$NON-NLS-1$
+		for (int i = 0; i < base.length - 1; i++) {
+			segments.add(base[i]);
+		}
+		for (String segment : reference.split("/")) { //$NON-NLS-1$
+			if ("..".equals(segment)) { //$NON-NLS-1$
+				if (segments.isEmpty()) {
+					return null;
+				}
+				segments.removeLast();
+			} else if (!segment.isEmpty() && !".".equals(segment)) { //$NON-NLS-1$
+				segments.add(segment);
+			}
+		}
+		if (segments.isEmpty()) {
+			return null;
+		}
+		StringBuilder resolved = new StringBuilder();
+		for (String segment : segments) {
+			if (resolved.length() > 0) {
+				resolved.append('/');
+			}
+			resolved.append(segment);
+		}
+		return resolved.toString();
+	}
+
+	/**
+	 * Gets the physical memory of the machine.
+	 * 
+	 * @return the physical memory in bytes or <code>-1</code> if the VM does not tell it.
+	 */
+	@SuppressWarnings("restriction")
+	private static long getPhysicalMemory() {
+		OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+		if (os instanceof com.sun.management.OperatingSystemMXBean) {
+			return ((com.sun.management.OperatingSystemMXBean)os).getTotalPhysicalMemorySize();
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Class data sharing archive of an installation.
+ * <p>
+ * The first eclipse process launched on an installation dumps the classes it has loaded in an archive when
+ * it exits. The next processes map this archive instead of loading, parsing and verifying these classes
+ * again. The archive is named after the installed bundle set and the launcher configuration, so that a new
+ * one is dumped as soon as the installation changes.
+ * </p>
+ * <p>
+ * Dynamic archives require Java 13 or later. The VM options are ignored by older VMs, and a VM that can not
+ * map the archive runs without it.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class ClassDataSharing {
+
+	/**
+	 * Folder of the installation metadata holding the archives.
+	 */
+	static final String CDS_FOLDER = "cds"; //$NON-NLS-1$
+
+	static final String ARCHIVE_EXTENSION = ".jsa"; //$NON-NLS-1$
+
+	private static final String IGNORE_UNRECOGNIZED_OPT = "-XX:+IgnoreUnrecognizedVMOptions"; //$NON-NLS-1$
+
+	private static final String SHARED_ARCHIVE_FILE_OPT = "-XX:SharedArchiveFile="; //$NON-NLS-1$
+
+	private static final String ARCHIVE_AT_EXIT_OPT = "-XX:ArchiveClassesAtExit="; //$NON-NLS-1$
+
+	/**
+	 * Folder holding the archives.
+	 */
+	private final File folder;
+
+	/**
+	 * Archive matching the current state of the installation.
+	 */
+	private final File archive;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param folder
+	 *            folder holding the archives.
+	 * @param key
+	 *            fingerprint of the installed bundle set and of the launcher configuration.
+	 */
+	ClassDataSharing(File folder, String key) {
+		this.folder = folder;
+		this.archive = new File(folder, key + ARCHIVE_EXTENSION);
+	}
+
+	/**
+	 * Gets the archive matching the current state of the installation.
+	 * 
+	 * @return the archive, which may not exist yet.
+	 */
+	File getArchive() {
+		return archive;
+	}
+
+	/**
+	 * Adds the VM arguments mapping the archive if it exists.
+	 * 
+	 * @param vmArgs
+	 *            the VM arguments of the eclipse process.
+	 * @return <code>true</code> if the archive exists and has been added.
+	 */
+	boolean addSharedArchiveArguments(List<String> vmArgs) {
+		if (!archive.isFile()) {
+			return false;
+		}
+		vmArgs.add(IGNORE_UNRECOGNIZED_OPT);
+		vmArgs.add(SHARED_ARCHIVE_FILE_OPT + archive.getAbsolutePath());
+		return true;
+	}
+
+	/**
+	 * Adds the VM arguments dumping the loaded classes in a new archive when the eclipse process exits. The
+	 * archive is dumped in a temporary file so that concurrent processes never map a partial archive.
+	 * 
+	 * @param vmArgs
+	 *            the VM arguments of the eclipse process.
+	 * @return the temporary file the archive will be dumped in, to {@link #publish(File) publish} once the
+	 *         process has exited.
+	 * @throws IOException
+	 *             if the temporary file can not be created.
+	 */
+	File addDumpArguments(List<String> vmArgs) throws IOException {
+		folder.mkdirs();
+		File dump = File.createTempFile(archive.getName(), ".tmp", folder); //$NON-NLS-1$
+		// Only the name is reserved, the VM creates the file when it exits.
+		dump.delete();
+		vmArgs.add(IGNORE_UNRECOGNIZED_OPT);
+		vmArgs.add(ARCHIVE_AT_EXIT_OPT + dump.getAbsolutePath());
+		return dump;
+	}
+
+	/**
+	 * Makes a dumped archive the archive of the installation and deletes the archives of its previous
+	 * states.
+	 * 
+	 * @param dump
+	 *            the file the archive has been dumped in.
+	 * @return <code>true</code> if an archive has been published, <code>false</code> if the VM has not dumped
+	 *         any.
+	 */
+	boolean publish(File dump) {
+		if (!dump.isFile() || dump.length() == 0) {
+			dump.delete();
+			return false;
+		}
+		try {
+			Files.move(dump.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			dump.delete();
+			return false;
+		}
+		File[] staleArchives = folder.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.getName().endsWith(ARCHIVE_EXTENSION) && !file.equals(archive);
+			}
+		});
+		if (staleArchives != null) {
+			for (File staleArchive : staleArchives) {
+				staleArchive.delete();
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Frozen configuration area of an installation.
+ * <p>
+ * The snapshot is a copy of the configuration area of the installation without its caches. It is warmed up
+ * by a first eclipse process that resolves the bundles and builds the extension registry cache in it, then
+ * frozen: the next processes use it read-only and start from the resolved framework state and the registry
+ * cache. The snapshot is named after the installed bundle set, so that it is discarded as soon as the
+ * installation changes.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class ConfigurationSnapshot {
+
+	/**
+	 * Folder of the installation metadata holding the snapshots.
+	 */
+	static final String SNAPSHOTS_FOLDER = "configuration"; //$NON-NLS-1$
+
+	/**
+	 * VM argument making the configuration area of an eclipse process read-only.
+	 */
+	static final String READ_ONLY_ARG = "-Dosgi.configuration.area.readOnly=true"; //$NON-NLS-1$
+
+	/**
+	 * Name of the configuration area of an eclipse installation.
+	 */
+	private static final String CONFIGURATION = "configuration"; //$NON-NLS-1$
+
+	private static final String CONFIG_INI = "config.ini"; //$NON-NLS-1$
+
+	private static final String CONFIG_DIR_VARIABLE = "@config.dir"; //$NON-NLS-1$
+
+	/**
+	 * Caches of the configuration area, built by the warm-up process.
+	 */
+	private static final Set<String> CACHES = new HashSet<String>(Arrays.asList(
+			"org.eclipse.osgi", "org.eclipse.core.runtime")); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static final String WARMING_SUFFIX = ".warming"; //$NON-NLS-1$
+
+	/**
+	 * Folder holding the snapshots of the installation.
+	 */
+	private final File snapshotsFolder;
+
+	/**
+	 * Configuration area of the installation.
+	 */
+	private final File configuration;
+
+	/**
+	 * Frozen snapshot matching the current bundle set.
+	 */
+	private final File location;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param snapshotsFolder
+	 *            folder holding the snapshots.
+	 * @param eclipseFolder
+	 *            folder of the installation holding the eclipse executable.
+	 * @param bundlesFingerprint
+	 *            fingerprint of the installed bundle set.
+	 */
+	ConfigurationSnapshot(File snapshotsFolder, File eclipseFolder, String bundlesFingerprint) {
+		this.snapshotsFolder = snapshotsFolder;
+		this.configuration = new File(eclipseFolder, CONFIGURATION);
+		this.location = new File(snapshotsFolder, bundlesFingerprint);
+	}
+
+	/**
+	 * Gets the frozen snapshot matching the current bundle set.
+	 * 
+	 * @return the frozen snapshot, which may not exist yet.
+	 */
+	File getLocation() {
+		return location;
+	}
+
+	/**
+	 * Checks whether the snapshot has been warmed up and frozen.
+	 * 
+	 * @return <code>true</code> if the snapshot can be used read-only.
+	 */
+	boolean isFrozen() {
+		return location.isDirectory();
+	}
+
+	/**
+	 * Creates a private copy of the configuration area of the installation, to be warmed up by an eclipse
+	 * process then {@link #freeze(File) frozen}.
+	 * 
+	 * @return the configuration area to warm up.
+	 * @throws IOException
+	 *             if the configuration area can not be copied.
+	 */
+	File prepare() throws IOException {
+		snapshotsFolder.mkdirs();
+		final Path target = Files.createTempDirectory(snapshotsFolder.toPath(), location.getName()
+				+ WARMING_SUFFIX);
+		final Path source = configuration.toPath();
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if (dir.getParent() != null && dir.getParent().equals(source)
+						&& CACHES.contains(dir.getFileName().toString())) {
+					return FileVisitResult.SKIP_SUBTREE;
+				}
+				Files.createDirectories(target.resolve(source.relativize(dir)));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (!file.getFileName().toString().endsWith(".log")) { //$NON-NLS-1$
+					Files.copy(file, target.resolve(source.relativize(file)));
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		resolveConfigDir(target.resolve(CONFIG_INI).toFile());
+		return target.toFile();
+	}
+
+	/**
+	 * Freezes a warmed up configuration area and deletes the snapshots of the previous bundle sets.
+	 * 
+	 * @param warmedUp
+	 *            the configuration area returned by {@link #prepare()}.
+	 * @return <code>true</code> if the snapshot has been frozen, <code>false</code> if the configuration area
+	 *         has not been warmed up or another process has frozen a snapshot first.
+	 */
+	boolean freeze(File warmedUp) {
+		boolean frozen = false;
+		if (new File(warmedUp, "org.eclipse.osgi").isDirectory()) { //$NON-NLS-1$
+			try {
+				Files.move(warmedUp.toPath(), location.toPath(), StandardCopyOption.ATOMIC_MOVE);
+				frozen = true;
+			} catch (IOException e) {
+				// Another process has been faster.
+			}
+		}
+		if (!frozen) {
+			delete(warmedUp);
+		}
+		File[] snapshots = snapshotsFolder.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isDirectory() && !file.equals(location)
+						&& !file.getName().startsWith(location.getName() + WARMING_SUFFIX);
+			}
+		});
+		if (snapshots != null) {
+			for (File snapshot : snapshots) {
+				delete(snapshot);
+			}
+		}
+		return frozen;
+	}
+
+	/**
+	 * Replaces the references to the configuration area in the given config.ini by the configuration area of
+	 * the installation, since the snapshot is not located in the installation.
+	 * 
+	 * @param configIni
+	 *            the config.ini of the snapshot.
+	 * @throws IOException
+	 *             if the file can not be rewritten.
+	 */
+	private void resolveConfigDir(File configIni) throws IOException {
+		if (!configIni.isFile()) {
+			return;
+		}
+		Properties properties = new Properties();
+		InputStream input = new FileInputStream(configIni);
+		try {
+			properties.load(input);
+		} finally {
+			input.close();
+		}
+		String configDir = configuration.getAbsoluteFile().toURI().getPath();
+		if (configDir.endsWith("/")) { //$NON-NLS-1$
+			configDir = configDir.substring(0, configDir.length() - 1);
+		}
+		for (Entry<Object, Object> entry : properties.entrySet()) {
+			entry.setValue(((String)entry.getValue()).replace(CONFIG_DIR_VARIABLE, configDir));
+		}
+		OutputStream output = new FileOutputStream(configIni);
+		try {
+			properties.store(output, null);
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Deletes a folder and its content, ignoring failures.
+	 * 
+	 * @param folder
+	 *            the folder to delete.
+	 */
+	private static void delete(File folder) {
+		try {
+			Files.walkFileTree(folder.toPath(), new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					Files.deleteIfExists(file);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+					Files.deleteIfExists(dir);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			// Deleted on next freeze.
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol;
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol.OutputHandler;
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol.State;
+import org.eclipse.jgit.util.io.ThrowingPrintWriter;
+
+/**
+ * Forwards logical applications to a running
+ * {@link org.eclipse.emf.compare.git.pgm.internal.app.LogicalDaemonApplication}.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class DaemonClient {
+
+	/**
+	 * Time to wait for a connection to a daemon in milliseconds.
+	 */
+	private static final int CONNECT_TIMEOUT = 2000;
+
+	/**
+	 * Time after which a starting daemon that has not published its state is considered dead.
+	 */
+	private static final long STARTING_TIMEOUT = TimeUnit.MINUTES.toMillis(2);
+
+	private static final String UTF_8 = "UTF-8"; //$NON-NLS-1$
+
+	/**
+	 * State file of the daemon.
+	 */
+	private final File stateFile;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param stateFile
+	 *            state file of the daemon.
+	 */
+	DaemonClient(File stateFile) {
+		this.stateFile = stateFile;
+	}
+
+	/**
+	 * Runs a logical application in the daemon.
+	 * 
+	 * @param application
+	 *            the identifier of the logical application.
+	 * @param arguments
+	 *            the arguments of the logical application.
+	 * @param out
+	 *            the writer receiving the output of the application.
+	 * @param displayErrors
+	 *            <code>true</code> to write the error output of the application to <code>out</code>,
+	 *            <code>false</code> to discard it.
+	 * @return the exit code of the application or <code>null</code> if no daemon is running.
+	 * @throws IOException
+	 *             if the daemon fails while running the application.
+	 */
+	Integer execute(String application, List<String> arguments, ThrowingPrintWriter out,
+			boolean displayErrors) throws IOException {
+		State state = DaemonProtocol.readState(stateFile);
+		if (state == null) {
+			return null;
+		}
+		Socket socket = new Socket();
+		try {
+			try {
+				socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), state.getPort()),
+						CONNECT_TIMEOUT);
+			} catch (IOException e) {
+				// State file left by a daemon that did not exit cleanly.
+				stateFile.delete();
+				return null;
+			}
+			DataOutputStream request = new DataOutputStream(new BufferedOutputStream(socket
+					.getOutputStream()));
+			DaemonProtocol.writeRequest(request, state.getToken(), application, arguments);
+
+			final LineWriter stdout = new LineWriter(out);
+			final LineWriter stderr;
+			if (displayErrors) {
+				stderr = stdout;
+			} else {
+				stderr = null;
+			}
+			DataInputStream response = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			int code = DaemonProtocol.readResponse(response, new OutputHandler() {
+				public void handle(byte channel, byte[] bytes) throws IOException {
+					if (channel == DaemonProtocol.STDOUT) {
+						stdout.write(bytes);
+					} else if (stderr != null) {
+						stderr.write(bytes);
+					}
+				}
+			});
+			stdout.close();
+			return Integer.valueOf(code);
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Checks whether a launcher is already starting the daemon.
+	 * 
+	 * @return <code>true</code> if the daemon is being started.
+	 */
+	boolean isStarting() {
+		File marker = DaemonProtocol.getStartingMarker(stateFile);
+		return marker.exists() && System.currentTimeMillis() - marker.lastModified() < STARTING_TIMEOUT;
+	}
+
+	/**
+	 * Records that this launcher starts the daemon.
+	 * 
+	 * @return <code>true</code> if this launcher is the one that should start the daemon.
+	 */
+	boolean markStarting() {
+		File marker = DaemonProtocol.getStartingMarker(stateFile);
+		marker.getParentFile().mkdirs();
+		if (!isStarting()) {
+			// Stale marker of a daemon that failed to start.
+			marker.delete();
+		}
+		try {
+			return marker.createNewFile();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Splits the output of the daemon in lines, like the output of a spawned application is read.
+	 */
+	private static final class LineWriter {
+
+		private final ThrowingPrintWriter out;
+
+		private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+
+		LineWriter(ThrowingPrintWriter out) {
+			this.out = out;
+		}
+
+		void write(byte[] bytes) throws IOException {
+			for (byte b : bytes) {
+				if (b == '\n') {
+					flushLine();
+				} else {
+					pending.write(b);
+				}
+			}
+		}
+
+		void close() throws IOException {
+			if (pending.size() > 0) {
+				flushLine();
+			}
+		}
+
+		private void flushLine() throws IOException {
+			String line = pending.toString(UTF_8);
+			if (line.endsWith("\r")) { //$NON-NLS-1$
+				line = line.substring(0, line.length() - 1);
+			}
+			out.println(line);
+			pending.reset();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.emf.compare.git.pgm.internal.app.DaemonProtocol;
+import org.eclipse.jgit.util.io.ThrowingPrintWriter;
+
+/**
+ * Pool of {@link org.eclipse.emf.compare.git.pgm.internal.app.LogicalDaemonApplication} started in advance,
+ * each one with its own workspace and state file.
+ * <p>
+ * A request is handed to the first idle daemon of the pool. A launcher claims a daemon by locking a file next
+ * to its state file for the duration of the request, so that concurrent launchers use different daemons. The
+ * slots whose daemon has exited, after its idle timeout or because it has been recycled, are refilled by the
+ * launchers.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class DaemonPool {
+
+	/**
+	 * State files of the daemons of the pool, one per slot.
+	 */
+	private final List<File> stateFiles;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param stateFiles
+	 *            the state files of the daemons of the pool, one per slot.
+	 */
+	DaemonPool(List<File> stateFiles) {
+		this.stateFiles = stateFiles;
+	}
+
+	/**
+	 * Runs a logical application in an idle daemon of the pool.
+	 * 
+	 * @param application
+	 *            the identifier of the logical application.
+	 * @param arguments
+	 *            the arguments of the logical application.
+	 * @param out
+	 *            the writer receiving the output of the application.
+	 * @param displayErrors
+	 *            <code>true</code> to write the error output of the application to <code>out</code>,
+	 *            <code>false</code> to discard it.
+	 * @return the exit code of the application or <code>null</code> if no daemon of the pool is idle.
+	 * @throws IOException
+	 *             if the daemon fails while running the application.
+	 */
+	Integer execute(String application, List<String> arguments, ThrowingPrintWriter out,
+			boolean displayErrors) throws IOException {
+		for (File stateFile : stateFiles) {
+			if (!stateFile.isFile()) {
+				continue;
+			}
+			FileChannel claim = FileLocks.tryLock(DaemonProtocol.getClaimFile(stateFile));
+			if (claim == null) {
+				// Busy with the request of another launcher.
+				continue;
+			}
+			try {
+				Integer returnValue = new DaemonClient(stateFile).execute(application, arguments, out,
+						displayErrors);
+				if (returnValue != null) {
+					return returnValue;
+				}
+			} finally {
+				claim.close();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the slots of the pool without daemon, and records that the caller starts their daemons.
+	 * 
+	 * @return the indexes of the slots whose daemon should be started by the caller.
+	 */
+	List<Integer> markEmptySlots() {
+		List<Integer> emptySlots = new ArrayList<Integer>();
+		for (int slot = 0; slot < stateFiles.size(); slot++) {
+			File stateFile = stateFiles.get(slot);
+			DaemonClient client = new DaemonClient(stateFile);
+			if (!stateFile.isFile() && !client.isStarting() && !isAlive(stateFile) && client.markStarting()) {
+				emptySlots.add(Integer.valueOf(slot));
+			}
+		}
+		return emptySlots;
+	}
+
+	/**
+	 * Checks whether the process of a daemon is still alive, starting or exiting.
+	 * 
+	 * @param stateFile
+	 *            the state file of the daemon.
+	 * @return <code>true</code> if a daemon process holds the lock file of the state file.
+	 */
+	private static boolean isAlive(File stateFile) {
+		File lockFile = DaemonProtocol.getLockFile(stateFile);
+		if (!lockFile.isFile()) {
+			return false;
+		}
+		try {
+			FileChannel channel = FileLocks.tryLock(lockFile);
+			if (channel == null) {
+				return true;
+			}
+			channel.close();
+			return false;
+		} catch (IOException e) {
+			return true;
+		}
+	}
+}
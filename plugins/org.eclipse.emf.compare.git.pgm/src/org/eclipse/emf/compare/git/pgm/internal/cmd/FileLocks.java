@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Locks on files shared by the processes of a machine. A lock is held as long as the returned channel is
+ * open.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class FileLocks {
+
+	private FileLocks() {
+	}
+
+	/**
+	 * Tries to lock a file.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @return the channel holding the lock, to be closed to release it, or <code>null</code> if the file is
+	 *         locked by another process.
+	 * @throws IOException
+	 *             if the file can not be opened.
+	 */
+	static FileChannel tryLock(File file) throws IOException {
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+		FileLock lock = null;
+		try {
+			lock = channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			// Locked by this process.
+		} finally {
+			if (lock == null) {
+				channel.close();
+			}
+		}
+		if (lock == null) {
+			return null;
+		}
+		return channel;
+	}
+
+	/**
+	 * Locks a file, waiting for the other processes to release it.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @param shared
+	 *            <code>true</code> for a lock that other processes can share, <code>false</code> for an
+	 *            exclusive lock.
+	 * @return the channel holding the lock, to be closed to release it.
+	 * @throws IOException
+	 *             if the file can not be opened or locked.
+	 */
+	static FileChannel lock(File file, boolean shared) throws IOException {
+		file.getAbsoluteFile().getParentFile().mkdirs();
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		boolean locked = false;
+		try {
+			channel.lock(0L, Long.MAX_VALUE, shared);
+			locked = true;
+		} finally {
+			if (!locked) {
+				channel.close();
+			}
+		}
+		return channel;
+	}
+}
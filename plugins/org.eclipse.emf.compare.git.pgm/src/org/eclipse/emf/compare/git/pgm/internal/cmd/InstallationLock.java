@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Lock of an installation shared by the commands of a machine.
+ * <p>
+ * The commands using an installation hold a shared lock for as long as they run, so that any number of them
+ * can use it at the same time. A command provisioning the installation holds an exclusive lock, waiting for
+ * the other commands to be done with it. A shared lock can not be upgraded in place: it is released before
+ * the exclusive one is acquired, so another command may provision the installation in between. The state of
+ * the installation has thus to be checked again once the exclusive lock is acquired.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class InstallationLock {
+
+	/**
+	 * Name of the lock file in the metadata folder of an installation.
+	 */
+	static final String LOCK_FILE = "installation.lock"; //$NON-NLS-1$
+
+	/**
+	 * The lock file.
+	 */
+	private final File file;
+
+	/**
+	 * Channel holding the lock, <code>null</code> if the lock is not held.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Whether the held lock is shared.
+	 */
+	private boolean shared;
+
+	/**
+	 * Time spent waiting for the locks, in milliseconds.
+	 */
+	private long waitTime;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param metadataFolder
+	 *            the metadata folder of the installation.
+	 */
+	InstallationLock(File metadataFolder) {
+		this.file = new File(metadataFolder, LOCK_FILE);
+	}
+
+	/**
+	 * Acquires the lock, waiting for the other commands to release it if needed.
+	 * 
+	 * @param sharedLock
+	 *            <code>true</code> to use the installation, <code>false</code> to provision it.
+	 * @throws IOException
+	 *             if the lock file can not be locked.
+	 */
+	void acquire(boolean sharedLock) throws IOException {
+		if (channel != null && shared == sharedLock) {
+			return;
+		}
+		release();
+		long start = System.currentTimeMillis();
+		channel = FileLocks.lock(file, sharedLock);
+		shared = sharedLock;
+		waitTime += System.currentTimeMillis() - start;
+	}
+
+	/**
+	 * Gets the time spent waiting for the locks.
+	 * 
+	 * @return the time in milliseconds.
+	 */
+	long getWaitTime() {
+		return waitTime;
+	}
+
+	/**
+	 * Releases the lock if it is held.
+	 */
+	void release() {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// The lock is released when the process exits.
+		}
+		channel = null;
+	}
+}
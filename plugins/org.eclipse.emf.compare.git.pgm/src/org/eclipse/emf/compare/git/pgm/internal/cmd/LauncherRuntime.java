@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collection;
+
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.equinox.p2.core.IProvisioningAgent;
+import org.eclipse.equinox.p2.engine.IProfile;
+import org.eclipse.equinox.p2.engine.IProfileRegistry;
+import org.eclipse.equinox.p2.metadata.Version;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.oomph.p2.Requirement;
+import org.eclipse.osgi.service.datalocation.Location;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceReference;
+
+/**
+ * The runtime of the launcher, able to run the logical applications itself when it holds everything the user
+ * setup model requires.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class LauncherRuntime {
+
+	private LauncherRuntime() {
+	}
+
+	/**
+	 * Checks that the launcher runtime satisfies all the given requirements.
+	 * 
+	 * @param requirements
+	 *            the requirements of the P2 tasks of the user setup model.
+	 * @return <code>true</code> if every requirement is satisfied by a running bundle or by an installable
+	 *         unit of the launcher profile.
+	 */
+	static boolean provides(Collection<Requirement> requirements) {
+		IProfile profile = null;
+		boolean profileLoaded = false;
+		for (Requirement requirement : requirements) {
+			if (!ProfileDelta.IU_NAMESPACE.equals(requirement.getNamespace())) {
+				return false;
+			}
+			if (isRunning(requirement)) {
+				continue;
+			}
+			if (!profileLoaded) {
+				profile = getSelfProfile();
+				profileLoaded = true;
+			}
+			if (profile == null || !ProfileDelta.isInstalled(profile, requirement)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Uses the given workspace as the workspace of the launcher runtime.
+	 * <p>
+	 * The launcher is started without instance area (<code>-data @noDefault</code>), so that the concurrent
+	 * commands do not contend for a shared workspace lock. The instance area is then set and locked here, to
+	 * the workspace leased by the command, only when the application runs in the launcher.
+	 * </p>
+	 * 
+	 * @param workspace
+	 *            the workspace of the installation.
+	 * @return <code>true</code> if the launcher runtime uses the given workspace, <code>false</code> if it
+	 *         already uses another one.
+	 */
+	static boolean useWorkspace(File workspace) {
+		Location instanceLocation = Platform.getInstanceLocation();
+		if (instanceLocation == null) {
+			return false;
+		}
+		try {
+			if (instanceLocation.isSet()) {
+				URL url = instanceLocation.getURL();
+				return url != null && new File(url.toURI()).getCanonicalFile().equals(
+						workspace.getCanonicalFile());
+			}
+			return instanceLocation.set(workspace.toURI().toURL(), true);
+		} catch (IOException e) {
+			// Locked by another process.
+			return false;
+		} catch (IllegalStateException e) {
+			// Set concurrently.
+			return false;
+		} catch (URISyntaxException e) {
+			return false;
+		} catch (IllegalArgumentException e) {
+			// Not a file URL.
+			return false;
+		}
+	}
+
+	/**
+	 * Checks whether a bundle of the launcher runtime satisfies the given requirement.
+	 * 
+	 * @param requirement
+	 *            the requirement.
+	 * @return <code>true</code> if a running bundle satisfies the requirement.
+	 */
+	private static boolean isRunning(Requirement requirement) {
+		Bundle[] bundles = Platform.getBundles(requirement.getName(), null);
+		if (bundles != null) {
+			VersionRange range = ProfileDelta.getRange(requirement);
+			for (Bundle bundle : bundles) {
+				if (range.isIncluded(Version.create(bundle.getVersion().toString()))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the p2 profile of the launcher.
+	 * 
+	 * @return the p2 profile of the launcher or <code>null</code> if it has none, for example when launched
+	 *         from an IDE.
+	 */
+	private static IProfile getSelfProfile() {
+		Bundle bundle = FrameworkUtil.getBundle(LauncherRuntime.class);
+		if (bundle == null) {
+			return null;
+		}
+		BundleContext context = bundle.getBundleContext();
+		if (context == null) {
+			return null;
+		}
+		ServiceReference<IProvisioningAgent> reference = context.getServiceReference(IProvisioningAgent.class);
+		if (reference == null) {
+			return null;
+		}
+		try {
+			IProvisioningAgent agent = context.getService(reference);
+			if (agent == null) {
+				return null;
+			}
+			IProfileRegistry registry = (IProfileRegistry)agent.getService(IProfileRegistry.SERVICE_NAME);
+			if (registry == null) {
+				return null;
+			}
+			return registry.getProfile(IProfileRegistry.SELF);
+		} finally {
+			context.ungetService(reference);
+		}
+	}
+}
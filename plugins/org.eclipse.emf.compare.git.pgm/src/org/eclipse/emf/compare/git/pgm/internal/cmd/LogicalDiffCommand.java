@@ -10,25 +10,36 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.cmd;
 
-import static org.eclipse.emf.compare.git.pgm.internal.Options.SHOW_STACK_TRACE_OPT;
-
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.app.AbstractLogicalApplication;
+import org.eclipse.emf.compare.git.pgm.internal.app.LogicalDiffApplication;
 import org.eclipse.emf.compare.git.pgm.internal.args.PathFilterHandler;
 import org.eclipse.emf.compare.git.pgm.internal.args.RefOptionHandler;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
-import org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitPreparation;
+import org.eclipse.jgit.api.DiffCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.AbstractTreeIterator;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
-import org.eclipse.oomph.setup.util.OS;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
@@ -39,7 +50,7 @@ import org.kohsuke.args4j.Option;
  * </p>
  * <h4>Synopsis</h4>
  * <p>
- * logicaldiff &lt;setup&gt; [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;] &lt;commit&gt;
+ * logicaldiff &lt;setup&gt; [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;] [--daemon] &lt;commit&gt;
  * [&lt;compareWithCommit&gt;] [ -- &lt;paths...&gt;]
  * </p>
  * <h4>Description</h4>
@@ -51,7 +62,7 @@ import org.kohsuke.args4j.Option;
  * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
  */
 @SuppressWarnings("restriction")
-public class LogicalDiffCommand extends AbstractLogicalCommand {
+public class LogicalDiffCommand extends AbstractLogicalApplicationCommand {
 
 	/**
 	 * Command name.
@@ -76,6 +87,29 @@ public class LogicalDiffCommand extends AbstractLogicalCommand {
 	@Option(name = "--", metaVar = "<path...>", multiValued = false, handler = PathFilterHandler.class, usage = "This is used to limit the diff to the named paths (you can give directory names and get diff for all files under them).")
 	private PathFilter treeFilter;
 
+	/**
+	 * Resolved commit from which the differences are displayed, <code>null</code> if the repository has no
+	 * commit.
+	 */
+	private ObjectId oldCommit;
+
+	/**
+	 * Resolved commit to compare with, <code>null</code> if the repository has no commit.
+	 */
+	private ObjectId newCommit;
+
+	/**
+	 * Entries of the diff that are not logical models, displayed by the launcher. <code>null</code> if the
+	 * diff has not been computed by the launcher.
+	 */
+	private List<DiffEntry> textEntries;
+
+	/**
+	 * Entries of the diff that may be logical models, displayed by the logical diff application.
+	 * <code>null</code> if the diff has not been computed by the launcher.
+	 */
+	private List<DiffEntry> modelEntries;
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -85,96 +119,221 @@ public class LogicalDiffCommand extends AbstractLogicalCommand {
 	 */
 	@Override
 	protected Integer internalRun() throws Die {
-
-		OS os = getPerformer().getOS();
-
-		if (!os.isCurrent()) {
-			return Returns.ERROR.code();
+		if (modelEntries == null) {
+			return launchApplication();
 		}
-
 		try {
-			out().println("Launching the installed product...");
+			if (modelEntries.isEmpty() && textEntries.isEmpty()) {
+				out().println("No difference to display."); //$NON-NLS-1$
+			} else if (!textEntries.isEmpty()) {
+				printTextDiff();
+			}
+			out().flush();
 		} catch (IOException e) {
 			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
 		}
-
-		String setupFileAbsolutePath = this.getSetupFile().getAbsolutePath();
-		String setupFileBasePath = Paths.get(setupFileAbsolutePath).getParent().toString();
-
-		String eclipseDir = os.getEclipseDir();
-		String eclipseExecutable = os.getEclipseExecutable();
-		File eclipseFile = EMFCompareGitPGMUtil
-				.toFileWithAbsolutePath(setupFileBasePath, Paths.get(
-						getPerformer().getInstallationLocation().getPath(), eclipseDir, eclipseExecutable)
-						.toString());
-
-		List<String> command = new ArrayList<String>();
-		command.add(eclipseFile.toString());
-		command.add("-nosplash"); //$NON-NLS-1$
-		command.add("--launcher.suppressErrors"); //$NON-NLS-1$
-		command.add("-application"); //$NON-NLS-1$
-		command.add("emf.compare.git.logicaldiff"); //$NON-NLS-1$
-
-		// Propagates the show stack trace option to the application.
-		if (isShowStackTrace()) {
-			command.add(SHOW_STACK_TRACE_OPT);
+		if (modelEntries.isEmpty()) {
+			return Returns.COMPLETE.code();
 		}
+		return launchApplication();
+	}
 
-		command.add(getRepository().getDirectory().getAbsolutePath());
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Runs the JGit diff in the launcher and sorts its entries between the text files and the files that may
+	 * be logical models.
+	 * </p>
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#inspectRepository()
+	 */
+	@Override
+	protected void inspectRepository() throws Die {
+		Repository repository = getRepository();
+		try {
+			ObjectId head = repository.resolve(Constants.HEAD);
+			oldCommit = commit != null ? commit : head;
+			newCommit = commitWith != null ? commitWith : head;
+			if (oldCommit == null || newCommit == null) {
+				return;
+			}
+			DiffCommand diffCommand = Git.wrap(repository).diff().setShowNameAndStatusOnly(true)
+					.setOldTree(getTreeIterator(repository, oldCommit)).setNewTree(
+							getTreeIterator(repository, newCommit));
+			if (treeFilter != null) {
+				diffCommand.setPathFilter(treeFilter);
+			}
+			ModelFileDetector detector = new ModelFileDetector(repository);
+			List<DiffEntry> texts = new ArrayList<DiffEntry>();
+			List<DiffEntry> models = new ArrayList<DiffEntry>();
+			for (DiffEntry entry : diffCommand.call()) {
+				if (detector.isModel(entry.getOldPath(), entry.getOldId().toObjectId(), entry.getOldMode())
+						|| detector.isModel(entry.getNewPath(), entry.getNewId().toObjectId(), entry
+								.getNewMode())) {
+					models.add(entry);
+				} else {
+					texts.add(entry);
+				}
+			}
+			textEntries = texts;
+			modelEntries = models;
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		} catch (GitAPIException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		}
+	}
 
-		command.add(setupFileAbsolutePath);
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The installation is not needed when the diff computed by {@link #inspectRepository()} has no file that
+	 * may be a logical model.
+	 * </p>
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#needsInstallation()
+	 */
+	@Override
+	protected boolean needsInstallation() {
+		return modelEntries == null || !modelEntries.isEmpty();
+	}
 
-		if (commit != null) {
-			command.add(commit.name());
-		} else {
-			command.add("HEAD"); //$NON-NLS-1$
-		}
-		if (commitWith != null) {
-			command.add(commitWith.name());
-		} else {
-			command.add("HEAD"); //$NON-NLS-1$
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The logical diff application only displays the entries that may be logical models, the launcher has
+	 * displayed the others.
+	 * </p>
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#prepareGit()
+	 */
+	@Override
+	protected GitPreparation prepareGit() throws IOException {
+		if (oldCommit == null || newCommit == null) {
+			return null;
 		}
+		String filteredPath = null;
 		if (treeFilter != null) {
-			command.add("--"); //$NON-NLS-1$
-			command.add(treeFilter.getPath());
+			filteredPath = treeFilter.getPath();
 		}
-
-		if (getPerformer().getWorkspaceLocation() != null) {
-			command.add("-data"); //$NON-NLS-1$
-			command.add(getPerformer().getWorkspaceLocation().toString());
+		if (modelEntries != null) {
+			return GitPreparation.forDiff(getRepository(), oldCommit, newCommit, filteredPath, modelEntries);
 		}
+		return GitPreparation.forDiff(getRepository(), oldCommit, newCommit, filteredPath);
+	}
 
-		command.add("-vmargs"); //$NON-NLS-1$
-		command.add("-D" + PROP_SETUP_CONFIRM_SKIP + "=true"); //$NON-NLS-1$ //$NON-NLS-2$
-		command.add("-D" + PROP_SETUP_OFFLINE_STARTUP + "=" + false); //$NON-NLS-1$ //$NON-NLS-2$
-		command.add("-D" + PROP_SETUP_MIRRORS_STARTUP + "=" + true); //$NON-NLS-1$ //$NON-NLS-2$
-		//command.add("-Xdebug"); //$NON-NLS-1$
-		//command.add("-Xrunjdwp:transport=dt_socket,server=y,suspend=n,address=8123"); //$NON-NLS-1$
-
-		ProcessBuilder builder = new ProcessBuilder(command);
+	/**
+	 * Displays the textual differences of the files that are not logical models. The output of the formatter
+	 * is written as it is, like <code>git diff</code> does, so that the contents of the files keep the
+	 * encoding of the repository.
+	 * 
+	 * @throws IOException
+	 *             if the differences can not be computed or displayed.
+	 */
+	private void printTextDiff() throws IOException {
+		ByteArrayOutputStream diff = new ByteArrayOutputStream();
+		DiffFormatter formatter = new DiffFormatter(diff);
+		try {
+			formatter.setRepository(getRepository());
+			formatter.format(textEntries);
+			formatter.flush();
+		} finally {
+			formatter.release();
+		}
+		write(diff.toByteArray());
+	}
 
-		Process process;
+	/**
+	 * Gets the tree iterator of a commit.
+	 * 
+	 * @param repository
+	 *            the repository containing the commit.
+	 * @param id
+	 *            the commit.
+	 * @return the tree iterator of the commit.
+	 * @throws IOException
+	 *             if the commit can not be read.
+	 */
+	private static AbstractTreeIterator getTreeIterator(Repository repository, ObjectId id)
+			throws IOException {
+		final CanonicalTreeParser parser = new CanonicalTreeParser();
+		final ObjectReader reader = repository.newObjectReader();
+		final RevWalk walk = new RevWalk(reader);
 		try {
-			process = builder.start();
-		} catch (IOException e) {
-			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+			parser.reset(reader, walk.parseTree(id));
+			return parser;
+		} finally {
+			walk.release();
+			reader.release();
 		}
+	}
 
-		// output both stdout and stderr data from proc to stdout of this
-		// process
-		// StreamGobbler errorGobbler = new StreamGobbler(process.getErrorStream());
-		StreamGobbler outputGobbler = new StreamGobbler(process.getInputStream());
-		// new Thread(errorGobbler).start();
-		new Thread(outputGobbler).start();
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#getApplicationId()
+	 */
+	@Override
+	protected String getApplicationId() {
+		return LogicalDiffApplication.APPLICATION_ID;
+	}
 
-		int returnValue;
-		try {
-			returnValue = process.waitFor();
-		} catch (InterruptedException e) {
-			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#getComparedCommits()
+	 */
+	@Override
+	protected List<ObjectId> getComparedCommits() {
+		if (oldCommit == null || newCommit == null) {
+			return Collections.emptyList();
+		}
+		return Arrays.asList(oldCommit, newCommit);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#getApplicationArguments()
+	 */
+	@Override
+	protected List<String> getApplicationArguments() {
+		List<String> arguments = new ArrayList<String>();
+		if (commit != null) {
+			arguments.add(commit.name());
+		} else {
+			arguments.add("HEAD"); //$NON-NLS-1$
+		}
+		if (commitWith != null) {
+			arguments.add(commitWith.name());
+		} else {
+			arguments.add("HEAD"); //$NON-NLS-1$
+		}
+		if (treeFilter != null) {
+			arguments.add("--"); //$NON-NLS-1$
+			arguments.add(treeFilter.getPath());
 		}
+		return arguments;
+	}
 
-		return Returns.valueOf(returnValue).code();
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#createApplication()
+	 */
+	@Override
+	protected AbstractLogicalApplication createApplication() {
+		return new LogicalDiffApplication();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#isErrorOutputDisplayed()
+	 */
+	@Override
+	protected boolean isErrorOutputDisplayed() {
+		return false;
 	}
 
 	// For testing purpose
@@ -192,4 +351,14 @@ public class LogicalDiffCommand extends AbstractLogicalCommand {
 		return treeFilter;
 	}
 
+	// For testing purpose
+	List<DiffEntry> getTextEntries() {
+		return textEntries;
+	}
+
+	// For testing purpose
+	List<DiffEntry> getModelEntries() {
+		return modelEntries;
+	}
+
 }
@@ -10,24 +10,32 @@
  *******************************************************************************/
 package org.eclipse.emf.compare.git.pgm.internal.cmd;
 
-import static org.eclipse.emf.compare.git.pgm.internal.Options.SHOW_STACK_TRACE_OPT;
 import static org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil.EOL;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
-import org.eclipse.emf.compare.git.pgm.Returns;
+import org.eclipse.emf.compare.git.pgm.internal.app.AbstractLogicalApplication;
+import org.eclipse.emf.compare.git.pgm.internal.app.LogicalMergeApplication;
 import org.eclipse.emf.compare.git.pgm.internal.args.RefOptionHandler;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
 import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
-import org.eclipse.emf.compare.git.pgm.internal.util.EMFCompareGitPGMUtil;
+import org.eclipse.emf.compare.git.pgm.internal.util.GitPreparation;
+import org.eclipse.emf.compare.git.pgm.internal.util.MergeResultHandler;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryState;
-import org.eclipse.oomph.setup.util.OS;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 
@@ -38,7 +46,7 @@ import org.kohsuke.args4j.Option;
  * </p>
  * <h4>Synopsis</h4>
  * <p>
- * logicalmerge [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;] &lt;setup&gt; &lt;commit&gt;
+ * logicalmerge [--show-stack-trace] [--git-dir &lt;gitDirectory&gt;] [--daemon] &lt;setup&gt; &lt;commit&gt;
  * </p>
  * <h4>Description</h4>
  * <p>
@@ -50,7 +58,7 @@ import org.kohsuke.args4j.Option;
  * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
  */
 @SuppressWarnings("restriction")
-public class LogicalMergeCommand extends AbstractLogicalCommand {
+public class LogicalMergeCommand extends AbstractLogicalApplicationCommand {
 
 	/**
 	 * Command name.
@@ -72,6 +80,12 @@ public class LogicalMergeCommand extends AbstractLogicalCommand {
 	@Option(name = "--debug", usage = "Launched the provisonned eclipse in debug mode.", aliases = {"-d" })
 	private boolean debug;
 
+	/**
+	 * Holds true if the merge is performed by JGit in the launcher, because it is already up to date, it is
+	 * a fast forward or no logical model is involved.
+	 */
+	private boolean launcherMerge;
+
 	/**
 	 * {@inheritDoc}
 	 * 
@@ -93,92 +107,217 @@ public class LogicalMergeCommand extends AbstractLogicalCommand {
 					.ready();
 		}
 
-		OS os = getPerformer().getOS();
-
-		if (!os.isCurrent()) {
-			return Returns.ERROR.code();
+		if (launcherMerge) {
+			return mergeInLauncher();
 		}
+		return launchApplication();
+	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The installation is not needed when there is nothing to merge: the commit is already reachable from
+	 * HEAD, HEAD is reachable from the commit and can be fast forwarded, or no file changed on either side
+	 * since the merge base may be a logical model.
+	 * </p>
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#needsInstallation()
+	 */
+	@Override
+	protected boolean needsInstallation() throws Die {
+		Repository repository = getRepository();
+		if (debug || repository.getRepositoryState() == RepositoryState.MERGING) {
+			return true;
+		}
 		try {
-			out().println("Launching the installed product...");
+			ObjectId head = repository.resolve(Constants.HEAD);
+			if (head == null) {
+				return true;
+			}
+			if (isReachable(repository, commit, head) || isReachable(repository, head, commit)) {
+				// Already up to date or fast forward.
+				launcherMerge = true;
+			} else {
+				ObjectId mergeBase = GitPreparation.getMergeBase(repository, head, commit);
+				if (mergeBase == null) {
+					return true;
+				}
+				ModelFileDetector detector = new ModelFileDetector(repository);
+				launcherMerge = !detector.involvesModels(mergeBase, head)
+						&& !detector.involvesModels(mergeBase, commit);
+			}
 		} catch (IOException e) {
 			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
 		}
+		return !launcherMerge;
+	}
 
-		String setupFileAbsolutePath = this.getSetupFile().getAbsolutePath();
-		String setupFileBasePath = Paths.get(setupFileAbsolutePath).getParent().toString();
-
-		String eclipseDir = os.getEclipseDir();
-		String eclipseExecutable = os.getEclipseExecutable();
-		File eclipseFile = EMFCompareGitPGMUtil
-				.toFileWithAbsolutePath(setupFileBasePath, Paths.get(
-						getPerformer().getInstallationLocation().getPath(), eclipseDir, eclipseExecutable)
-						.toString());
-
-		List<String> command = new ArrayList<String>();
-		command.add(eclipseFile.toString());
-		command.add("-nosplash"); //$NON-NLS-1$
-		command.add("--launcher.suppressErrors"); //$NON-NLS-1$
-		command.add("-application"); //$NON-NLS-1$
-		command.add("emf.compare.git.logicalmerge"); //$NON-NLS-1$
-
-		// Propagates the show stack trace option to the application.
-		if (isShowStackTrace()) {
-			command.add(SHOW_STACK_TRACE_OPT);
+	/**
+	 * Checks whether a commit is reachable from another one.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @param base
+	 *            the commit to reach.
+	 * @param tip
+	 *            the commit to walk from.
+	 * @return <code>true</code> if <code>base</code> is an ancestor of <code>tip</code> or is
+	 *         <code>tip</code>.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	private static boolean isReachable(Repository repository, ObjectId base, ObjectId tip)
+			throws IOException {
+		RevWalk walk = new RevWalk(repository);
+		try {
+			return walk.isMergedInto(walk.parseCommit(base), walk.parseCommit(tip));
+		} finally {
+			walk.release();
 		}
+	}
 
-		command.add(getRepository().getDirectory().getAbsolutePath());
-
-		command.add(setupFileAbsolutePath);
-
-		if (commit != null) {
-			command.add(commit.name());
-		} else {
-			command.add("HEAD"); //$NON-NLS-1$
+	/**
+	 * Performs the merge with JGit in the launcher, reporting it as the logical merge application does. A
+	 * fast forward updates HEAD and the work tree.
+	 * 
+	 * @return the return code of the merge.
+	 * @throws Die
+	 *             if the merge fails.
+	 */
+	private Integer mergeInLauncher() throws Die {
+		Repository repository = getRepository();
+		try {
+			ObjectId oldHead = repository.resolve(Constants.HEAD);
+			MergeCommand merge = Git.wrap(repository).merge().include(commit).setStrategy(
+					MergeStrategy.RECURSIVE);
+			if (message != null) {
+				merge.setMessage(message);
+			}
+			MergeResult result = merge.call();
+			Integer returnCode = new MergeResultHandler(repository).handle(result, oldHead,
+					MergeStrategy.RECURSIVE, out());
+			out().flush();
+			return returnCode;
+		} catch (IOException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		} catch (GitAPIException e) {
+			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
 		}
+	}
 
-		if (message != null) {
-			command.add("-m"); //$NON-NLS-1$
-			command.add(message);
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalCommand#prepareGit()
+	 */
+	@Override
+	protected GitPreparation prepareGit() throws IOException {
+		Repository repository = getRepository();
+		ObjectId commitToMerge = commit;
+		if (commitToMerge == null) {
+			commitToMerge = repository.resolve(Constants.HEAD);
 		}
-
-		if (getPerformer().getWorkspaceLocation() != null) {
-			command.add("-data"); //$NON-NLS-1$
-			command.add(getPerformer().getWorkspaceLocation().toString());
+		if (commitToMerge == null) {
+			return null;
 		}
+		return GitPreparation.forMerge(repository, commitToMerge);
+	}
 
-		command.add("-vmargs"); //$NON-NLS-1$
-		command.add("-D" + PROP_SETUP_CONFIRM_SKIP + "=true"); //$NON-NLS-1$ //$NON-NLS-2$
-		command.add("-D" + PROP_SETUP_OFFLINE_STARTUP + "=" + false); //$NON-NLS-1$ //$NON-NLS-2$
-		command.add("-D" + PROP_SETUP_MIRRORS_STARTUP + "=" + true); //$NON-NLS-1$ //$NON-NLS-2$
-		if (debug) {
-			command.add("-Xdebug"); //$NON-NLS-1$
-			command.add("-Xrunjdwp:transport=dt_socket,server=y,suspend=n,address=8123"); //$NON-NLS-1$
-		}
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#getApplicationId()
+	 */
+	@Override
+	protected String getApplicationId() {
+		return LogicalMergeApplication.APPLICATION_ID;
+	}
 
-		ProcessBuilder builder = new ProcessBuilder(command);
-		Process process;
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The models of a merge are compared on three sides: the merge base, HEAD and the commit to merge.
+	 * </p>
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#getComparedCommits()
+	 */
+	@Override
+	protected List<ObjectId> getComparedCommits() {
+		Repository repository = getRepository();
 		try {
-			process = builder.start();
+			ObjectId head = repository.resolve(Constants.HEAD);
+			if (head == null || commit == null) {
+				return Collections.emptyList();
+			}
+			ObjectId mergeBase;
+			GitPreparation gitPreparation = getGitPreparation();
+			if (gitPreparation != null && gitPreparation.isValidForMerge(repository, commit)) {
+				mergeBase = gitPreparation.getMergeBase();
+			} else {
+				mergeBase = GitPreparation.getMergeBase(repository, head, commit);
+			}
+			if (mergeBase == null) {
+				return Collections.emptyList();
+			}
+			return Arrays.asList(mergeBase, head, commit);
 		} catch (IOException e) {
-			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+			return Collections.emptyList();
 		}
+	}
 
-		// output both stdout and stderr data from proc to stdout of this
-		// process
-		StreamGobbler errorGobbler = new StreamGobbler(process.getErrorStream());
-		StreamGobbler outputGobbler = new StreamGobbler(process.getInputStream());
-		new Thread(errorGobbler).start();
-		new Thread(outputGobbler).start();
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#getApplicationArguments()
+	 */
+	@Override
+	protected List<String> getApplicationArguments() {
+		List<String> arguments = new ArrayList<String>();
+		if (commit != null) {
+			arguments.add(commit.name());
+		} else {
+			arguments.add("HEAD"); //$NON-NLS-1$
+		}
 
-		int returnValue;
-		try {
-			returnValue = process.waitFor();
-		} catch (InterruptedException e) {
-			throw new DiesOn(DeathType.FATAL).duedTo(e).ready();
+		if (message != null) {
+			arguments.add("-m"); //$NON-NLS-1$
+			arguments.add(message);
 		}
+		return arguments;
+	}
 
-		return Returns.valueOf(returnValue).code();
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#createApplication()
+	 */
+	@Override
+	protected AbstractLogicalApplication createApplication() {
+		return new LogicalMergeApplication();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#isInProcessAllowed()
+	 */
+	@Override
+	protected boolean isInProcessAllowed() {
+		// The debug options apply to a new VM.
+		return !debug;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see org.eclipse.emf.compare.git.pgm.internal.cmd.AbstractLogicalApplicationCommand#addVMArguments(java.util.List)
+	 */
+	@Override
+	protected void addVMArguments(List<String> vmArgs) {
+		if (debug) {
+			vmArgs.add("-Xdebug"); //$NON-NLS-1$
+			vmArgs.add("-Xrunjdwp:transport=dt_socket,server=y,suspend=n,address=8123"); //$NON-NLS-1$
+		}
 	}
 
 	// For testing purpose.
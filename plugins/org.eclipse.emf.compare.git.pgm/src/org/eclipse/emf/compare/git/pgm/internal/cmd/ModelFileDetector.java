@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.content.IContentType;
+import org.eclipse.core.runtime.content.IContentTypeManager;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Tells which files of a repository may be logical models, without the provisioned installation.
+ * <p>
+ * The launcher does not hold the model support the user setup model installs, so a file is considered as a
+ * possible model as soon as its extension is known to EMF, its content type is an EMF one or its content is
+ * XML. Only the files failing all these checks are handled as plain text.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class ModelFileDetector {
+
+	/**
+	 * Content types of the EMF resources.
+	 */
+	private static final Set<String> EMF_CONTENT_TYPES = new HashSet<String>(Arrays.asList(
+			"org.eclipse.emf.ecore", "org.eclipse.emf.ecore.xmi", "org.eclipse.emf.emof")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+	/**
+	 * Number of bytes read to sniff the content of a file.
+	 */
+	private static final int SNIFF_LENGTH = 256;
+
+	private static final int UTF8_BOM_LENGTH = 3;
+
+	/**
+	 * Repository holding the files.
+	 */
+	private final Repository repository;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param repository
+	 *            the repository holding the files.
+	 */
+	ModelFileDetector(Repository repository) {
+		this.repository = repository;
+	}
+
+	/**
+	 * Checks whether a file changed between two commits may be a logical model.
+	 * 
+	 * @param base
+	 *            the old commit.
+	 * @param tip
+	 *            the new commit.
+	 * @return <code>true</code> if one of the files changed between the commits may be a model.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	boolean involvesModels(ObjectId base, ObjectId tip) throws IOException {
+		RevWalk walk = new RevWalk(repository);
+		TreeWalk treeWalk = new TreeWalk(repository);
+		try {
+			treeWalk.setRecursive(true);
+			treeWalk.addTree(walk.parseTree(base));
+			treeWalk.addTree(walk.parseTree(tip));
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			while (treeWalk.next()) {
+				String path = treeWalk.getPathString();
+				for (int tree = 0; tree < treeWalk.getTreeCount(); tree++) {
+					if (isModel(path, treeWalk.getObjectId(tree), treeWalk.getFileMode(tree))) {
+						return true;
+					}
+				}
+			}
+			return false;
+		} finally {
+			treeWalk.release();
+			walk.release();
+		}
+	}
+
+	/**
+	 * Checks whether a file may be a logical model.
+	 * 
+	 * @param path
+	 *            the path of the file in the repository.
+	 * @param blob
+	 *            the content of the file.
+	 * @param mode
+	 *            the mode of the file.
+	 * @return <code>true</code> if the file may be a model.
+	 * @throws IOException
+	 *             if the content of the file can not be read.
+	 */
+	boolean isModel(String path, ObjectId blob, FileMode mode) throws IOException {
+		if (mode.getObjectType() != Constants.OBJ_BLOB) {
+			// Missing on this side, submodule or tree.
+			return false;
+		}
+		String name = path.substring(path.lastIndexOf('/') + 1);
+		return hasModelExtension(name) || hasModelContentType(name) || isXML(blob);
+	}
+
+	/**
+	 * Checks whether EMF has a resource factory for the extension of the file.
+	 * 
+	 * @param name
+	 *            the name of the file.
+	 * @return <code>true</code> if the extension is registered.
+	 */
+	private boolean hasModelExtension(String name) {
+		int dot = name.lastIndexOf('.');
+		if (dot < 0) {
+			return false;
+		}
+		return Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().containsKey(
+				name.substring(dot + 1));
+	}
+
+	/**
+	 * Checks whether one of the content types of the file is an EMF one.
+	 * 
+	 * @param name
+	 *            the name of the file.
+	 * @return <code>true</code> if the file has an EMF content type.
+	 */
+	private boolean hasModelContentType(String name) {
+		IContentTypeManager contentTypeManager = Platform.getContentTypeManager();
+		if (contentTypeManager == null) {
+			return false;
+		}
+		for (IContentType contentType : contentTypeManager.findContentTypesFor(name)) {
+			for (IContentType type = contentType; type != null; type = type.getBaseType()) {
+				if (EMF_CONTENT_TYPES.contains(type.getId())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sniffs the content of the file to check whether it is XML.
+	 * 
+	 * @param blob
+	 *            the content of the file.
+	 * @return <code>true</code> if the first non blank character of the file, after an eventual byte order
+	 *         mark, is <code>&lt;</code>.
+	 * @throws IOException
+	 *             if the content can not be read.
+	 */
+	private boolean isXML(ObjectId blob) throws IOException {
+		byte[] head = new byte[SNIFF_LENGTH];
+		int length = 0;
+		InputStream input = repository.open(blob, Constants.OBJ_BLOB).openStream();
+		try {
+			int read = input.read(head, 0, head.length);
+			while (read > 0 && length < head.length) {
+				length += read;
+				read = input.read(head, length, head.length - length);
+			}
+		} finally {
+			input.close();
+		}
+		int start = 0;
+		if (length >= UTF8_BOM_LENGTH && head[0] == (byte)0xEF && head[1] == (byte)0xBB
+				&& head[2] == (byte)0xBF) {
+			start = UTF8_BOM_LENGTH;
+		}
+		for (int i = start; i < length; i++) {
+			if (!Character.isWhitespace(head[i])) {
+				return head[i] == '<';
+			}
+		}
+		return false;
+	}
+}
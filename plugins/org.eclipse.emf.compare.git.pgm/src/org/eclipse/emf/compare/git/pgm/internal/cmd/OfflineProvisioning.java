@@ -0,0 +1,212 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.oomph.base.Annotation;
+import org.eclipse.oomph.base.ModelElement;
+import org.eclipse.oomph.p2.P2Factory;
+import org.eclipse.oomph.setup.Index;
+import org.eclipse.oomph.setup.SetupTask;
+import org.eclipse.oomph.setup.log.ProgressLog;
+import org.eclipse.oomph.setup.p2.P2Task;
+import org.eclipse.oomph.setup.p2.SetupP2Factory;
+
+/**
+ * Offline-first provisioning settings of a user setup model.
+ * <p>
+ * In offline-first mode the P2 tasks are first performed offline, against the p2 metadata already cached
+ * locally, the profile of the installation and an optional local mirror. The network is only used by a
+ * second, online, provisioning when something is missing locally. The mode is enabled by the
+ * {@link org.eclipse.emf.compare.git.pgm.internal.Options#OFFLINE_FIRST_OPT} option or by an annotation of
+ * the index or of a project catalog of the user setup model:
+ * </p>
+ * 
+ * <pre>
+ * &lt;annotation source="http://www.eclipse.org/emf/compare/git/pgm"&gt;
+ *   &lt;detail key="offlineFirst" value="true"/&gt;
+ *   &lt;detail key="mirror" value="relative/or/absolute/path/to/a/p2/repository"/&gt;
+ * &lt;/annotation&gt;
+ * </pre>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class OfflineProvisioning {
+
+	/**
+	 * Source of the annotations of the user setup model read by this program.
+	 */
+	static final String ANNOTATION_SOURCE = "http://www.eclipse.org/emf/compare/git/pgm"; //$NON-NLS-1$
+
+	/**
+	 * Detail enabling the offline-first mode.
+	 */
+	static final String OFFLINE_FIRST_DETAIL = "offlineFirst"; //$NON-NLS-1$
+
+	/**
+	 * Detail holding the location of a local p2 mirror.
+	 */
+	static final String MIRROR_DETAIL = "mirror"; //$NON-NLS-1$
+
+	/**
+	 * Holds true if the P2 tasks are performed offline first.
+	 */
+	private final boolean offlineFirst;
+
+	/**
+	 * URL of the local p2 mirror, <code>null</code> if there is none.
+	 */
+	private final String mirror;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param offlineFirst
+	 *            <code>true</code> if the P2 tasks are performed offline first.
+	 * @param mirror
+	 *            the URL of the local p2 mirror or <code>null</code>.
+	 */
+	OfflineProvisioning(boolean offlineFirst, String mirror) {
+		this.offlineFirst = offlineFirst;
+		this.mirror = mirror;
+	}
+
+	/**
+	 * An attempt to perform the setup tasks of a provisioning.
+	 */
+	interface Attempt {
+		/**
+		 * Performs the setup tasks.
+		 * 
+		 * @param online
+		 *            <code>false</code> to perform the P2 tasks offline.
+		 * @return <code>true</code> if the setup tasks have been performed successfully.
+		 * @throws Exception
+		 *             if the setup tasks can not be performed.
+		 */
+		boolean perform(boolean online) throws Exception;
+	}
+
+	/**
+	 * Reads the offline-first settings of a user setup model.
+	 * 
+	 * @param index
+	 *            the index of the user setup model.
+	 * @param option
+	 *            <code>true</code> if the offline-first option has been given on the command line.
+	 * @param setupFolder
+	 *            the folder of the user setup model, against which a relative mirror path is resolved.
+	 * @return the settings.
+	 */
+	static OfflineProvisioning read(Index index, boolean option, File setupFolder) {
+		boolean offlineFirst = option;
+		String mirror = null;
+		List<ModelElement> elements = new ArrayList<ModelElement>();
+		elements.add(index);
+		elements.addAll(index.getProjectCatalogs());
+		for (ModelElement element : elements) {
+			Annotation annotation = element.getAnnotation(ANNOTATION_SOURCE);
+			if (annotation != null) {
+				offlineFirst |= Boolean.parseBoolean(annotation.getDetails().get(OFFLINE_FIRST_DETAIL));
+				String location = annotation.getDetails().get(MIRROR_DETAIL);
+				if (mirror == null && location != null) {
+					mirror = toURL(location, setupFolder);
+				}
+			}
+		}
+		return new OfflineProvisioning(offlineFirst, mirror);
+	}
+
+	/**
+	 * Converts the location of a mirror to a URL.
+	 * 
+	 * @param location
+	 *            a URL or a path, absolute or relative to the folder of the user setup model.
+	 * @param setupFolder
+	 *            the folder of the user setup model.
+	 * @return the URL of the mirror.
+	 */
+	private static String toURL(String location, File setupFolder) {
+		if (location.contains(":/")) { //$NON-NLS-1$
+			// Already a URL.
+			return location;
+		}
+		File file = new File(location);
+		if (!file.isAbsolute()) {
+			file = new File(setupFolder, location);
+		}
+		return file.toURI().toString();
+	}
+
+	/**
+	 * Tells whether the P2 tasks are performed offline first.
+	 * 
+	 * @return <code>true</code> in offline-first mode.
+	 */
+	boolean isOfflineFirst() {
+		return offlineFirst;
+	}
+
+	/**
+	 * Gets the URL of the local p2 mirror.
+	 * 
+	 * @return the URL of the mirror or <code>null</code> if there is none.
+	 */
+	String getMirror() {
+		return mirror;
+	}
+
+	/**
+	 * Adds the local mirror, if any, to a product catalog. Oomph merges the repositories of all the P2 tasks,
+	 * so every P2 task is resolved against it.
+	 * 
+	 * @param tasks
+	 *            the setup tasks of the product catalog.
+	 */
+	void addMirror(EList<SetupTask> tasks) {
+		if (mirror != null) {
+			P2Task mirrorTask = SetupP2Factory.eINSTANCE.createP2Task();
+			mirrorTask.getRepositories().add(P2Factory.eINSTANCE.createRepository(mirror));
+			tasks.add(mirrorTask);
+		}
+	}
+
+	/**
+	 * Performs a provisioning, offline first in offline-first mode. The provisioning is performed online
+	 * again when the offline attempt fails or leaves some requirements missing.
+	 * 
+	 * @param attempt
+	 *            the provisioning.
+	 * @param log
+	 *            the log of the provisioning.
+	 * @return <code>true</code> if the provisioning has been performed successfully.
+	 * @throws Exception
+	 *             if the online provisioning fails.
+	 */
+	boolean perform(Attempt attempt, ProgressLog log) throws Exception {
+		if (offlineFirst) {
+			try {
+				if (attempt.perform(false)) {
+					log.log("Provisioned offline."); //$NON-NLS-1$
+					return true;
+				}
+				log.log("Some requirements are not available locally, provisioning online."); //$NON-NLS-1$
+			} catch (Exception e) {
+				log.log("Offline provisioning failed, provisioning online: " + e.getMessage()); //$NON-NLS-1$
+			}
+		}
+		return attempt.perform(true);
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.equinox.p2.engine.IProfile;
+import org.eclipse.equinox.p2.engine.IProfileRegistry;
+import org.eclipse.equinox.p2.metadata.VersionRange;
+import org.eclipse.equinox.p2.query.QueryUtil;
+import org.eclipse.oomph.p2.Requirement;
+import org.eclipse.oomph.p2.core.Agent;
+import org.eclipse.oomph.setup.SetupTask;
+import org.eclipse.oomph.setup.p2.P2Task;
+
+/**
+ * Difference between the requirements of the P2 tasks of a provisioning and the installable units of an
+ * existing installation.
+ * <p>
+ * Reusing an installation as is misses the requirements added to the setup models since its provisioning,
+ * while performing the whole bootstrap again costs a full provisioning. The P2 tasks are reduced to the
+ * requirements the profile of the installation does not satisfy yet, so that p2 only installs the delta.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class ProfileDelta {
+
+	/**
+	 * Namespace of the installable unit requirements.
+	 */
+	static final String IU_NAMESPACE = "org.eclipse.equinox.p2.iu"; //$NON-NLS-1$
+
+	private ProfileDelta() {
+	}
+
+	/**
+	 * Finds the profile of an installation in a p2 agent.
+	 * 
+	 * @param agent
+	 *            the p2 agent.
+	 * @param installFolder
+	 *            the folder of the installation holding the eclipse executable.
+	 * @return the profile installed in the folder or <code>null</code> if the agent has none.
+	 */
+	static IProfile findProfile(Agent agent, File installFolder) {
+		IProfileRegistry registry = agent.getProfileRegistry();
+		if (registry == null) {
+			return null;
+		}
+		for (IProfile profile : registry.getProfiles()) {
+			String folder = profile.getProperty(IProfile.PROP_INSTALL_FOLDER);
+			if (folder != null && isSameFile(new File(folder), installFolder)) {
+				return profile;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the tasks to perform on an existing installation. The P2 tasks are reduced to the requirements its
+	 * profile does not satisfy. Without profile, nothing tells what the installation holds and all the tasks
+	 * are performed.
+	 * 
+	 * @param tasks
+	 *            the setup tasks of the provisioning.
+	 * @param profile
+	 *            the profile of the installation or <code>null</code> if it has not been found.
+	 * @return the tasks to perform.
+	 */
+	static List<SetupTask> getTasksToPerform(List<SetupTask> tasks, IProfile profile) {
+		if (profile == null) {
+			return new ArrayList<SetupTask>(tasks);
+		}
+		return new ArrayList<SetupTask>(getDeltaTasks(tasks, profile));
+	}
+
+	/**
+	 * Reduces P2 tasks to the requirements a profile does not satisfy.
+	 * 
+	 * @param tasks
+	 *            the setup tasks of the provisioning.
+	 * @param profile
+	 *            the profile of the installation.
+	 * @return copies of the P2 tasks holding the missing requirements, empty if the profile satisfies all the
+	 *         requirements.
+	 */
+	static List<P2Task> getDeltaTasks(List<SetupTask> tasks, IProfile profile) {
+		List<P2Task> deltaTasks = new ArrayList<P2Task>();
+		for (SetupTask task : tasks) {
+			if (task instanceof P2Task) {
+				P2Task deltaTask = EcoreUtil.copy((P2Task)task);
+				for (Iterator<Requirement> requirements = deltaTask.getRequirements().iterator(); requirements
+						.hasNext();) {
+					if (isInstalled(profile, requirements.next())) {
+						requirements.remove();
+					}
+				}
+				if (!deltaTask.getRequirements().isEmpty()) {
+					deltaTasks.add(deltaTask);
+				}
+			}
+		}
+		return deltaTasks;
+	}
+
+	/**
+	 * Checks whether a profile satisfies a requirement. Only the installable unit requirements are checked,
+	 * the others are considered as missing and left to the p2 planner.
+	 * 
+	 * @param profile
+	 *            the profile.
+	 * @param requirement
+	 *            the requirement.
+	 * @return <code>true</code> if an installable unit of the profile satisfies the requirement.
+	 */
+	static boolean isInstalled(IProfile profile, Requirement requirement) {
+		if (!IU_NAMESPACE.equals(requirement.getNamespace())) {
+			return false;
+		}
+		return !profile.query(QueryUtil.createIUQuery(requirement.getName(), getRange(requirement)), null)
+				.isEmpty();
+	}
+
+	/**
+	 * Gets the version range of a requirement.
+	 * 
+	 * @param requirement
+	 *            the requirement.
+	 * @return the version range, the empty range accepting any version if the requirement has none.
+	 */
+	static VersionRange getRange(Requirement requirement) {
+		VersionRange range = requirement.getVersionRange();
+		if (range == null) {
+			return VersionRange.emptyRange;
+		}
+		return range;
+	}
+
+	private static boolean isSameFile(File file, File other) {
+		try {
+			return file.getCanonicalFile().equals(other.getCanonicalFile());
+		} catch (IOException e) {
+			return file.getAbsoluteFile().equals(other.getAbsoluteFile());
+		}
+	}
+}
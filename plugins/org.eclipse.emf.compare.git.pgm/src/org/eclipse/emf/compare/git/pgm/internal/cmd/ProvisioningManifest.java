@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Properties;
+
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.util.Fingerprint;
+
+/**
+ * Manifest persisted in an installation after a successful provisioning.
+ * <p>
+ * It records the fingerprint of everything the provisioning depends on (setup models, requirements,
+ * locations) together with the fingerprint of the installed bundle set. The installation does not need to be
+ * provisioned again as long as both fingerprints match and every installed bundle is still on disk.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class ProvisioningManifest {
+
+	/**
+	 * Folder of an installation holding the data managed by this program.
+	 */
+	static final String METADATA_FOLDER = ".emfcompare_git_pgm"; //$NON-NLS-1$
+
+	/**
+	 * Path of the simple configurator bundle list relative to the eclipse folder of an installation.
+	 */
+	static final String BUNDLES_INFO = "configuration/org.eclipse.equinox.simpleconfigurator/bundles.info"; //$NON-NLS-1$
+
+	private static final String MANIFEST_FILE = "provisioning.properties"; //$NON-NLS-1$
+
+	private static final String FINGERPRINT_KEY = "fingerprint"; //$NON-NLS-1$
+
+	private static final String BUNDLES_KEY = "bundles"; //$NON-NLS-1$
+
+	private static final String FILE_SCHEME = "file"; //$NON-NLS-1$
+
+	/**
+	 * Root folder of the installation.
+	 */
+	private final File installationLocation;
+
+	/**
+	 * Folder of the installation holding the eclipse executable.
+	 */
+	private final File eclipseLocation;
+
+	/**
+	 * Name of the eclipse executable.
+	 */
+	private final String executableName;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param installationLocation
+	 *            root folder of the installation.
+	 * @param eclipseLocation
+	 *            folder of the installation holding the eclipse executable.
+	 * @param executableName
+	 *            name of the eclipse executable.
+	 */
+	ProvisioningManifest(File installationLocation, File eclipseLocation, String executableName) {
+		this.installationLocation = installationLocation;
+		this.eclipseLocation = eclipseLocation;
+		this.executableName = executableName;
+	}
+
+	/**
+	 * Checks that the installation has been provisioned with the given fingerprint and has not been modified
+	 * since.
+	 * 
+	 * @param fingerprint
+	 *            the fingerprint of the requested provisioning.
+	 * @return <code>true</code> if the provisioning can be skipped, <code>false</code> otherwise.
+	 */
+	boolean isUpToDate(String fingerprint) {
+		Properties manifest = load();
+		if (manifest == null || !fingerprint.equals(manifest.getProperty(FINGERPRINT_KEY))) {
+			return false;
+		}
+		if (!new File(eclipseLocation, executableName).isFile()) {
+			return false;
+		}
+		try {
+			String bundles = getBundlesFingerprint();
+			return bundles != null && bundles.equals(manifest.getProperty(BUNDLES_KEY))
+					&& allBundlesExist();
+		} catch (IOException e) {
+			return false;
+		} catch (Die e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Records a successful provisioning.
+	 * 
+	 * @param fingerprint
+	 *            the fingerprint of the performed provisioning.
+	 * @throws IOException
+	 *             if the manifest can not be written.
+	 * @throws Die
+	 *             if the fingerprint of the installed bundles can not be computed.
+	 */
+	void record(String fingerprint) throws IOException, Die {
+		String bundles = getBundlesFingerprint();
+		if (bundles == null) {
+			// Nothing reliable to compare with on next run.
+			invalidate();
+			return;
+		}
+		Properties manifest = new Properties();
+		manifest.setProperty(FINGERPRINT_KEY, fingerprint);
+		manifest.setProperty(BUNDLES_KEY, bundles);
+		File file = getManifestFile();
+		file.getParentFile().mkdirs();
+		OutputStream output = new FileOutputStream(file);
+		try {
+			manifest.store(output, null);
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Forgets any previous provisioning so that the next run provisions the installation again.
+	 */
+	void invalidate() {
+		File file = getManifestFile();
+		if (file.exists() && !file.delete()) {
+			file.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Computes the fingerprint of the bundle set of the installation.
+	 * 
+	 * @return the fingerprint of the bundle list of the installation or <code>null</code> if there is none.
+	 * @throws IOException
+	 *             if the bundle list can not be read.
+	 * @throws Die
+	 *             if the digest algorithm is not available.
+	 */
+	String getBundlesFingerprint() throws IOException, Die {
+		File bundlesInfo = new File(eclipseLocation, BUNDLES_INFO);
+		if (!bundlesInfo.isFile()) {
+			return null;
+		}
+		return Fingerprint.of(bundlesInfo);
+	}
+
+	/**
+	 * Checks that every bundle listed in the bundle list of the installation exists.
+	 * 
+	 * @return <code>true</code> if all bundles exist, <code>false</code> otherwise.
+	 * @throws IOException
+	 *             if the bundle list can not be read.
+	 */
+	private boolean allBundlesExist() throws IOException {
+		InputStream input = new FileInputStream(new File(eclipseLocation, BUNDLES_INFO));
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8")); //$NON-NLS-1$
+			String line;
+			while ((line = reader.readLine()) != null) {
+				// symbolicName,version,location,startLevel,autoStart
+				String[] segments = line.split(","); //$NON-NLS-1$
+				if (!line.startsWith("#") && segments.length >= 3 && !toFile(segments[2]).exists()) { //$NON-NLS-1$
+					return false;
+				}
+			}
+		} finally {
+			input.close();
+		}
+		return true;
+	}
+
+	/**
+	 * Resolves a bundle location of the bundle list.
+	 * 
+	 * @param location
+	 *            an absolute URI or a path relative to the eclipse folder of the installation.
+	 * @return the bundle file or folder.
+	 */
+	private File toFile(String location) {
+		try {
+			URI uri = new URI(location);
+			if (FILE_SCHEME.equals(uri.getScheme()) && uri.isAbsolute() && !uri.isOpaque()) {
+				return new File(uri);
+			} else if (uri.getScheme() != null) {
+				// file:relative/path
+				return new File(eclipseLocation, uri.getSchemeSpecificPart());
+			}
+		} catch (URISyntaxException e) {
+			// Not an URI, handles it as a path.
+		} catch (IllegalArgumentException e) {
+			// Not a hierarchical file URI, handles it as a path.
+		}
+		return new File(eclipseLocation, location);
+	}
+
+	/**
+	 * Gets the file holding the manifest.
+	 * 
+	 * @return the file holding the manifest.
+	 */
+	private File getManifestFile() {
+		return new File(new File(installationLocation, METADATA_FOLDER), MANIFEST_FILE);
+	}
+
+	/**
+	 * Loads the manifest.
+	 * 
+	 * @return the manifest or <code>null</code> if none can be read.
+	 */
+	private Properties load() {
+		File file = getManifestFile();
+		if (!file.isFile()) {
+			return null;
+		}
+		Properties manifest = new Properties();
+		try {
+			InputStream input = new FileInputStream(file);
+			try {
+				manifest.load(input);
+			} finally {
+				input.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		return manifest;
+	}
+}
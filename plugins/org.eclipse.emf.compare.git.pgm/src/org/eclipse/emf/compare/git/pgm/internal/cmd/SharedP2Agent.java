@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.oomph.p2.core.Agent;
+import org.eclipse.oomph.p2.core.AgentManager;
+import org.eclipse.oomph.p2.core.P2Util;
+
+/**
+ * The p2 agent shared by all the installations of a machine, and its bundle pool. It lives in the system temp
+ * directory next to the default installations, so that a bundle is downloaded and stored once whatever the
+ * number of installations using it.
+ * <p>
+ * The agent and its pool are written by the commands provisioning an installation, whatever the installation.
+ * These commands thus hold the exclusive lock of the agent: a file lock serializes the processes, and since a
+ * file lock can not be held twice by the same process, a lock of the process serializes its threads. The
+ * commands only using their installation read the bundles of the pool without the lock: p2 only adds bundles
+ * to the pool, it never changes nor removes the ones an installation already uses.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class SharedP2Agent {
+
+	/**
+	 * Name of the lock file in the folder of the agent.
+	 */
+	static final String LOCK_FILE = "agent.lock"; //$NON-NLS-1$
+
+	private static final String BUNDLE_POOL_FOLDER = "pool"; //$NON-NLS-1$
+
+	/**
+	 * Lock of the threads of this process.
+	 */
+	private static final ReentrantLock PROCESS_LOCK = new ReentrantLock();
+
+	/**
+	 * Folder of the agent.
+	 */
+	private final File location;
+
+	/**
+	 * Channel holding the file lock, <code>null</code> if the lock is not held.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param location
+	 *            the folder of the agent.
+	 */
+	SharedP2Agent(File location) {
+		this.location = location;
+	}
+
+	/**
+	 * Gets the folder of the agent.
+	 * 
+	 * @return the folder of the agent.
+	 */
+	File getLocation() {
+		return location;
+	}
+
+	/**
+	 * Gets the bundle pool of the agent, registering the agent and the pool in the agent manager if needed.
+	 * The lock is held during the registration, unless it is already held by the caller.
+	 * 
+	 * @return the location of the bundle pool.
+	 * @throws IOException
+	 *             if the lock file can not be locked.
+	 */
+	File getBundlePool() throws IOException {
+		File poolLocation = new File(location, BUNDLE_POOL_FOLDER);
+		boolean acquired = channel == null;
+		if (acquired) {
+			acquire();
+		}
+		try {
+			AgentManager agentManager = P2Util.getAgentManager();
+			Agent agent = agentManager.getAgent(location);
+			if (agent == null) {
+				agent = agentManager.addAgent(location);
+			}
+			if (agent.getBundlePool(poolLocation) == null) {
+				agent.addBundlePool(poolLocation);
+			}
+		} finally {
+			if (acquired) {
+				release();
+			}
+		}
+		return poolLocation;
+	}
+
+	/**
+	 * Acquires the exclusive lock of the agent, waiting for the other commands to release it if needed.
+	 * 
+	 * @throws IOException
+	 *             if the lock file can not be locked.
+	 */
+	void acquire() throws IOException {
+		if (channel != null) {
+			return;
+		}
+		PROCESS_LOCK.lock();
+		try {
+			channel = FileLocks.lock(new File(location, LOCK_FILE), false);
+		} finally {
+			if (channel == null) {
+				PROCESS_LOCK.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Releases the lock if it is held.
+	 */
+	void release() {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// The lock is released when the process exits.
+		}
+		channel = null;
+		PROCESS_LOCK.unlock();
+	}
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Lease of a workspace slot, held by a single command at a time.
+ * <p>
+ * The commands run with the same setup share a pool of workspaces: the first slot is the workspace of the
+ * setup and the other slots are siblings suffixed by their index. A command leases the first free slot by
+ * locking the lease file next to it, and waits for a slot to be released when all of them are in use. The
+ * slots are kept after the commands, so that the next commands reuse their imported projects.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+final class WorkspaceLease {
+
+	/**
+	 * Extension of the lease file of a workspace slot.
+	 */
+	static final String LEASE_EXTENSION = ".lease"; //$NON-NLS-1$
+
+	/**
+	 * Time between two attempts to lease a slot when all of them are in use, in milliseconds.
+	 */
+	private static final long POLL_INTERVAL = 250;
+
+	/**
+	 * Workspace of the first slot.
+	 */
+	private final File base;
+
+	/**
+	 * Index of the leased slot.
+	 */
+	private final int slot;
+
+	/**
+	 * Time spent waiting for a free slot, in milliseconds.
+	 */
+	private final long waitTime;
+
+	/**
+	 * Channel holding the lock of the lease file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param base
+	 *            the workspace of the first slot.
+	 * @param slot
+	 *            the index of the leased slot.
+	 * @param waitTime
+	 *            the time spent waiting for a free slot.
+	 * @param channel
+	 *            the channel holding the lock of the lease file.
+	 */
+	private WorkspaceLease(File base, int slot, long waitTime, FileChannel channel) {
+		this.base = base;
+		this.slot = slot;
+		this.waitTime = waitTime;
+		this.channel = channel;
+	}
+
+	/**
+	 * Leases the first free slot of a pool of workspaces, waiting for a slot to be released if all of them
+	 * are in use.
+	 * 
+	 * @param base
+	 *            the workspace of the first slot.
+	 * @param slots
+	 *            the number of slots of the pool.
+	 * @return the lease, to be released once the workspace is no longer used.
+	 * @throws IOException
+	 *             if a lease file can not be opened.
+	 * @throws InterruptedException
+	 *             if the thread is interrupted while waiting for a slot.
+	 */
+	static WorkspaceLease acquire(File base, int slots) throws IOException, InterruptedException {
+		long start = System.currentTimeMillis();
+		while (true) {
+			for (int slot = 0; slot < slots; slot++) {
+				File location = getSlotLocation(base, slot);
+				FileChannel channel = FileLocks.tryLock(new File(location.getPath() + LEASE_EXTENSION));
+				if (channel != null) {
+					location.mkdirs();
+					return new WorkspaceLease(base, slot, System.currentTimeMillis() - start, channel);
+				}
+			}
+			Thread.sleep(POLL_INTERVAL);
+		}
+	}
+
+	/**
+	 * Gets the workspace of a slot.
+	 * 
+	 * @param base
+	 *            the workspace of the first slot.
+	 * @param slot
+	 *            the index of the slot.
+	 * @return the workspace of the slot.
+	 */
+	static File getSlotLocation(File base, int slot) {
+		if (slot == 0) {
+			return base;
+		}
+		return new File(base.getPath() + '-' + slot);
+	}
+
+	/**
+	 * Gets the workspace of the first slot.
+	 * 
+	 * @return the workspace of the first slot.
+	 */
+	File getBase() {
+		return base;
+	}
+
+	/**
+	 * Gets the workspace of the leased slot.
+	 * 
+	 * @return the workspace of the leased slot.
+	 */
+	File getLocation() {
+		return getSlotLocation(base, slot);
+	}
+
+	/**
+	 * Gets the index of the leased slot.
+	 * 
+	 * @return the index of the slot.
+	 */
+	int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Gets the time spent waiting for a free slot.
+	 * 
+	 * @return the time in milliseconds.
+	 */
+	long getWaitTime() {
+		return waitTime;
+	}
+
+	/**
+	 * Releases the slot for the other commands.
+	 */
+	void release() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// The lock is released when the process exits.
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Locale;
+
+/**
+ * Computes the disk footprint of folders.
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+public final class DiskUsage {
+
+	private static final long KILO = 1024;
+
+	private static final String[] UNITS = {"B", "KB", "MB", "GB", "TB", }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+
+	private DiskUsage() {
+	}
+
+	/**
+	 * Computes the size of the regular files of a folder. Symbolic links are not followed, so that content
+	 * shared with other folders is not counted.
+	 * 
+	 * @param folder
+	 *            the folder.
+	 * @return the size in bytes, 0 if the folder does not exist.
+	 * @throws IOException
+	 *             if the folder can not be walked.
+	 */
+	public static long sizeOf(File folder) throws IOException {
+		if (!folder.exists()) {
+			return 0;
+		}
+		final long[] size = new long[1];
+		Files.walkFileTree(folder.toPath(), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile()) {
+					size[0] += attrs.size();
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException exc) {
+				// Removed while walking.
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return size[0];
+	}
+
+	/**
+	 * Formats a size for humans.
+	 * 
+	 * @param bytes
+	 *            the size in bytes.
+	 * @return the formatted size, for example <code>12.3 MB</code>.
+	 */
+	public static String format(long bytes) {
+		if (bytes < KILO) {
+			return bytes + " " + UNITS[0]; //$NON-NLS-1$
+		}
+		double value = bytes;
+		int unit = 0;
+		while (value >= KILO && unit < UNITS.length - 1) {
+			value /= KILO;
+			unit++;
+		}
+		return String.format(Locale.ENGLISH, "%.1f %s", Double.valueOf(value), UNITS[unit]); //$NON-NLS-1$
+	}
+}
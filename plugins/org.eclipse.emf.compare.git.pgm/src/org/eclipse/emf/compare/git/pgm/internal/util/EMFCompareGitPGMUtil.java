@@ -49,22 +49,41 @@ public class EMFCompareGitPGMUtil {
 	 * @return a {@link Returns}
 	 */
 	public static Integer handleDieError(Die error, boolean showStackTrace) {
+		return handleDieError(error, showStackTrace, System.out, System.err);
+	}
+
+	/**
+	 * Displays the error message on the given streams and return matching {@link Returns}.
+	 * 
+	 * @param error
+	 *            Error to handle.
+	 * @param showStackTrace
+	 *            Set to <code>true</code> if the stack trace should be display or <code>false</code>
+	 *            otherwise.
+	 * @param out
+	 *            Stream of the errors and of the fatal errors.
+	 * @param err
+	 *            Stream of the software errors.
+	 * @return a {@link Returns}
+	 */
+	public static Integer handleDieError(Die error, boolean showStackTrace, PrintStream out,
+			PrintStream err) {
 		final PrintStream stream;
 		final Integer returnCode = Returns.ERROR.code();
 		final String prefix;
 		switch (error.getType()) {
 			case ERROR:
 				prefix = "error: ";
-				stream = System.out;
+				stream = out;
 				break;
 			case FATAL:
 				prefix = "fatal: ";
-				stream = System.out;
+				stream = out;
 				break;
 			case SOFTWARE_ERROR:
 			default:
 				prefix = "software error: ";
-				stream = System.err;
+				stream = err;
 				break;
 		}
 		if (error.getMessage() != null) {
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DeathType;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die.DiesOn;
+
+/**
+ * SHA-1 digest of an ordered sequence of strings, streams and files.
+ * <p>
+ * Each string is terminated by a separator so that <code>("ab", "c")</code> and <code>("a", "bc")</code> do
+ * not produce the same fingerprint.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+public final class Fingerprint {
+
+	private static final String ALGORITHM = "SHA-1"; //$NON-NLS-1$
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final MessageDigest digest;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @throws Die
+	 *             if the digest algorithm is not available.
+	 */
+	public Fingerprint() throws Die {
+		try {
+			digest = MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new DiesOn(DeathType.ERROR).duedTo(e).ready();
+		}
+	}
+
+	/**
+	 * Adds a string to the fingerprint. A <code>null</code> value is distinct from the empty string.
+	 * 
+	 * @param value
+	 *            the value to add.
+	 * @return this fingerprint.
+	 */
+	public Fingerprint add(String value) {
+		if (value != null) {
+			digest.update(value.getBytes(UTF_8));
+			digest.update((byte)0);
+		} else {
+			digest.update((byte)1);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the whole content of a stream to the fingerprint. The stream is closed.
+	 * 
+	 * @param input
+	 *            the stream to read.
+	 * @return this fingerprint.
+	 * @throws IOException
+	 *             if the stream can not be read.
+	 */
+	public Fingerprint add(InputStream input) throws IOException {
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			input.close();
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the content of a file to the fingerprint.
+	 * 
+	 * @param file
+	 *            the file to read.
+	 * @return this fingerprint.
+	 * @throws IOException
+	 *             if the file can not be read.
+	 */
+	public Fingerprint add(File file) throws IOException {
+		return add(new FileInputStream(file));
+	}
+
+	/**
+	 * Completes the computation. This fingerprint must not be used afterwards.
+	 * 
+	 * @return the fingerprint as a string of hexadecimal values.
+	 */
+	public String toHex() {
+		return toHexString(digest.digest());
+	}
+
+	/**
+	 * Converts an array of bytes into a string of hexadecimal values.
+	 * 
+	 * @param arrayBytes
+	 *            the given array of bytes.
+	 * @return a string of hexadecimal values.
+	 */
+	public static String toHexString(byte[] arrayBytes) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < arrayBytes.length; i++) {
+			builder.append(Integer.toString((arrayBytes[i] & 0xff) + 0x100, 16).substring(1));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Computes the fingerprint of a file content.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @return the fingerprint of the file content.
+	 * @throws IOException
+	 *             if the file can not be read.
+	 * @throws Die
+	 *             if the digest algorithm is not available.
+	 */
+	public static String of(File file) throws IOException, Die {
+		return new Fingerprint().add(file).toHex();
+	}
+}
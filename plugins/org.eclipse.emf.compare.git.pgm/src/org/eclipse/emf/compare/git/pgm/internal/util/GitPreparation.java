@@ -0,0 +1,449 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+
+/**
+ * Git computations of a logical command that do not depend on the provisioned installation.
+ * <p>
+ * The launcher computes them while the installation is being provisioned and hands them to the logical
+ * application, which uses them instead of walking the repository again. They are only valid as long as HEAD
+ * has not moved.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+public final class GitPreparation {
+
+	private static final String HEAD_KEY = "head"; //$NON-NLS-1$
+
+	private static final String COMMIT_KEY = "commit"; //$NON-NLS-1$
+
+	private static final String COMMIT_WITH_KEY = "commitWith"; //$NON-NLS-1$
+
+	private static final String MERGE_BASE_KEY = "mergeBase"; //$NON-NLS-1$
+
+	private static final String PATH_FILTER_KEY = "pathFilter"; //$NON-NLS-1$
+
+	private static final String LIMITED_KEY = "limited"; //$NON-NLS-1$
+
+	private static final String PATH_COUNT_KEY = "paths"; //$NON-NLS-1$
+
+	private static final String PATH_KEY_PREFIX = "path."; //$NON-NLS-1$
+
+	/**
+	 * HEAD when the preparation has been computed.
+	 */
+	private final ObjectId head;
+
+	/**
+	 * Resolved commit of the command.
+	 */
+	private final ObjectId commit;
+
+	/**
+	 * Resolved commit to compare with, <code>null</code> for a merge.
+	 */
+	private final ObjectId commitWith;
+
+	/**
+	 * Merge base of HEAD and {@link #commit}, <code>null</code> for a diff or if they have no common
+	 * ancestor.
+	 */
+	private final ObjectId mergeBase;
+
+	/**
+	 * Path limiting the diff, <code>null</code> if the diff is not limited.
+	 */
+	private final String pathFilter;
+
+	/**
+	 * Paths of the changed files.
+	 */
+	private final List<String> changedPaths;
+
+	/**
+	 * Whether the diff is limited to the changed paths, the launcher displaying the other entries.
+	 */
+	private final boolean limited;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param head
+	 *            HEAD when the preparation has been computed.
+	 * @param commit
+	 *            resolved commit of the command.
+	 * @param commitWith
+	 *            resolved commit to compare with.
+	 * @param mergeBase
+	 *            merge base of HEAD and the commit.
+	 * @param pathFilter
+	 *            path limiting the diff.
+	 * @param changedPaths
+	 *            paths of the changed files.
+	 * @param limited
+	 *            whether the diff is limited to the changed paths.
+	 */
+	private GitPreparation(ObjectId head, ObjectId commit, ObjectId commitWith, ObjectId mergeBase,
+			String pathFilter, List<String> changedPaths, boolean limited) {
+		this.head = head;
+		this.commit = commit;
+		this.commitWith = commitWith;
+		this.mergeBase = mergeBase;
+		this.pathFilter = pathFilter;
+		this.changedPaths = Collections.unmodifiableList(changedPaths);
+		this.limited = limited;
+	}
+
+	/**
+	 * Prepares a logical diff. The changed paths are the old paths of the entries the logical diff would get
+	 * from JGit.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @param commit
+	 *            the commit from which the differences are displayed.
+	 * @param commitWith
+	 *            the commit to compare with.
+	 * @param pathFilter
+	 *            the path limiting the diff or <code>null</code>.
+	 * @return the preparation.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	public static GitPreparation forDiff(Repository repository, ObjectId commit, ObjectId commitWith,
+			String pathFilter) throws IOException {
+		ObjectId head = repository.resolve(Constants.HEAD);
+		List<String> changedPaths = new ArrayList<String>();
+		for (DiffEntry entry : scan(repository, commit, commitWith, pathFilter)) {
+			changedPaths.add(entry.getOldPath());
+		}
+		return new GitPreparation(head, commit, commitWith, null, pathFilter, changedPaths, false);
+	}
+
+	/**
+	 * Prepares a logical diff limited to some of its entries, the launcher displaying the other ones. The
+	 * logical diff keeps to these entries even if it has to compute the diff again.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @param commit
+	 *            the commit from which the differences are displayed.
+	 * @param commitWith
+	 *            the commit to compare with.
+	 * @param pathFilter
+	 *            the path limiting the diff or <code>null</code>.
+	 * @param entries
+	 *            the entries of the diff the logical diff has to display.
+	 * @return the preparation.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	public static GitPreparation forDiff(Repository repository, ObjectId commit, ObjectId commitWith,
+			String pathFilter, List<DiffEntry> entries) throws IOException {
+		ObjectId head = repository.resolve(Constants.HEAD);
+		List<String> changedPaths = new ArrayList<String>();
+		for (DiffEntry entry : entries) {
+			changedPaths.add(entry.getOldPath());
+		}
+		return new GitPreparation(head, commit, commitWith, null, pathFilter, changedPaths, true);
+	}
+
+	/**
+	 * Prepares a logical merge. The changed paths are the new paths of the files changed between the merge
+	 * base and the commit to merge.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @param commit
+	 *            the commit to merge.
+	 * @return the preparation.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	public static GitPreparation forMerge(Repository repository, ObjectId commit) throws IOException {
+		ObjectId head = repository.resolve(Constants.HEAD);
+		ObjectId mergeBase = null;
+		List<String> changedPaths = new ArrayList<String>();
+		if (head != null) {
+			mergeBase = getMergeBase(repository, head, commit);
+			if (mergeBase != null) {
+				for (DiffEntry entry : scan(repository, mergeBase, commit, null)) {
+					changedPaths.add(entry.getNewPath());
+				}
+			}
+		}
+		return new GitPreparation(head, commit, null, mergeBase, null, changedPaths, false);
+	}
+
+	/**
+	 * Reads a preparation written by {@link #write(File)}.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @return the preparation.
+	 * @throws IOException
+	 *             if the file can not be read or is not a preparation.
+	 */
+	public static GitPreparation read(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream input = new FileInputStream(file);
+		try {
+			properties.load(input);
+		} finally {
+			input.close();
+		}
+		try {
+			int pathCount = Integer.parseInt(properties.getProperty(PATH_COUNT_KEY));
+			List<String> changedPaths = new ArrayList<String>(pathCount);
+			for (int i = 0; i < pathCount; i++) {
+				String path = properties.getProperty(PATH_KEY_PREFIX + i);
+				if (path == null) {
+					throw new IOException("Missing changed path in " + file); //$NON-NLS-1$
+				}
+				changedPaths.add(path);
+			}
+			return new GitPreparation(toObjectId(properties.getProperty(HEAD_KEY)), toObjectId(properties
+					.getProperty(COMMIT_KEY)), toObjectId(properties.getProperty(COMMIT_WITH_KEY)),
+					toObjectId(properties.getProperty(MERGE_BASE_KEY)), properties
+							.getProperty(PATH_FILTER_KEY), changedPaths, Boolean.parseBoolean(properties
+							.getProperty(LIMITED_KEY)));
+		} catch (IllegalArgumentException e) {
+			// Includes NumberFormatException and InvalidObjectIdException.
+			throw new IOException("Invalid git preparation " + file, e); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Writes this preparation.
+	 * 
+	 * @param file
+	 *            the file.
+	 * @throws IOException
+	 *             if the file can not be written.
+	 */
+	public void write(File file) throws IOException {
+		Properties properties = new Properties();
+		put(properties, HEAD_KEY, head);
+		put(properties, COMMIT_KEY, commit);
+		put(properties, COMMIT_WITH_KEY, commitWith);
+		put(properties, MERGE_BASE_KEY, mergeBase);
+		if (pathFilter != null) {
+			properties.setProperty(PATH_FILTER_KEY, pathFilter);
+		}
+		if (limited) {
+			properties.setProperty(LIMITED_KEY, String.valueOf(limited));
+		}
+		properties.setProperty(PATH_COUNT_KEY, String.valueOf(changedPaths.size()));
+		for (int i = 0; i < changedPaths.size(); i++) {
+			properties.setProperty(PATH_KEY_PREFIX + i, changedPaths.get(i));
+		}
+		OutputStream output = new FileOutputStream(file);
+		try {
+			properties.store(output, null);
+		} finally {
+			output.close();
+		}
+	}
+
+	/**
+	 * Checks that this preparation still applies to the repository, that is to say that HEAD has not moved.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @return <code>true</code> if this preparation can be used.
+	 */
+	public boolean isValid(Repository repository) {
+		try {
+			ObjectId currentHead = repository.resolve(Constants.HEAD);
+			if (head == null) {
+				return currentHead == null;
+			}
+			return head.equals(currentHead);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks that this preparation has been computed for the given diff.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @param diffCommit
+	 *            the commit from which the differences are displayed.
+	 * @param diffCommitWith
+	 *            the commit to compare with.
+	 * @param diffPathFilter
+	 *            the path limiting the diff or <code>null</code>.
+	 * @return <code>true</code> if this preparation can be used for the diff.
+	 */
+	public boolean isValidForDiff(Repository repository, ObjectId diffCommit, ObjectId diffCommitWith,
+			String diffPathFilter) {
+		return isValid(repository) && equal(commit, diffCommit) && equal(commitWith, diffCommitWith)
+				&& equal(pathFilter, diffPathFilter);
+	}
+
+	/**
+	 * Checks that this preparation has been computed for the given merge.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @param mergeCommit
+	 *            the commit to merge.
+	 * @return <code>true</code> if this preparation can be used for the merge.
+	 */
+	public boolean isValidForMerge(Repository repository, ObjectId mergeCommit) {
+		return isValid(repository) && commitWith == null && equal(commit, mergeCommit);
+	}
+
+	/**
+	 * Gets HEAD when the preparation has been computed.
+	 * 
+	 * @return HEAD or <code>null</code> if the repository had no commit.
+	 */
+	public ObjectId getHead() {
+		return head;
+	}
+
+	/**
+	 * Gets the merge base of HEAD and the commit to merge.
+	 * 
+	 * @return the merge base or <code>null</code> if there is none or if this is a diff preparation.
+	 */
+	public ObjectId getMergeBase() {
+		return mergeBase;
+	}
+
+	/**
+	 * Gets the paths of the changed files.
+	 * 
+	 * @return the paths of the changed files.
+	 */
+	public List<String> getChangedPaths() {
+		return changedPaths;
+	}
+
+	/**
+	 * Tells whether the diff is limited to the changed paths, the launcher displaying the other entries.
+	 * 
+	 * @return <code>true</code> if the other entries must not be displayed.
+	 */
+	public boolean isLimited() {
+		return limited;
+	}
+
+	/**
+	 * Lists the differences between two commits.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @param oldCommit
+	 *            the old commit.
+	 * @param newCommit
+	 *            the new commit.
+	 * @param pathFilter
+	 *            the path limiting the diff or <code>null</code>.
+	 * @return the differences.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	public static List<DiffEntry> scan(Repository repository, ObjectId oldCommit, ObjectId newCommit,
+			String pathFilter) throws IOException {
+		RevWalk walk = new RevWalk(repository);
+		DiffFormatter formatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+		try {
+			formatter.setRepository(repository);
+			if (pathFilter != null) {
+				formatter.setPathFilter(PathFilter.create(pathFilter));
+			} else {
+				formatter.setPathFilter(TreeFilter.ALL);
+			}
+			return formatter.scan(walk.parseTree(oldCommit), walk.parseTree(newCommit));
+		} finally {
+			formatter.release();
+			walk.release();
+		}
+	}
+
+	/**
+	 * Computes the merge base of two commits.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @param first
+	 *            the first commit.
+	 * @param second
+	 *            the second commit.
+	 * @return the merge base or <code>null</code> if the commits have no common ancestor.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	public static ObjectId getMergeBase(Repository repository, ObjectId first, ObjectId second)
+			throws IOException {
+		RevWalk walk = new RevWalk(repository);
+		try {
+			walk.setRevFilter(RevFilter.MERGE_BASE);
+			walk.markStart(walk.parseCommit(first));
+			walk.markStart(walk.parseCommit(second));
+			RevCommit base = walk.next();
+			if (base == null) {
+				return null;
+			}
+			return base.copy();
+		} finally {
+			walk.release();
+		}
+	}
+
+	private static void put(Properties properties, String key, ObjectId id) {
+		if (id != null) {
+			properties.setProperty(key, id.name());
+		}
+	}
+
+	private static ObjectId toObjectId(String name) {
+		if (name == null) {
+			return null;
+		}
+		return ObjectId.fromString(name);
+	}
+
+	private static boolean equal(Object first, Object second) {
+		if (first == null) {
+			return second == null;
+		}
+		return first.equals(second);
+	}
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the cross document references of a serialized model without loading it.
+ * <p>
+ * The references are the quoted URIs followed by a fragment, which is how XMI serializes the references to
+ * the objects of other documents. Nothing is resolved, so that the scan works in the launcher as well as in
+ * the provisioned installation.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+public final class ModelReferences {
+
+	/**
+	 * Prefix of the URIs of the workspace resources.
+	 */
+	public static final String PLATFORM_RESOURCE = "platform:/resource/"; //$NON-NLS-1$
+
+	/**
+	 * Quoted values of the XML attributes, holding the cross document references.
+	 */
+	private static final Pattern QUOTED_VALUE = Pattern.compile("\"([^\"]*)\""); //$NON-NLS-1$
+
+	private static final Pattern WHITESPACES = Pattern.compile("\\s+"); //$NON-NLS-1$
+
+	private ModelReferences() {
+	}
+
+	/**
+	 * Finds the cross document references of a model. References to the same document and URIs with another
+	 * scheme than <code>platform:/resource</code> are ignored.
+	 * 
+	 * @param content
+	 *            the content of the model.
+	 * @return the URIs of the referenced documents, relative to the model or starting with
+	 *         {@link #PLATFORM_RESOURCE}.
+	 */
+	public static List<String> find(String content) {
+		List<String> references = new ArrayList<String>();
+		Matcher matcher = QUOTED_VALUE.matcher(content);
+		while (matcher.find()) {
+			for (String token : WHITESPACES.split(matcher.group(1))) {
+				int fragment = token.indexOf('#');
+				if (fragment > 0) {
+					String reference = token.substring(0, fragment);
+					if (reference.startsWith(PLATFORM_RESOURCE) || !hasScheme(reference)) {
+						references.add(reference);
+					}
+				}
+			}
+		}
+		return references;
+	}
+
+	/**
+	 * Checks whether a URI is absolute.
+	 * 
+	 * @param uri
+	 *            the URI.
+	 * @return <code>true</code> if the URI starts with a scheme.
+	 */
+	private static boolean hasScheme(String uri) {
+		int colon = uri.indexOf(':');
+		int slash = uri.indexOf('/');
+		return colon > 0 && (slash < 0 || colon < slash);
+	}
+}
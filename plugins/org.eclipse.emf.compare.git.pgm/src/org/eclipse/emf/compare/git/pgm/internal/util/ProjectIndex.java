@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Index of the project descriptors of a repository, stored in its git directory.
+ * <p>
+ * Looking for the <code>.project</code> files by walking the work tree goes through every build output and
+ * dependency folder of the repository. The index lists the project descriptors of the tree of HEAD instead.
+ * It is stored with the identifier of the indexed tree and updated from the differences between that tree
+ * and the tree of HEAD, so that a checkout only costs a diff of the descriptors. Descriptors not committed
+ * yet are not indexed.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+public final class ProjectIndex {
+
+	/**
+	 * Name of the file of the git directory holding the index.
+	 */
+	public static final String INDEX_FILE = "emfcompare-projects"; //$NON-NLS-1$
+
+	private static final String PROJECT_DESCRIPTOR = ".project"; //$NON-NLS-1$
+
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	/**
+	 * Identifier of the indexed tree, <code>null</code> for a repository without commit.
+	 */
+	private final ObjectId treeId;
+
+	/**
+	 * Paths of the project descriptors in the repository.
+	 */
+	private final Set<String> descriptors;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param treeId
+	 *            the identifier of the indexed tree.
+	 * @param descriptors
+	 *            the paths of the project descriptors of the tree.
+	 */
+	private ProjectIndex(ObjectId treeId, Set<String> descriptors) {
+		this.treeId = treeId;
+		this.descriptors = descriptors;
+	}
+
+	/**
+	 * Gets the index of the tree of HEAD. The stored index is updated if HEAD has moved, or built if there is
+	 * none.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @return the index of the project descriptors of HEAD.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	public static ProjectIndex get(Repository repository) throws IOException {
+		ObjectId headTree = getHeadTree(repository);
+		File file = new File(repository.getDirectory(), INDEX_FILE);
+		ProjectIndex stored = read(file);
+		if (stored != null && equal(stored.treeId, headTree)) {
+			return stored;
+		}
+
+		final ProjectIndex index;
+		if (stored != null && stored.treeId != null && headTree != null
+				&& repository.getObjectDatabase().has(stored.treeId)) {
+			index = stored.update(repository, headTree);
+		} else {
+			index = new ProjectIndex(headTree, scan(repository, headTree));
+		}
+		try {
+			index.write(file);
+		} catch (IOException e) {
+			// Built again on next run.
+		}
+		return index;
+	}
+
+	/**
+	 * Gets the identifier of the indexed tree.
+	 * 
+	 * @return the identifier of the indexed tree or <code>null</code> if the repository has no commit.
+	 */
+	public ObjectId getTreeId() {
+		return treeId;
+	}
+
+	/**
+	 * Gets the project descriptors.
+	 * 
+	 * @return the paths of the project descriptors, relative to the work tree and sorted.
+	 */
+	public List<String> getDescriptorPaths() {
+		return Collections.unmodifiableList(new ArrayList<String>(descriptors));
+	}
+
+	/**
+	 * Updates this index to another tree from the differences of the project descriptors.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @param newTree
+	 *            the tree to index.
+	 * @return the index of the new tree.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	private ProjectIndex update(Repository repository, ObjectId newTree) throws IOException {
+		Set<String> updated = new TreeSet<String>(descriptors);
+		TreeWalk walk = new TreeWalk(repository);
+		try {
+			walk.addTree(treeId);
+			walk.addTree(newTree);
+			walk.setRecursive(true);
+			walk.setFilter(AndTreeFilter.create(PathSuffixFilter.create(PROJECT_DESCRIPTOR),
+					TreeFilter.ANY_DIFF));
+			for (DiffEntry entry : DiffEntry.scan(walk)) {
+				if (isDescriptor(entry.getOldPath())) {
+					updated.remove(entry.getOldPath());
+				}
+				if (isDescriptor(entry.getNewPath())) {
+					updated.add(entry.getNewPath());
+				}
+			}
+		} finally {
+			walk.release();
+		}
+		return new ProjectIndex(newTree, updated);
+	}
+
+	/**
+	 * Lists the project descriptors of a tree.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @param tree
+	 *            the tree or <code>null</code>.
+	 * @return the paths of the project descriptors.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	private static Set<String> scan(Repository repository, ObjectId tree) throws IOException {
+		Set<String> scanned = new TreeSet<String>();
+		if (tree == null) {
+			return scanned;
+		}
+		TreeWalk walk = new TreeWalk(repository);
+		try {
+			walk.addTree(tree);
+			walk.setRecursive(true);
+			walk.setFilter(PathSuffixFilter.create(PROJECT_DESCRIPTOR));
+			while (walk.next()) {
+				if (isDescriptor(walk.getPathString())) {
+					scanned.add(walk.getPathString());
+				}
+			}
+		} finally {
+			walk.release();
+		}
+		return scanned;
+	}
+
+	/**
+	 * Gets the tree of HEAD.
+	 * 
+	 * @param repository
+	 *            the repository.
+	 * @return the identifier of the tree of HEAD or <code>null</code> if the repository has no commit.
+	 * @throws IOException
+	 *             if the repository can not be read.
+	 */
+	private static ObjectId getHeadTree(Repository repository) throws IOException {
+		ObjectId head = repository.resolve(Constants.HEAD);
+		if (head == null) {
+			return null;
+		}
+		RevWalk walk = new RevWalk(repository);
+		try {
+			return walk.parseCommit(head).getTree().copy();
+		} finally {
+			walk.release();
+		}
+	}
+
+	/**
+	 * Reads a stored index.
+	 * 
+	 * @param file
+	 *            the file of the index.
+	 * @return the index or <code>null</code> if there is none or if it is not readable.
+	 */
+	private static ProjectIndex read(File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			List<String> lines = Files.readAllLines(file.toPath(), UTF_8);
+			if (lines.isEmpty()) {
+				return null;
+			}
+			ObjectId tree = null;
+			if (ObjectId.isId(lines.get(0))) {
+				tree = ObjectId.fromString(lines.get(0));
+			}
+			return new ProjectIndex(tree, new TreeSet<String>(lines.subList(1, lines.size())));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes this index. It is written to a temporary file first, so that a concurrent run never reads a
+	 * partial index.
+	 * 
+	 * @param file
+	 *            the file of the index.
+	 * @throws IOException
+	 *             if the index can not be written.
+	 */
+	private void write(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		if (treeId != null) {
+			lines.add(treeId.name());
+		} else {
+			lines.add(""); //$NON-NLS-1$
+		}
+		lines.addAll(descriptors);
+		Path temp = Files.createTempFile(file.getParentFile().toPath(), file.getName(), TEMP_EXTENSION);
+		try {
+			Files.write(temp, lines, UTF_8);
+			Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private static boolean isDescriptor(String path) {
+		return path.equals(PROJECT_DESCRIPTOR) || path.endsWith('/' + PROJECT_DESCRIPTOR);
+	}
+
+	private static boolean equal(Object first, Object second) {
+		if (first == null) {
+			return second == null;
+		}
+		return first.equals(second);
+	}
+}
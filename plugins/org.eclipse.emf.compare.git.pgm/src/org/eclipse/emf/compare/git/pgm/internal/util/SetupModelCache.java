@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.EObjectInputStream;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl.EObjectOutputStream;
+
+/**
+ * Cache of the setup models in the EMF binary resource format.
+ * <p>
+ * Both the launcher and the provisioned application parse the user setup model, and the launcher parses the
+ * environment setup model on each run. The binary form of a model is stored under the fingerprint of its
+ * URI and content, so it is loaded without parsing the XMI as long as the source does not change. The cache
+ * is best effort: a missing, stale or unreadable entry falls back to the XMI parsing.
+ * </p>
+ * <p>
+ * The cache is shared by the concurrent runs without lock. An entry is never changed once stored since its
+ * name is the fingerprint of its content: it is written to a temporary file which is then renamed, so a run
+ * either finds a complete entry or none. Two runs storing the same entry write the same content, whichever
+ * rename wins. A run deleting an unreadable entry only makes the other runs parse the model again.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+public final class SetupModelCache {
+
+	/**
+	 * Name of the folder of the temp directory holding the default cache.
+	 */
+	private static final String DEFAULT_FOLDER = "emfcSetupCache"; //$NON-NLS-1$
+
+	private static final String EXTENSION = ".bin"; //$NON-NLS-1$
+
+	private static final String TEMP_EXTENSION = ".tmp"; //$NON-NLS-1$
+
+	/**
+	 * Version of the binary format, part of the key of the entries.
+	 */
+	private static final String FORMAT = "binary-1.1"; //$NON-NLS-1$
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Options of the binary streams.
+	 */
+	private static final Map<?, ?> BINARY_OPTIONS = Collections.singletonMap(
+			BinaryResourceImpl.OPTION_VERSION, BinaryResourceImpl.BinaryIO.Version.VERSION_1_1);
+
+	/**
+	 * Folder holding the cached models.
+	 */
+	private final File folder;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param folder
+	 *            the folder holding the cached models. It is created when the first model is stored.
+	 */
+	public SetupModelCache(File folder) {
+		this.folder = folder;
+	}
+
+	/**
+	 * Gets the cache shared by all the runs, located in the system temp directory next to the default
+	 * installations.
+	 * 
+	 * @return the shared cache.
+	 */
+	public static SetupModelCache getDefault() {
+		return new SetupModelCache(new File(System.getProperty("java.io.tmpdir"), DEFAULT_FOLDER)); //$NON-NLS-1$
+	}
+
+	/**
+	 * Gets a loaded setup model, from the cache if it holds the current content of the model.
+	 * 
+	 * @param resourceSet
+	 *            the resource set the model is loaded in.
+	 * @param uri
+	 *            the URI of the model.
+	 * @return the loaded resource.
+	 * @throws IOException
+	 *             if the model can not be read or parsed.
+	 * @throws Die
+	 *             if the fingerprint of the model can not be computed.
+	 */
+	public Resource getResource(ResourceSet resourceSet, URI uri) throws IOException, Die {
+		Resource resource = resourceSet.getResource(uri, false);
+		if (resource != null && resource.isLoaded()) {
+			return resource;
+		}
+		byte[] content = read(resourceSet.getURIConverter().createInputStream(uri));
+		String key = new Fingerprint().add(FORMAT).add(uri.toString()).add(
+				new ByteArrayInputStream(content)).toHex();
+		File entry = new File(folder, key + EXTENSION);
+
+		if (resource == null) {
+			resource = resourceSet.createResource(uri);
+		}
+		if (entry.isFile() && loadBinary(resource, entry)) {
+			return resource;
+		}
+		resource.load(new ByteArrayInputStream(content), resourceSet.getLoadOptions());
+		storeBinary(resource, entry);
+		return resource;
+	}
+
+	/**
+	 * Loads a model from its cached binary form.
+	 * 
+	 * @param resource
+	 *            the resource to load.
+	 * @param entry
+	 *            the cached binary form.
+	 * @return <code>true</code> if the resource has been loaded, <code>false</code> if the entry is not
+	 *         readable and has been removed.
+	 */
+	private static boolean loadBinary(Resource resource, File entry) {
+		try {
+			InputStream input = new BufferedInputStream(new FileInputStream(entry), BUFFER_SIZE);
+			try {
+				new EObjectInputStream(input, BINARY_OPTIONS).loadResource(resource);
+			} finally {
+				input.close();
+			}
+			resource.setModified(false);
+			return true;
+		} catch (IOException e) {
+			resource.unload();
+			entry.delete();
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the binary form of a loaded model. The entry is written to a temporary file first, so that a
+	 * concurrent run never reads a partial entry.
+	 * 
+	 * @param resource
+	 *            the loaded model.
+	 * @param entry
+	 *            the file of the binary form.
+	 */
+	private static void storeBinary(Resource resource, File entry) {
+		File folder = entry.getParentFile();
+		if (!folder.isDirectory() && !folder.mkdirs()) {
+			return;
+		}
+		File temp = null;
+		try {
+			temp = File.createTempFile(entry.getName(), TEMP_EXTENSION, folder);
+			OutputStream output = new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE);
+			try {
+				EObjectOutputStream binary = new EObjectOutputStream(output, BINARY_OPTIONS);
+				binary.saveResource(resource);
+				binary.flush();
+			} finally {
+				output.close();
+			}
+			if (temp.renameTo(entry)) {
+				temp = null;
+			}
+		} catch (IOException e) {
+			// The model is parsed again on the next run.
+		} finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Reads the whole content of a stream. The stream is closed.
+	 * 
+	 * @param input
+	 *            the stream to read.
+	 * @return the content of the stream.
+	 * @throws IOException
+	 *             if the stream can not be read.
+	 */
+	private static byte[] read(InputStream input) throws IOException {
+		try {
+			ByteArrayOutputStream content = new ByteArrayOutputStream();
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				content.write(buffer, 0, read);
+			}
+			return content.toByteArray();
+		} finally {
+			input.close();
+		}
+	}
+}
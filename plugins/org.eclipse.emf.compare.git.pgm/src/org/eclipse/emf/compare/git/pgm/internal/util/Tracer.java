@@ -0,0 +1,319 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Records the phases of a command as complete events of the Chrome trace event format, to be opened in
+ * chrome://tracing or in Perfetto.
+ * <p>
+ * The launcher and the eclipse process record their phases under the same trace identifier. The eclipse
+ * process finds the identifier and the file receiving its events in system properties, given by the launcher
+ * in the VM arguments. The launcher then reads these events back and writes the combined timeline. The
+ * timestamps are taken from the wall clock at the start of each process, so that the events of both
+ * processes line up.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+public final class Tracer {
+
+	/**
+	 * System property holding the trace identifier in the eclipse process.
+	 */
+	public static final String TRACE_ID_PROPERTY = "emf.compare.git.pgm.trace.id"; //$NON-NLS-1$
+
+	/**
+	 * System property holding the file receiving the events of the eclipse process.
+	 */
+	public static final String TRACE_EVENTS_PROPERTY = "emf.compare.git.pgm.trace.events"; //$NON-NLS-1$
+
+	/**
+	 * Tracer recording nothing.
+	 */
+	public static final Tracer DISABLED = new Tracer(null, null);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+	private static final long MICROS_PER_MILLI = 1000L;
+
+	private static final long NANOS_PER_MICRO = 1000L;
+
+	/**
+	 * Wall clock time of the first use of this class, in microseconds.
+	 */
+	private static final long ORIGIN_MICROS = System.currentTimeMillis() * MICROS_PER_MILLI;
+
+	/**
+	 * Monotonic time of the first use of this class.
+	 */
+	private static final long ORIGIN_NANOS = System.nanoTime();
+
+	/**
+	 * Trace identifier, <code>null</code> if this tracer is disabled.
+	 */
+	private final String traceId;
+
+	/**
+	 * Identifier of the process.
+	 */
+	private final long pid;
+
+	/**
+	 * Recorded events, one JSON object per event.
+	 */
+	private final List<String> events = new ArrayList<String>();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param traceId
+	 *            the trace identifier, <code>null</code> to record nothing.
+	 * @param processName
+	 *            the name of the process in the timeline.
+	 */
+	public Tracer(String traceId, String processName) {
+		this.traceId = traceId;
+		this.pid = getProcessId();
+		if (traceId != null) {
+			events.add("{\"name\":\"process_name\",\"ph\":\"M\",\"pid\":" + pid //$NON-NLS-1$
+					+ ",\"tid\":0,\"args\":{\"name\":" + quote(processName) + "}}"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	/**
+	 * Creates the tracer of the eclipse process from the system properties set by the launcher.
+	 * 
+	 * @param processName
+	 *            the name of the process in the timeline.
+	 * @return the tracer, {@link #DISABLED} if the launcher does not trace the command.
+	 */
+	public static Tracer fromSystemProperties(String processName) {
+		String traceId = System.getProperty(TRACE_ID_PROPERTY);
+		if (traceId == null || System.getProperty(TRACE_EVENTS_PROPERTY) == null) {
+			return DISABLED;
+		}
+		return new Tracer(traceId, processName);
+	}
+
+	/**
+	 * Creates a new trace identifier.
+	 * 
+	 * @return the trace identifier.
+	 */
+	public static String newTraceId() {
+		return UUID.randomUUID().toString();
+	}
+
+	/**
+	 * Gets the current time of the timeline.
+	 * 
+	 * @return the current time in microseconds.
+	 */
+	public static long now() {
+		return ORIGIN_MICROS + (System.nanoTime() - ORIGIN_NANOS) / NANOS_PER_MICRO;
+	}
+
+	/**
+	 * Tells whether this tracer records the events.
+	 * 
+	 * @return <code>true</code> if the events are recorded.
+	 */
+	public boolean isEnabled() {
+		return traceId != null;
+	}
+
+	/**
+	 * Gets the trace identifier.
+	 * 
+	 * @return the trace identifier, <code>null</code> if this tracer is disabled.
+	 */
+	public String getTraceId() {
+		return traceId;
+	}
+
+	/**
+	 * Records a phase ending now.
+	 * 
+	 * @param name
+	 *            the name of the phase.
+	 * @param start
+	 *            the start of the phase, given by {@link #now()}.
+	 */
+	public void complete(String name, long start) {
+		complete(name, start, null);
+	}
+
+	/**
+	 * Records a phase ending now.
+	 * 
+	 * @param name
+	 *            the name of the phase.
+	 * @param start
+	 *            the start of the phase, given by {@link #now()}.
+	 * @param detail
+	 *            what the phase has been applied to, such as a file, or <code>null</code>.
+	 */
+	public void complete(String name, long start, String detail) {
+		if (traceId == null) {
+			return;
+		}
+		long end = now();
+		StringBuilder event = new StringBuilder();
+		event.append("{\"name\":").append(quote(name)); //$NON-NLS-1$
+		event.append(",\"ph\":\"X\",\"ts\":").append(start); //$NON-NLS-1$
+		event.append(",\"dur\":").append(Math.max(0, end - start)); //$NON-NLS-1$
+		event.append(",\"pid\":").append(pid); //$NON-NLS-1$
+		event.append(",\"tid\":").append(Thread.currentThread().getId()); //$NON-NLS-1$
+		event.append(",\"args\":{\"traceId\":").append(quote(traceId)); //$NON-NLS-1$
+		if (detail != null) {
+			event.append(",\"detail\":").append(quote(detail)); //$NON-NLS-1$
+		}
+		event.append("}}"); //$NON-NLS-1$
+		synchronized(events) {
+			events.add(event.toString());
+		}
+	}
+
+	/**
+	 * Gets the recorded events.
+	 * 
+	 * @return the events, one JSON object per event.
+	 */
+	public List<String> getEvents() {
+		synchronized(events) {
+			return new ArrayList<String>(events);
+		}
+	}
+
+	/**
+	 * Adds the events recorded by another process, typically read by {@link #readEvents(File)}.
+	 * 
+	 * @param otherEvents
+	 *            the events, one JSON object per event.
+	 */
+	public void addEvents(List<String> otherEvents) {
+		if (traceId == null) {
+			return;
+		}
+		synchronized(events) {
+			events.addAll(otherEvents);
+		}
+	}
+
+	/**
+	 * Writes the recorded events to be read by {@link #readEvents(File)}.
+	 * 
+	 * @param file
+	 *            the file receiving the events.
+	 * @throws IOException
+	 *             if the file can not be written.
+	 */
+	public void writeEvents(File file) throws IOException {
+		Files.write(file.toPath(), getEvents(), UTF_8);
+	}
+
+	/**
+	 * Reads the events written by {@link #writeEvents(File)}.
+	 * 
+	 * @param file
+	 *            the file holding the events.
+	 * @return the events, empty if the file does not exist.
+	 * @throws IOException
+	 *             if the file can not be read.
+	 */
+	public static List<String> readEvents(File file) throws IOException {
+		List<String> result = new ArrayList<String>();
+		if (!file.isFile()) {
+			return result;
+		}
+		for (String line : Files.readAllLines(file.toPath(), UTF_8)) {
+			if (!line.trim().isEmpty()) {
+				result.add(line);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Writes the timeline in the JSON object format of the Chrome trace event format.
+	 * 
+	 * @param file
+	 *            the file receiving the timeline.
+	 * @throws IOException
+	 *             if the file can not be written.
+	 */
+	public void writeTrace(File file) throws IOException {
+		StringBuilder trace = new StringBuilder("{\"traceEvents\":[\n"); //$NON-NLS-1$
+		List<String> allEvents = getEvents();
+		for (int i = 0; i < allEvents.size(); i++) {
+			if (i > 0) {
+				trace.append(",\n"); //$NON-NLS-1$
+			}
+			trace.append(allEvents.get(i));
+		}
+		trace.append("\n],\"displayTimeUnit\":\"ms\",\"otherData\":{\"traceId\":"); //$NON-NLS-1$
+		trace.append(quote(String.valueOf(traceId))).append("}}\n"); //$NON-NLS-1$
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		Files.write(file.toPath(), trace.toString().getBytes(UTF_8));
+	}
+
+	/**
+	 * Quotes a string as a JSON string.
+	 * 
+	 * @param value
+	 *            the string.
+	 * @return the JSON string.
+	 */
+	static String quote(String value) {
+		StringBuilder result = new StringBuilder("\""); //$NON-NLS-1$
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				result.append('\\').append(c);
+			} else if (c < ' ') {
+				result.append(String.format("\\u%04x", Integer.valueOf(c))); //$NON-NLS-1$
+			} else {
+				result.append(c);
+			}
+		}
+		return result.append('"').toString();
+	}
+
+	/**
+	 * Gets the identifier of the current process from the name of the runtime, of the form
+	 * <code>pid@host</code> on the usual VMs.
+	 * 
+	 * @return the identifier of the process or 0 if it is not available.
+	 */
+	private static long getProcessId() {
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		int separator = name.indexOf('@');
+		try {
+			return Long.parseLong(name.substring(0, separator));
+		} catch (NumberFormatException e) {
+			return 0;
+		} catch (StringIndexOutOfBoundsException e) {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Obeo.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     Obeo - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.emf.compare.git.pgm.internal.util;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.emf.compare.git.pgm.internal.exception.Die;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+
+/**
+ * Snapshot of the metadata of a workspace once the projects of the repository have been imported.
+ * <p>
+ * Importing the projects of a large repository on each run is costly. The first run in snapshot mode imports
+ * them as usual and captures the <code>.metadata</code> folder of its workspace, the next ones restore it
+ * and only refresh the projects. A snapshot is named after the user setup model, the work tree and the
+ * project descriptors of HEAD, so that it is not used once the projects to import change.
+ * </p>
+ * <p>
+ * The files are copied rather than linked: eclipse rewrites some metadata files in place, such as the
+ * preferences or the project locations, which would alter the snapshot through a shared file.
+ * </p>
+ * 
+ * @author <a href="mailto:arthur.daussy@obeo.fr">Arthur Daussy</a>
+ */
+public final class WorkspaceSnapshot {
+
+	/**
+	 * Folder of the installation metadata holding the snapshots.
+	 */
+	public static final String SNAPSHOTS_FOLDER = "workspaces"; //$NON-NLS-1$
+
+	/**
+	 * Metadata folder of a workspace.
+	 */
+	private static final String METADATA = ".metadata"; //$NON-NLS-1$
+
+	private static final String PROJECT_DESCRIPTOR = ".project"; //$NON-NLS-1$
+
+	/**
+	 * Files of the workspace metadata that are not captured.
+	 */
+	private static final Set<String> EXCLUDED_FILES = new HashSet<String>(Arrays.asList(".lock", ".log")); //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static final String CAPTURING_SUFFIX = ".capturing"; //$NON-NLS-1$
+
+	/**
+	 * Number of snapshots kept for an installation, so that switching between a few branches does not
+	 * capture the workspace again each time.
+	 */
+	private static final int MAX_SNAPSHOTS = 4;
+
+	/**
+	 * Folder of the snapshot, holding a copy of the workspace metadata.
+	 */
+	private final File location;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param location
+	 *            the folder of the snapshot.
+	 */
+	public WorkspaceSnapshot(File location) {
+		this.location = location;
+	}
+
+	/**
+	 * Gets the snapshot of the workspace of a repository.
+	 * 
+	 * @param snapshotsFolder
+	 *            the folder holding the snapshots.
+	 * @param repository
+	 *            the repository whose projects are imported.
+	 * @param setupFile
+	 *            the user setup model.
+	 * @param bundlesFingerprint
+	 *            the fingerprint of the installed bundle set.
+	 * @return the snapshot, which may not exist yet.
+	 * @throws IOException
+	 *             if the repository or the setup model can not be read.
+	 * @throws Die
+	 *             if the digest algorithm is not available.
+	 */
+	public static WorkspaceSnapshot get(File snapshotsFolder, Repository repository, File setupFile,
+			String bundlesFingerprint) throws IOException, Die {
+		Fingerprint key = new Fingerprint().add(bundlesFingerprint).add(setupFile).add(
+				repository.getWorkTree().getAbsolutePath());
+		ObjectId head = repository.resolve(Constants.HEAD);
+		if (head != null) {
+			RevWalk walk = new RevWalk(repository);
+			TreeWalk treeWalk = new TreeWalk(repository);
+			try {
+				treeWalk.addTree(walk.parseTree(head));
+				treeWalk.setRecursive(true);
+				treeWalk.setFilter(PathSuffixFilter.create(PROJECT_DESCRIPTOR));
+				while (treeWalk.next()) {
+					if (PROJECT_DESCRIPTOR.equals(treeWalk.getNameString())) {
+						key.add(treeWalk.getPathString()).add(treeWalk.getObjectId(0).name());
+					}
+				}
+			} finally {
+				treeWalk.release();
+				walk.release();
+			}
+		}
+		return new WorkspaceSnapshot(new File(snapshotsFolder, key.toHex()));
+	}
+
+	/**
+	 * Gets the folder of the snapshot.
+	 * 
+	 * @return the folder of the snapshot, which may not exist yet.
+	 */
+	public File getLocation() {
+		return location;
+	}
+
+	/**
+	 * Checks whether the snapshot has been captured.
+	 * 
+	 * @return <code>true</code> if the snapshot can be restored.
+	 */
+	public boolean exists() {
+		return location.isDirectory();
+	}
+
+	/**
+	 * Replaces the metadata of a closed workspace by the snapshot.
+	 * 
+	 * @param workspace
+	 *            the workspace, not used by any eclipse process.
+	 * @throws IOException
+	 *             if the metadata can not be replaced. The workspace is then left without metadata.
+	 */
+	public void restore(File workspace) throws IOException {
+		File metadata = new File(workspace, METADATA);
+		if (metadata.exists()) {
+			delete(metadata.toPath());
+		}
+		copy(location.toPath(), metadata.toPath());
+		// Marks the snapshot as recently used.
+		location.setLastModified(System.currentTimeMillis());
+	}
+
+	/**
+	 * Captures the metadata of a workspace. The workspace should have been saved beforehand. The snapshot is
+	 * copied in a temporary folder first, so that a concurrent run never restores a partial snapshot.
+	 * 
+	 * @param workspace
+	 *            the workspace.
+	 * @return <code>true</code> if the snapshot has been captured, <code>false</code> if another process has
+	 *         captured it first.
+	 * @throws IOException
+	 *             if the metadata can not be copied.
+	 */
+	public boolean capture(File workspace) throws IOException {
+		File snapshotsFolder = location.getParentFile();
+		snapshotsFolder.mkdirs();
+		Path target = Files.createTempDirectory(snapshotsFolder.toPath(), location.getName()
+				+ CAPTURING_SUFFIX);
+		try {
+			copy(new File(workspace, METADATA).toPath(), target);
+			Files.move(target, location.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			deleteQuietly(target);
+			if (!exists()) {
+				throw e;
+			}
+			// Another process has been faster.
+			return false;
+		}
+		deleteOldSnapshots(snapshotsFolder);
+		return true;
+	}
+
+	/**
+	 * Deletes the least recently used snapshots beyond {@link #MAX_SNAPSHOTS}.
+	 * 
+	 * @param snapshotsFolder
+	 *            the folder holding the snapshots.
+	 */
+	private void deleteOldSnapshots(File snapshotsFolder) {
+		File[] snapshots = snapshotsFolder.listFiles(new FileFilter() {
+			public boolean accept(File file) {
+				return file.isDirectory() && !file.getName().contains(CAPTURING_SUFFIX);
+			}
+		});
+		if (snapshots == null || snapshots.length <= MAX_SNAPSHOTS) {
+			return;
+		}
+		Arrays.sort(snapshots, new Comparator<File>() {
+			public int compare(File file1, File file2) {
+				return Long.valueOf(file2.lastModified()).compareTo(Long.valueOf(file1.lastModified()));
+			}
+		});
+		for (int i = MAX_SNAPSHOTS; i < snapshots.length; i++) {
+			if (!snapshots[i].equals(location)) {
+				deleteQuietly(snapshots[i].toPath());
+			}
+		}
+	}
+
+	/**
+	 * Copies a folder, skipping the lock and log files of the workspace.
+	 * 
+	 * @param source
+	 *            the folder to copy.
+	 * @param target
+	 *            the copy.
+	 * @throws IOException
+	 *             if the folder can not be copied.
+	 */
+	private static void copy(final Path source, final Path target) throws IOException {
+		Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				Files.createDirectories(target.resolve(source.relativize(dir)));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				if (!EXCLUDED_FILES.contains(file.getFileName().toString())) {
+					Files.copy(file, target.resolve(source.relativize(file)),
+							StandardCopyOption.COPY_ATTRIBUTES);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Deletes a folder and its content, ignoring failures. What remains is deleted with the old snapshots.
+	 * 
+	 * @param folder
+	 *            the folder to delete.
+	 */
+	private static void deleteQuietly(Path folder) {
+		try {
+			delete(folder);
+		} catch (IOException e) {
+			// Deleted on next capture.
+		}
+	}
+
+	/**
+	 * Deletes a folder and its content.
+	 * 
+	 * @param folder
+	 *            the folder to delete.
+	 * @throws IOException
+	 *             if the folder can not be deleted.
+	 */
+	private static void delete(Path folder) throws IOException {
+		Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.deleteIfExists(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+				Files.deleteIfExists(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}